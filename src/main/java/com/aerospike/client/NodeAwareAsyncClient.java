@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.client;
+
+import com.aerospike.client.async.AsyncClient;
+import com.aerospike.client.async.AsyncClientPolicy;
+import com.aerospike.client.cluster.Cluster;
+
+/**
+ * Async client that exposes its cluster, which holds the partition map
+ * needed to find the node of a key.
+ * <p>
+ * The async client hides the cluster of {@link AerospikeClient} behind a
+ * private field of its own, so the protected field can only be reached from
+ * this package.
+ */
+public class NodeAwareAsyncClient extends AsyncClient {
+
+    public NodeAwareAsyncClient(AsyncClientPolicy policy, Host... hosts) throws AerospikeException {
+        super(policy, hosts);
+    }
+
+    public Cluster getCluster() {
+        return ((AerospikeClient) this).cluster;
+    }
+}
@@ -18,15 +18,36 @@ package com.aerospike.kafka.connect.data;
 
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
 
 public class AerospikeRecord {
 
     private final Key key;
     private final Bin[] bins;
+    private final Operation[] operations;
+    private final boolean delete;
 
     public AerospikeRecord(Key key, Bin[] bins) {
+        this(key, bins, null);
+    }
+
+    public AerospikeRecord(Key key, Bin[] bins, Operation[] operations) {
+        this(key, bins, operations, false);
+    }
+
+    private AerospikeRecord(Key key, Bin[] bins, Operation[] operations, boolean delete) {
         this.key = key;
         this.bins = bins;
+        this.operations = operations;
+        this.delete = delete;
+    }
+
+    /**
+     * Creates a record that deletes the record with the given key, e.g. for
+     * a tombstone of a compacted topic.
+     */
+    public static AerospikeRecord delete(Key key) {
+        return new AerospikeRecord(key, new Bin[0], null, true);
     }
 
     public Key key() {
@@ -36,4 +57,19 @@ public class AerospikeRecord {
     public Bin[] bins() {
         return bins;
     }
+
+    /**
+     * Returns the operations to apply to the record with a single operate
+     * command, or null if the bins are written with a put.
+     */
+    public Operation[] operations() {
+        return operations;
+    }
+
+    /**
+     * Returns whether the record gets deleted instead of written.
+     */
+    public boolean isDelete() {
+        return delete;
+    }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+/**
+ * Codecs to compress bin values with. The ID identifies the codec in the
+ * header of compressed values.
+ */
+public enum BinCodec {
+    /** Fast compression with moderate ratio. */
+    LZ4(1),
+    /** Slower compression with a better ratio than LZ4. */
+    DEFLATE(2);
+
+    private final byte id;
+
+    BinCodec(int id) {
+        this.id = (byte) id;
+    }
+
+    public byte id() {
+        return id;
+    }
+
+    public String label() {
+        return name().toLowerCase();
+    }
+
+    public static BinCodec forLabel(String label) {
+        for (BinCodec codec : values()) {
+            if (codec.label().equals(label)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    public static BinCodec forId(byte id) {
+        for (BinCodec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
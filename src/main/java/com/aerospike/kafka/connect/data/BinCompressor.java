@@ -0,0 +1,322 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.kafka.connect.errors.DataException;
+
+import com.aerospike.client.Bin;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * Compresses large string and bytes bins of a topic. Compressed values are
+ * written as blobs that start with an 8 byte header, so that readers can
+ * detect and {@link #decompress(byte[]) decompress} them:
+ * <ul>
+ * <li>2 magic bytes, 0xC0 0xDE,</li>
+ * <li>the {@link BinCodec#id() codec ID}, or 0 for an uncompressed value,</li>
+ * <li>the type of the original value, 0 for bytes and 1 for a UTF-8 string,
+ * and</li>
+ * <li>the length of the original value in bytes, big-endian.</li>
+ * </ul>
+ * Values that do not get smaller are written as is, unless they are bytes
+ * that start with the magic bytes themselves: these are written uncompressed
+ * after a header, so that readers cannot mistake them for compressed values.
+ * The compressor keeps codec state per thread, so that records of a topic can
+ * be converted concurrently; its statistics can be read from any thread.
+ */
+public class BinCompressor {
+
+    public static final int HEADER_SIZE = 8;
+
+    static final byte MAGIC_0 = (byte) 0xC0;
+    static final byte MAGIC_1 = (byte) 0xDE;
+    static final byte TYPE_BYTES = 0;
+    static final byte TYPE_STRING = 1;
+    static final byte CODEC_NONE = 0;
+
+    /**
+     * The highest compression ratio deflate can achieve; LZ4's is lower. It
+     * bounds the size allocated for a value with a corrupt header.
+     */
+    static final int MAX_RATIO = 1032;
+
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+    private static final LZ4Compressor LZ4_COMPRESSOR = LZ4_FACTORY.fastCompressor();
+
+    private final Map<String, BinCodec> codecs;
+    private final int threshold;
+    private final ThreadLocal<Deflater> deflaters = new ThreadLocal<>();
+    private final List<Deflater> allDeflaters = new ArrayList<>();
+    private volatile boolean closed;
+
+    private final AtomicLong binsCompressed = new AtomicLong(0);
+    private final AtomicLong bytesIn = new AtomicLong(0);
+    private final AtomicLong bytesOut = new AtomicLong(0);
+    private final AtomicLong nanos = new AtomicLong(0);
+
+    /**
+     * @param codecs Codec by bin name
+     * @param threshold Minimum size in bytes of the values to compress
+     */
+    public BinCompressor(Map<String, BinCodec> codecs, int threshold) {
+        this.codecs = codecs;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Replaces the values of bins with a codec by their compressed values.
+     * Bins that are written with a bin operation other than
+     * {@link BinOperation#WRITE} are left alone, since the server could not
+     * apply the operation to a compressed value.
+     */
+    public void compress(Bin[] bins, Map<String, BinOperation> binOperations) {
+        for (int i = 0; i < bins.length; i++) {
+            Bin bin = bins[i];
+            BinCodec codec = codecs.get(bin.name);
+            if (codec == null) {
+                continue;
+            }
+            if (binOperations != null) {
+                BinOperation operation = binOperations.get(bin.name);
+                if (operation != null && operation != BinOperation.WRITE) {
+                    continue;
+                }
+            }
+            Bin compressed = compress(bin, codec);
+            if (compressed != null) {
+                bins[i] = compressed;
+            }
+        }
+    }
+
+    private Bin compress(Bin bin, BinCodec codec) {
+        Object value = bin.value.getObject();
+        byte[] raw;
+        byte type;
+        if (value instanceof String) {
+            String string = (String) value;
+            // UTF-8 takes at most 3 bytes per char
+            if (string.length() * 3 < threshold) {
+                return null;
+            }
+            raw = string.getBytes(StandardCharsets.UTF_8);
+            type = TYPE_STRING;
+        } else if (value instanceof byte[]) {
+            raw = (byte[]) value;
+            type = TYPE_BYTES;
+        } else {
+            return null;
+        }
+        if (raw.length < threshold) {
+            return escape(bin, raw, type);
+        }
+        long startNanos = System.nanoTime();
+        byte[] result = codec == BinCodec.LZ4 ? lz4(raw) : deflate(raw);
+        nanos.addAndGet(System.nanoTime() - startNanos);
+        bytesIn.addAndGet(raw.length);
+        if (result == null) {
+            Bin escaped = escape(bin, raw, type);
+            bytesOut.addAndGet(escaped == null ? raw.length : raw.length + HEADER_SIZE);
+            return escaped;
+        }
+        bytesOut.addAndGet(result.length);
+        binsCompressed.incrementAndGet();
+        writeHeader(result, codec, type, raw.length);
+        return new Bin(bin.name, result);
+    }
+
+    /*
+     * Returns the bytes written uncompressed after a header if they start
+     * with the magic bytes, or null to write the value as is.
+     */
+    private static Bin escape(Bin bin, byte[] raw, byte type) {
+        if (type != TYPE_BYTES || raw.length < 2 || raw[0] != MAGIC_0 || raw[1] != MAGIC_1) {
+            return null;
+        }
+        byte[] result = new byte[HEADER_SIZE + raw.length];
+        System.arraycopy(raw, 0, result, HEADER_SIZE, raw.length);
+        writeHeader(result, CODEC_NONE, type, raw.length);
+        return new Bin(bin.name, result);
+    }
+
+    /*
+     * Returns the compressed value after room for the header, or null if
+     * the value does not get smaller.
+     */
+    private byte[] lz4(byte[] raw) {
+        int maxLength = LZ4_COMPRESSOR.maxCompressedLength(raw.length);
+        byte[] out = new byte[HEADER_SIZE + maxLength];
+        int length = LZ4_COMPRESSOR.compress(raw, 0, raw.length, out, HEADER_SIZE, maxLength);
+        if (HEADER_SIZE + length >= raw.length) {
+            return null;
+        }
+        return Arrays.copyOf(out, HEADER_SIZE + length);
+    }
+
+    /*
+     * Deflaters hold native memory until they are ended, which happens when
+     * the compressor gets closed; the lock only guards against a thread that
+     * still compresses while the compressor gets closed.
+     */
+    private byte[] deflate(byte[] raw) {
+        Deflater deflater = deflaters.get();
+        if (deflater == null) {
+            deflater = new Deflater();
+            synchronized (allDeflaters) {
+                allDeflaters.add(deflater);
+            }
+            deflaters.set(deflater);
+        }
+        synchronized (deflater) {
+            if (closed) {
+                throw new DataException("Bin compressor has been closed");
+            }
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] out = new byte[raw.length];
+            int length = HEADER_SIZE;
+            while (!deflater.finished() && length < out.length) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            if (!deflater.finished() || length >= raw.length) {
+                return null;
+            }
+            return Arrays.copyOf(out, length);
+        }
+    }
+
+    private static void writeHeader(byte[] value, BinCodec codec, byte type, int length) {
+        writeHeader(value, codec.id(), type, length);
+    }
+
+    private static void writeHeader(byte[] value, byte codecId, byte type, int length) {
+        value[0] = MAGIC_0;
+        value[1] = MAGIC_1;
+        value[2] = codecId;
+        value[3] = type;
+        value[4] = (byte) (length >>> 24);
+        value[5] = (byte) (length >>> 16);
+        value[6] = (byte) (length >>> 8);
+        value[7] = (byte) length;
+    }
+
+    /**
+     * Returns whether the value starts with the header written by the
+     * compressor, i.e. whether it needs to be
+     * {@link #decompress(byte[]) decompressed} to get the original value.
+     */
+    public static boolean isCompressed(byte[] value) {
+        return value.length >= HEADER_SIZE && value[0] == MAGIC_0 && value[1] == MAGIC_1
+                && (value[2] == CODEC_NONE || BinCodec.forId(value[2]) != null);
+    }
+
+    /**
+     * Returns the original value of a compressed value, i.e. a String or a
+     * byte array, or the value itself if it is not compressed.
+     */
+    public static Object decompress(byte[] value) {
+        if (!isCompressed(value)) {
+            return value;
+        }
+        int length = ((value[4] & 0xFF) << 24) | ((value[5] & 0xFF) << 16) | ((value[6] & 0xFF) << 8)
+                | (value[7] & 0xFF);
+        int payload = value.length - HEADER_SIZE;
+        if (value[2] == CODEC_NONE) {
+            if (length != payload) {
+                throw new DataException("Invalid uncompressed value - expected " + length + " bytes, got " + payload);
+            }
+            return Arrays.copyOfRange(value, HEADER_SIZE, value.length);
+        }
+        BinCodec codec = BinCodec.forId(value[2]);
+        if (length < 0 || length > (long) payload * MAX_RATIO) {
+            throw new DataException("Invalid " + codec.label() + " compressed value - " + payload
+                    + " bytes cannot hold " + length + " bytes");
+        }
+        byte[] raw = new byte[length];
+        try {
+            if (codec == BinCodec.LZ4) {
+                LZ4_FACTORY.fastDecompressor().decompress(value, HEADER_SIZE, raw, 0, length);
+            } else {
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(value, HEADER_SIZE, payload);
+                    if (inflater.inflate(raw) != length) {
+                        throw new DataFormatException("Expected " + length + " bytes");
+                    }
+                } finally {
+                    inflater.end();
+                }
+            }
+        } catch (LZ4Exception | DataFormatException e) {
+            throw new DataException("Invalid " + codec.label() + " compressed value", e);
+        }
+        return value[3] == TYPE_STRING ? new String(raw, StandardCharsets.UTF_8) : raw;
+    }
+
+    public long getBinsCompressed() {
+        return binsCompressed.get();
+    }
+
+    /**
+     * Returns the total size of the values the compressor has been applied
+     * to, including values that did not get smaller.
+     */
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    /**
+     * Returns the total size of the values written for them.
+     */
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    public long getNanos() {
+        return nanos.get();
+    }
+
+    /**
+     * Releases the codec state of all threads. The compressor must not be
+     * used afterwards.
+     */
+    public void close() {
+        closed = true;
+        synchronized (allDeflaters) {
+            for (Deflater deflater : allDeflaters) {
+                synchronized (deflater) {
+                    deflater.end();
+                }
+            }
+            allDeflaters.clear();
+        }
+    }
+}
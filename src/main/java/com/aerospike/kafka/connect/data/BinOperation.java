@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.connect.errors.DataException;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Value;
+import com.aerospike.client.cdt.ListOperation;
+import com.aerospike.client.cdt.MapOperation;
+import com.aerospike.client.cdt.MapPolicy;
+import com.aerospike.client.command.ParticleType;
+
+/**
+ * Operation to apply to a bin when records are written with a single
+ * operate command instead of a put. Apart from {@link #WRITE}, all
+ * operations accumulate the record's value on the server, e.g. to keep
+ * counters or event logs without reading the record first.
+ */
+public enum BinOperation {
+    /** Replaces the bin value. */
+    WRITE {
+        @Override
+        Operation operation(Bin bin) {
+            return Operation.put(bin);
+        }
+    },
+    /** Adds an integer or double value to the bin. */
+    ADD {
+        @Override
+        Operation operation(Bin bin) {
+            int type = bin.value.getType();
+            if (type != ParticleType.INTEGER && type != ParticleType.DOUBLE) {
+                throw unsupported(bin, "a number");
+            }
+            return Operation.add(bin);
+        }
+    },
+    /** Appends a string value to the bin. */
+    APPEND {
+        @Override
+        Operation operation(Bin bin) {
+            if (bin.value.getType() != ParticleType.STRING) {
+                throw unsupported(bin, "a string");
+            }
+            return Operation.append(bin);
+        }
+    },
+    /**
+     * Appends the value to the list in the bin; list values are appended
+     * item by item.
+     */
+    LIST_APPEND {
+        @Override
+        Operation operation(Bin bin) {
+            Object value = bin.value.getObject();
+            if (!(value instanceof List)) {
+                return ListOperation.append(bin.name, bin.value);
+            }
+            List<?> items = (List<?>) value;
+            if (items.isEmpty()) {
+                return null;
+            }
+            List<Value> values = new ArrayList<>(items.size());
+            for (Object item : items) {
+                values.add(Values.of(item));
+            }
+            return ListOperation.appendItems(bin.name, values);
+        }
+    },
+    /** Puts all entries of a map value into the map in the bin. */
+    MAP_PUT {
+        @Override
+        Operation operation(Bin bin) {
+            Object value = bin.value.getObject();
+            if (!(value instanceof Map)) {
+                throw unsupported(bin, "a map");
+            }
+            Map<?, ?> entries = (Map<?, ?>) value;
+            if (entries.isEmpty()) {
+                return null;
+            }
+            Map<Value, Value> values = new HashMap<>();
+            for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                values.put(Values.of(entry.getKey()), Values.of(entry.getValue()));
+            }
+            return MapOperation.putItems(MapPolicy.Default, bin.name, values);
+        }
+    };
+
+    /**
+     * Returns the operation for the given bin, or null if there is nothing
+     * to do. Null values are written as is, i.e. they delete the bin.
+     */
+    public Operation toOperation(Bin bin) {
+        if (bin.value.getType() == ParticleType.NULL) {
+            return this == WRITE ? Operation.put(bin) : null;
+        }
+        return operation(bin);
+    }
+
+    abstract Operation operation(Bin bin);
+
+    public String label() {
+        return name().toLowerCase();
+    }
+
+    public static BinOperation forLabel(String label) {
+        for (BinOperation operation : values()) {
+            if (operation.label().equals(label)) {
+                return operation;
+            }
+        }
+        return null;
+    }
+
+    DataException unsupported(Bin bin, String expected) {
+        return new DataException("Cannot " + label() + " value of bin '" + bin.name + "' - expected " + expected
+                + " but got " + bin.value.getObject().getClass().getSimpleName());
+    }
+}
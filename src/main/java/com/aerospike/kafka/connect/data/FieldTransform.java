@@ -0,0 +1,285 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.util.Date;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Schema.Type;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Time;
+import org.apache.kafka.connect.data.Timestamp;
+import org.apache.kafka.connect.errors.DataException;
+
+/**
+ * Transform of a Struct field on its way into a bin, in place of the single
+ * message transforms that would copy the whole Struct for every record. The
+ * transforms of a topic are compiled into the {@link StructPlan} of each
+ * schema, so that they run in the same pass that extracts the bins.
+ */
+public abstract class FieldTransform {
+
+    /**
+     * Returns the transform for the label and its argument (null if there is
+     * none), or null if the transform is invalid.
+     */
+    public static FieldTransform forLabel(String label, String argument) {
+        switch (label) {
+        case "drop":
+            return argument == null ? new Drop() : null;
+        case "rename":
+            return argument == null || argument.isEmpty() ? null : new Rename(argument);
+        case "cast":
+            Type type = castType(argument);
+            return type == null ? null : new Cast(type);
+        case "epoch":
+            if (argument == null || argument.equals("millis")) {
+                return new Epoch(1);
+            }
+            return argument.equals("seconds") ? new Epoch(1000) : null;
+        case "number":
+            return argument == null ? new ParseNumber() : null;
+        default:
+            return null;
+        }
+    }
+
+    private static Type castType(String label) {
+        if (label == null) {
+            return null;
+        }
+        switch (label) {
+        case "int8":
+        case "int16":
+        case "int32":
+        case "int64":
+        case "float32":
+        case "float64":
+        case "boolean":
+        case "string":
+            return Type.valueOf(label.toUpperCase());
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Whether the field is left out of the record.
+     */
+    boolean drops() {
+        return false;
+    }
+
+    /**
+     * Returns the name of the field after the transform.
+     */
+    String rename(String name) {
+        return name;
+    }
+
+    /**
+     * Whether the transform changes the field's values.
+     */
+    boolean convertsValues() {
+        return false;
+    }
+
+    /**
+     * Returns the schema of the transformed values, or null if their type
+     * depends on the value. The input schema is null if it is not known.
+     *
+     * @throws DataException if the transform does not apply to the schema
+     */
+    Schema outputSchema(String field, Schema input) {
+        return input;
+    }
+
+    /**
+     * Transforms a non-null value.
+     */
+    Object apply(Object value) {
+        return value;
+    }
+
+    static final class Drop extends FieldTransform {
+
+        @Override
+        boolean drops() {
+            return true;
+        }
+    }
+
+    static final class Rename extends FieldTransform {
+
+        private final String name;
+
+        Rename(String name) {
+            this.name = name;
+        }
+
+        @Override
+        String rename(String name) {
+            return this.name;
+        }
+    }
+
+    /*
+     * Casts between the primitive types, like the Cast transform. Strings are
+     * parsed when cast to numbers or booleans.
+     */
+    static final class Cast extends FieldTransform {
+
+        private final Type type;
+        private final Schema schema;
+
+        Cast(Type type) {
+            this.type = type;
+            this.schema = SchemaBuilder.type(type).optional().build();
+        }
+
+        @Override
+        boolean convertsValues() {
+            return true;
+        }
+
+        @Override
+        Schema outputSchema(String field, Schema input) {
+            if (input != null && (!input.type().isPrimitive() || input.type() == Type.BYTES)) {
+                throw new DataException("Cannot cast field " + field + " of type " + input.type() + " to " + type);
+            }
+            return schema;
+        }
+
+        @Override
+        Object apply(Object value) {
+            switch (type) {
+            case INT8:
+                return toNumber(value).byteValue();
+            case INT16:
+                return toNumber(value).shortValue();
+            case INT32:
+                return toNumber(value).intValue();
+            case INT64:
+                return toNumber(value).longValue();
+            case FLOAT32:
+                return toNumber(value).floatValue();
+            case FLOAT64:
+                return toNumber(value).doubleValue();
+            case BOOLEAN:
+                if (value instanceof Boolean) {
+                    return value;
+                }
+                if (value instanceof Number) {
+                    return ((Number) value).doubleValue() != 0;
+                }
+                return Boolean.parseBoolean(value.toString().trim());
+            default:
+                return value.toString();
+            }
+        }
+
+        private static Number toNumber(Object value) {
+            if (value instanceof Number) {
+                return (Number) value;
+            }
+            if (value instanceof Boolean) {
+                return ((Boolean) value) ? 1 : 0;
+            }
+            if (value instanceof Date) {
+                return ((Date) value).getTime();
+            }
+            return parseNumber(value.toString());
+        }
+    }
+
+    /*
+     * Timestamp, Date and Time values to milliseconds or seconds since the
+     * epoch.
+     */
+    static final class Epoch extends FieldTransform {
+
+        private final long divisor;
+
+        Epoch(long divisor) {
+            this.divisor = divisor;
+        }
+
+        @Override
+        boolean convertsValues() {
+            return true;
+        }
+
+        @Override
+        Schema outputSchema(String field, Schema input) {
+            if (input != null && !isDate(input)) {
+                throw new DataException("Field " + field + " is not a Timestamp, Date or Time");
+            }
+            return Schema.INT64_SCHEMA;
+        }
+
+        private static boolean isDate(Schema schema) {
+            String name = schema.name();
+            return Timestamp.LOGICAL_NAME.equals(name) || org.apache.kafka.connect.data.Date.LOGICAL_NAME.equals(name)
+                    || Time.LOGICAL_NAME.equals(name);
+        }
+
+        @Override
+        Object apply(Object value) {
+            if (!(value instanceof Date)) {
+                throw new DataException("Expected a date, got " + value.getClass().getSimpleName());
+            }
+            return ((Date) value).getTime() / divisor;
+        }
+    }
+
+    /*
+     * Numeric strings to longs, or to doubles if they are not integers.
+     */
+    static final class ParseNumber extends FieldTransform {
+
+        @Override
+        boolean convertsValues() {
+            return true;
+        }
+
+        @Override
+        Schema outputSchema(String field, Schema input) {
+            if (input != null && input.type() != Type.STRING) {
+                throw new DataException("Field " + field + " is not of type STRING");
+            }
+            return null;
+        }
+
+        @Override
+        Object apply(Object value) {
+            return parseNumber(value.toString());
+        }
+    }
+
+    static Number parseNumber(String value) {
+        String trimmed = value.trim();
+        try {
+            return Long.parseLong(trimmed);
+        } catch (NumberFormatException e) {
+            try {
+                return Double.parseDouble(trimmed);
+            } catch (NumberFormatException e2) {
+                throw new DataException("Cannot parse \"" + value + "\" as a number");
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.kafka.connect.sink.TopicConfig;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Converts BYTES and STRING record values holding JSON objects straight into
+ * bins, without building a Map of the whole document first. The document is
+ * read with a pull parser; only the top-level fields that map to a bin, and
+ * the key and set fields, are materialized, while all other values are
+ * skipped. Nested objects and arrays of mapped fields become map and list
+ * bins, with the same value types as the JsonConverter produces for
+ * schemaless records. Converters are not thread-safe; each task uses its own
+ * instance.
+ */
+public class JsonStreamConverter extends RecordConverter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private Bin[] scratch = new Bin[16];
+
+    public JsonStreamConverter(Map<String, TopicConfig> topicConfigs) {
+        super(topicConfigs);
+    }
+
+    @Override
+    public AerospikeRecord convertRecord(SinkRecord record) {
+        TopicConfig config = getTopicConfig(record);
+        try (JsonParser parser = createParser(record.value())) {
+            return convert(parser, record.key(), config);
+        } catch (IOException e) {
+            throw new DataException("Error parsing JSON record value", e);
+        }
+    }
+
+    private JsonParser createParser(Object value) throws IOException {
+        if (value instanceof byte[]) {
+            return JSON_FACTORY.createParser((byte[]) value);
+        }
+        if (value instanceof String) {
+            return JSON_FACTORY.createParser((String) value);
+        }
+        if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = (ByteBuffer) value;
+            if (buffer.hasArray()) {
+                return JSON_FACTORY.createParser(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                        buffer.remaining());
+            }
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            return JSON_FACTORY.createParser(bytes);
+        }
+        throw new DataException("Unsupported record type - expected bytes or string, got "
+                + (value == null ? "null" : value.getClass().getSimpleName()));
+    }
+
+    private AerospikeRecord convert(JsonParser parser, Object recordKey, TopicConfig config) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new DataException("Unsupported record value - expected a JSON object");
+        }
+        Map<String, String> binMapping = config.getBinMapping();
+        String keyField = config.getKeyField();
+        String setField = config.getSetField();
+        boolean hasKey = false;
+        boolean hasSet = false;
+        Object userKey = recordKey;
+        String set = config.getSet();
+        Bin[] bins = scratch;
+        int count = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            String binName = binMapping == null ? field : binMapping.get(field);
+            boolean isKey = field.equals(keyField);
+            boolean isSet = field.equals(setField);
+            parser.nextToken();
+            if (binName == null && !isKey && !isSet) {
+                parser.skipChildren();
+                continue;
+            }
+            Object value = readValue(parser);
+            if (isKey) {
+                userKey = value;
+                hasKey = true;
+            }
+            if (isSet) {
+                set = String.valueOf(value);
+                hasSet = true;
+            }
+            if (binName != null) {
+                if (count == bins.length) {
+                    bins = scratch = Arrays.copyOf(bins, bins.length * 2);
+                }
+                bins[count++] = new Bin(binName, Values.of(value));
+            }
+        }
+        Bin[] result = Arrays.copyOf(bins, count);
+        Arrays.fill(bins, 0, count, null);
+        if (setField != null && !hasSet) {
+            throw new DataException("Record is missing " + setField + " field - cannot determine Set name.");
+        }
+        if (keyField != null && !hasKey) {
+            throw new DataException("Record is missing " + keyField + " field - cannot determine Key value.");
+        }
+        Key key = createKey(config, set, userKey);
+        return createRecord(key, result, config);
+    }
+
+    /*
+     * Reads the value at the current token. Integers are read as Long and
+     * decimals as Double, like the JsonConverter does.
+     */
+    private Object readValue(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+        case VALUE_STRING:
+            return parser.getText();
+        case VALUE_NUMBER_INT:
+            if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+                throw new DataException("Integer value " + parser.getText() + " is out of range");
+            }
+            return parser.getLongValue();
+        case VALUE_NUMBER_FLOAT:
+            return parser.getDoubleValue();
+        case VALUE_TRUE:
+            return Boolean.TRUE;
+        case VALUE_FALSE:
+            return Boolean.FALSE;
+        case VALUE_NULL:
+            return null;
+        case START_OBJECT:
+            Map<String, Object> map = new HashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                map.put(name, readValue(parser));
+            }
+            return map;
+        case START_ARRAY:
+            List<Object> list = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                list.add(readValue(parser));
+            }
+            return list;
+        default:
+            throw new DataException("Unexpected JSON token " + parser.getCurrentToken());
+        }
+    }
+}
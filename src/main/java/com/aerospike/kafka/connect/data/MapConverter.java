@@ -16,8 +16,9 @@
  */
 package com.aerospike.kafka.connect.data;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import org.apache.kafka.connect.errors.DataException;
@@ -25,11 +26,21 @@ import org.apache.kafka.connect.sink.SinkRecord;
 
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
-import com.aerospike.client.Value;
 import com.aerospike.kafka.connect.sink.TopicConfig;
 
+/**
+ * Converts schemaless records with Map values. Bins are collected into a
+ * scratch array that is reused across records and copied into an exactly
+ * sized result, and the bin name for each map key is resolved once per topic.
+ * Converters are not thread-safe; each task uses its own instance.
+ */
 public class MapConverter extends RecordConverter {
 
+    static final int MAX_CACHED_BIN_NAMES = 10000;
+
+    private final Map<TopicConfig, BinNames> binNames = new IdentityHashMap<>();
+    private Bin[] scratch = new Bin[16];
+
     public MapConverter(Map<String, TopicConfig> topicConfigs) {
         super(topicConfigs);
     }
@@ -39,7 +50,7 @@ public class MapConverter extends RecordConverter {
         TopicConfig topicConfig = getTopicConfig(record);
         Key key = keyFromRecord(value, record.key(), topicConfig);
         Bin[] bins = binsFromMap(value, topicConfig);
-        return new AerospikeRecord(key, bins);
+        return createRecord(key, bins, topicConfig);
     }
 
     private Map<?, ?> asMap(Object value) {
@@ -50,7 +61,6 @@ public class MapConverter extends RecordConverter {
     }
 
     private Key keyFromRecord(Map<?, ?> recordMap, Object recordKey, TopicConfig config) {
-        String namespace = config.getNamespace();
         String set = config.getSet();
         Object userKey = recordKey;
         String setField = config.getSetField();
@@ -67,28 +77,69 @@ public class MapConverter extends RecordConverter {
             }
             userKey = recordMap.get(keyField);
         }
-        Key key = createKey(namespace, set, userKey);
-        return key;
-    }
-
-    private Key createKey(String namespace, String set, Object userKey) {
-        Value userKeyValue = Value.get(userKey);
-        return new Key(namespace, set, userKeyValue);
+        return createKey(config, set, userKey);
     }
 
     private Bin[] binsFromMap(Map<?, ?> map, TopicConfig config) {
-        Map<String, String> binMapping = config.getBinMapping();
-        List<Bin> bins = new ArrayList<Bin>();
+        BinNames names = binNames.get(config);
+        if (names == null) {
+            names = new BinNames(config.getBinMapping());
+            binNames.put(config, names);
+        }
+        int size = map.size();
+        if (scratch.length < size) {
+            scratch = new Bin[Math.max(size, scratch.length * 2)];
+        }
+        Bin[] bins = scratch;
+        int count = 0;
         for (Map.Entry<?, ?> entry : map.entrySet()) {
-            String name = entry.getKey().toString();
+            String name = names.get(entry.getKey());
+            if (name == null) {
+                continue;
+            }
+            bins[count++] = new Bin(name, Values.of(entry.getValue()));
+        }
+        Bin[] result = Arrays.copyOf(bins, count);
+        Arrays.fill(bins, 0, count, null);
+        return result;
+    }
+
+    /*
+     * Bin names by map key for one topic, or null for keys that are not
+     * mapped to any bin. String keys without bin mapping are used as is.
+     */
+    static class BinNames {
+
+        private static final String UNMAPPED = new String("");
+
+        private final Map<String, String> binMapping;
+        private final Map<Object, String> names = new HashMap<>();
+
+        BinNames(Map<String, String> binMapping) {
+            this.binMapping = binMapping;
+        }
+
+        String get(Object key) {
+            if (binMapping == null && key instanceof String) {
+                return (String) key;
+            }
+            String name = names.get(key);
+            if (name == null) {
+                name = resolve(key);
+                if (names.size() >= MAX_CACHED_BIN_NAMES) {
+                    names.clear();
+                }
+                names.put(key, name);
+            }
+            return name == UNMAPPED ? null : name;
+        }
+
+        private String resolve(Object key) {
+            String name = key.toString();
             if (binMapping != null) {
                 name = binMapping.get(name);
-                if (name == null) {
-                    continue;
-                }
             }
-            bins.add(new Bin(name, entry.getValue()));
+            return name == null ? UNMAPPED : name;
         }
-        return bins.toArray(new Bin[0]);
     }
-}
\ No newline at end of file
+}
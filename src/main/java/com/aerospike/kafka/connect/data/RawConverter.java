@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Value;
+import com.aerospike.kafka.connect.sink.TopicConfig;
+
+/**
+ * Writes BYTES and STRING record values, e.g. from the ByteArrayConverter or
+ * StringConverter, as is into a single blob or string bin. Byte arrays are
+ * passed to the client without copying. The key is always taken from the
+ * record key, since there are no fields to read a key or set name from.
+ */
+public class RawConverter extends RecordConverter {
+
+    public RawConverter(Map<String, TopicConfig> topicConfigs) {
+        super(topicConfigs);
+    }
+
+    @Override
+    public AerospikeRecord convertRecord(SinkRecord record) {
+        Object userKey = record.key();
+        if (userKey == null) {
+            throw new DataException("Record has no key - cannot determine Key value.");
+        }
+        TopicConfig config = getTopicConfig(record);
+        Key key = createKey(config, config.getSet(), userKey);
+        Bin[] bins = new Bin[1];
+        bins[0] = new Bin(config.getValueBin(), valueOf(record.value()));
+        return createRecord(key, bins, config);
+    }
+
+    private Value valueOf(Object value) {
+        if (value instanceof byte[]) {
+            return Value.get((byte[]) value);
+        }
+        if (value instanceof String) {
+            return Value.get((String) value);
+        }
+        if (value instanceof ByteBuffer) {
+            return Values.bytesOf((ByteBuffer) value);
+        }
+        throw new DataException("Unsupported record type - expected bytes or string, got "
+                + value.getClass().getSimpleName());
+    }
+}
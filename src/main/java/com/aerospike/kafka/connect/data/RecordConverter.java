@@ -16,15 +16,27 @@
  */
 package com.aerospike.kafka.connect.data;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.sink.SinkRecord;
 
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Value;
 import com.aerospike.kafka.connect.sink.TopicConfig;
 
 public abstract class RecordConverter {
 
+    static final int DIGEST_SIZE = 20;
+
     private Map<String, TopicConfig> topicConfigs;
+    private final Map<TopicConfig, KeyCache> keyCaches = new IdentityHashMap<>();
 
     protected RecordConverter(Map<String, TopicConfig> topicConfigs) {
         this.topicConfigs = topicConfigs;
@@ -37,4 +49,105 @@ public abstract class RecordConverter {
         return topicConfigs.get(topic);
     }
 
+    /**
+     * Creates the key of a record in the topic's namespace. In digest key
+     * mode, the user key holds the digest; otherwise the digest is computed
+     * from the user key, unless the key is found in the topic's key cache.
+     */
+    protected Key createKey(TopicConfig config, String set, Object userKey) {
+        if (config.isDigestKeyMode()) {
+            return new Key(config.getNamespace(), digest(userKey), set, null);
+        }
+        int cacheSize = config.getKeyCacheSize();
+        if (cacheSize == 0 || !(userKey instanceof String || userKey instanceof Long || userKey instanceof Integer)) {
+            return new Key(config.getNamespace(), set, Value.get(userKey));
+        }
+        KeyCache cache = keyCaches.get(config);
+        if (cache == null) {
+            cache = new KeyCache(cacheSize);
+            keyCaches.put(config, cache);
+        }
+        Key key = cache.get(userKey);
+        if (key == null || !equal(set, key.setName)) {
+            key = new Key(config.getNamespace(), set, Value.get(userKey));
+            cache.put(userKey, key);
+        }
+        return key;
+    }
+
+    private static byte[] digest(Object userKey) {
+        byte[] digest;
+        if (userKey instanceof byte[]) {
+            digest = (byte[]) userKey;
+        } else if (userKey instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) userKey).duplicate();
+            digest = new byte[buffer.remaining()];
+            buffer.get(digest);
+        } else {
+            throw new DataException("Key must be a " + DIGEST_SIZE + " byte digest in digest key mode, got "
+                    + (userKey == null ? "null" : userKey.getClass().getSimpleName()));
+        }
+        if (digest.length != DIGEST_SIZE) {
+            throw new DataException("Key must be a " + DIGEST_SIZE + " byte digest in digest key mode, got "
+                    + digest.length + " bytes");
+        }
+        return digest;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Creates the record to write, compressing bins if the topic declares bin
+     * compression and turning the bins into operations if the topic declares
+     * bin operations.
+     */
+    protected AerospikeRecord createRecord(Key key, Bin[] bins, TopicConfig config) {
+        Map<String, BinOperation> binOperations = config.getBinOperations();
+        BinCompressor compressor = config.getBinCompressor();
+        if (compressor != null) {
+            compressor.compress(bins, binOperations);
+        }
+        if (binOperations == null) {
+            return new AerospikeRecord(key, bins);
+        }
+        Operation[] operations = new Operation[bins.length];
+        int count = 0;
+        for (Bin bin : bins) {
+            BinOperation binOperation = binOperations.get(bin.name);
+            if (binOperation == null) {
+                binOperation = BinOperation.WRITE;
+            }
+            Operation operation = binOperation.toOperation(bin);
+            if (operation != null) {
+                operations[count++] = operation;
+            }
+        }
+        if (count < operations.length) {
+            operations = Arrays.copyOf(operations, count);
+        }
+        return new AerospikeRecord(key, bins, operations);
+    }
+
+    /*
+     * Least recently used keys, by user key. A cached key is only used if it
+     * is in the same set, since the set name is part of the digest.
+     */
+    @SuppressWarnings("serial")
+    static class KeyCache extends LinkedHashMap<Object, Key> {
+
+        private final int maxSize;
+
+        KeyCache(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Key> eldest) {
+            return size() > maxSize;
+        }
+    }
+
 }
\ No newline at end of file
@@ -31,13 +31,24 @@ public class RecordMapperFactory {
 
     private final Map<String, TopicConfig> topicConfigs;
     private final Map<Type, RecordConverter> instances;
+    private final RecordConverter tombstones;
+    private RecordConverter json;
 
     public RecordMapperFactory(Map<String, TopicConfig> topicConfigs) {
         this.topicConfigs = topicConfigs;
         instances = new HashMap<>();
+        tombstones = new TombstoneConverter(topicConfigs);
     }
 
+    /**
+     * Returns the converter for the record's value type. Records with null
+     * value (tombstones) are converted to deletes, and BYTES and STRING
+     * values of topics with JSON values are parsed as JSON.
+     */
     public RecordConverter getMapper(SinkRecord record) {
+        if (record.value() == null) {
+            return tombstones;
+        }
         RecordConverter mapper;
         Type type;
         Schema schema = record.valueSchema();
@@ -47,6 +58,12 @@ public class RecordMapperFactory {
             Object value = record.value();
             type = ConnectSchema.schemaType(value.getClass());
         }
+        if ((type == Type.BYTES || type == Type.STRING) && isJson(record.topic())) {
+            if (json == null) {
+                json = new JsonStreamConverter(topicConfigs);
+            }
+            return json;
+        }
         if (instances.containsKey(type)) {
             mapper = instances.get(type);
         } else {
@@ -56,12 +73,20 @@ public class RecordMapperFactory {
         return mapper;
     }
 
+    private boolean isJson(String topic) {
+        TopicConfig config = topicConfigs.get(topic);
+        return config != null && config.isJsonValueFormat();
+    }
+
     private RecordConverter createMapper(Type recordType) {
         switch (recordType) {
         case STRUCT:
             return new StructConverter(topicConfigs);
         case MAP:
             return new MapConverter(topicConfigs);
+        case BYTES:
+        case STRING:
+            return new RawConverter(topicConfigs);
         default:
             throw new DataException("No mapper for records of type " + recordType);
         }
@@ -16,28 +16,32 @@
  */
 package com.aerospike.kafka.connect.data;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
-import org.apache.kafka.connect.data.Field;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.Schema.Type;
 import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.sink.SinkRecord;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
-import com.aerospike.client.Value;
 import com.aerospike.kafka.connect.sink.TopicConfig;
 
+/**
+ * Converts records with Struct values. The conversion of each distinct value
+ * schema is compiled into a {@link StructPlan} once and cached per topic, so
+ * that wide schemas do not pay for field lookups on every record.
+ */
 public class StructConverter extends RecordConverter {
 
-    private static final Logger log = LoggerFactory.getLogger(StructConverter.class);
+    static final int MAX_CACHED_PLANS = 64;
+
+    private final Map<TopicConfig, PlanCache> plans = new IdentityHashMap<>();
+    private TopicConfig lastConfig;
+    private StructPlan lastPlan;
 
     public StructConverter(Map<String, TopicConfig> topicConfigs) {
         super(topicConfigs);
@@ -46,9 +50,10 @@ public class StructConverter extends RecordConverter {
     public AerospikeRecord convertRecord(SinkRecord record) {
         Struct value = asStruct(record.value(), record.valueSchema());
         TopicConfig topicConfig = getTopicConfig(record);
-        Key key = keyFromRecord(value, record.key(), topicConfig);
-        Bin[] bins = binsFromStruct(value, topicConfig);
-        return new AerospikeRecord(key, bins);
+        StructPlan plan = getPlan(value.schema(), topicConfig);
+        Key key = keyFromRecord(value, record.key(), topicConfig, plan);
+        Bin[] bins = plan.bins(value);
+        return createRecord(key, bins, topicConfig);
     }
 
     private Struct asStruct(Object value, Schema schema) {
@@ -61,111 +66,54 @@ public class StructConverter extends RecordConverter {
         return (Struct) value;
     }
 
-    private Key keyFromRecord(Struct struct, Object recordKey, TopicConfig config) {
-        String namespace = config.getNamespace();
-        String set = config.getSet();
-        Object userKey = recordKey;
-        String setField = config.getSetField();
-        if (setField != null) {
-            set = struct.getString(setField);
+    /*
+     * Consecutive records usually share the same schema instance, so the
+     * last plan is checked by identity before falling back to the cache.
+     */
+    StructPlan getPlan(Schema schema, TopicConfig config) {
+        if (config == lastConfig && lastPlan != null && schema == lastPlan.schema()) {
+            return lastPlan;
         }
-        String keyField = config.getKeyField();
-        if (keyField != null) {
-            userKey = struct.get(keyField);
+        PlanCache cache = plans.get(config);
+        if (cache == null) {
+            cache = new PlanCache();
+            plans.put(config, cache);
         }
-        Key key = createKey(namespace, set, userKey);
-        return key;
-    }
-
-    private Key createKey(String namespace, String set, Object userKey) {
-        Value userKeyValue = Value.get(userKey);
-        return new Key(namespace, set, userKeyValue);
+        StructPlan plan = cache.get(schema);
+        if (plan == null) {
+            plan = StructPlan.compile(schema, config);
+            cache.put(schema, plan);
+        }
+        lastConfig = config;
+        lastPlan = plan;
+        return plan;
     }
 
-    private Bin[] binsFromStruct(Struct struct, TopicConfig config) {
-        Map<String, String> binMapping = config.getBinMapping();
-        List<Field> fields = struct.schema().fields();
-        List<Bin> bins = new ArrayList<Bin>();
-        for (Field field : fields) {
-            Bin bin = binFromField(struct, field, binMapping);
-            if (bin != null) {
-                bins.add(bin);
-            }
+    private Key keyFromRecord(Struct struct, Object recordKey, TopicConfig config, StructPlan plan) {
+        String set = config.getSet();
+        Object userKey = recordKey;
+        if (plan.hasSetField()) {
+            set = plan.setName(struct);
+        }
+        if (plan.hasKeyField()) {
+            userKey = plan.userKey(struct);
         }
-        return bins.toArray(new Bin[0]);
+        return createKey(config, set, userKey);
     }
 
-    private Bin binFromField(Struct struct, Field field, Map<String, String> binMapping) {
-        String fieldName = field.name();
-        String binName = fieldName;
-        if (binMapping != null) {
-            binName = binMapping.get(fieldName); 
-            if (binName == null) {
-                return null;
-            }
-        }
+    /*
+     * Least recently used plans, by schema.
+     */
+    @SuppressWarnings("serial")
+    static class PlanCache extends LinkedHashMap<Schema, StructPlan> {
 
-        Bin bin = null;
-        Type type = field.schema().type();
-        switch (type) {
-        case ARRAY:
-            bin = new Bin(binName, struct.getArray(fieldName));
-            break;
-        case BOOLEAN:
-            bin = new Bin(binName, struct.getBoolean(fieldName));
-            break;
-        case BYTES:
-            bin = new Bin(binName, struct.getBytes(fieldName));
-            break;
-        case FLOAT32:
-            bin = new Bin(binName, struct.getFloat32(fieldName));
-            break;
-        case FLOAT64:
-            bin = new Bin(binName, struct.getFloat64(fieldName));
-            break;
-        case INT8:
-            bin = new Bin(binName, struct.getInt8(fieldName));
-            break;
-        case INT16:
-            bin = new Bin(binName, struct.getInt16(fieldName));
-            break;
-        case INT32:
-            bin = new Bin(binName, struct.getInt32(fieldName));
-            break;
-        case INT64:
-            bin = new Bin(binName, struct.getInt64(fieldName));
-            break;
-        case MAP:
-            bin = new Bin(binName, struct.getMap(fieldName));
-            break;
-        case STRING:
-            bin = new Bin(binName, struct.getString(fieldName));
-            break;
-        case STRUCT:
-            Struct nestedStruct = struct.getStruct(fieldName);
-            bin = new Bin(binName, mapFromStruct(nestedStruct));
-            break;
-        default:
-            log.info("Ignoring struct field {} of unsupported type {}", fieldName, type);
+        PlanCache() {
+            super(16, 0.75f, true);
         }
-        return bin;
-    }
-    
-    private Map<String, Object> mapFromStruct(Struct struct) {
-        List<Field> fields = struct.schema().fields();
-        Map<String, Object> map = new HashMap<>();
-        for (Field field : fields) {
-            String name = field.name();
-            Type type = field.schema().type();
-            switch (type) {
-            case STRUCT:
-                Struct nestedStruct = struct.getStruct(name);
-                map.put(name, mapFromStruct(nestedStruct));
-                break;
-            default:
-                map.put(name, struct.get(name));
-            }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Schema, StructPlan> eldest) {
+            return size() > MAX_CACHED_PLANS;
         }
-        return map;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,577 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Schema.Type;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Value;
+import com.aerospike.kafka.connect.sink.TopicConfig;
+
+/**
+ * Conversion of Structs with one particular schema into Aerospike bins. The
+ * plan resolves the mapped fields, their bin names and a value extractor for
+ * each field type once, so that converting a record is a single pass over a
+ * few arrays, without any lookups by field name. If the topic flattens nested
+ * Structs, the plan also resolves the path to each nested field, so that
+ * nested fields are read straight into their own bins without building
+ * intermediate maps. Field transforms of the topic are compiled into the same
+ * extractors, so that transformed fields are read, converted and written to
+ * their bins in one pass.
+ */
+class StructPlan {
+
+    private static final Logger log = LoggerFactory.getLogger(StructPlan.class);
+
+    static final int MAX_BIN_NAME_LENGTH = 14;
+
+    private final Schema schema;
+    private final Field[] fields;
+    private final FieldPath[] paths;
+    private final String[] binNames;
+    private final Extractor[] extractors;
+    private final Field keyField;
+    private final FieldPath keyPath;
+    private final Field setField;
+    private final FieldPath setPath;
+
+    private StructPlan(Schema schema, Field[] fields, FieldPath[] paths, String[] binNames, Extractor[] extractors,
+            Field keyField, FieldPath keyPath, Field setField, FieldPath setPath) {
+        this.schema = schema;
+        this.fields = fields;
+        this.paths = paths;
+        this.binNames = binNames;
+        this.extractors = extractors;
+        this.keyField = keyField;
+        this.keyPath = keyPath;
+        this.setField = setField;
+        this.setPath = setPath;
+    }
+
+    public static StructPlan compile(Schema schema, TopicConfig config) {
+        Builder builder = new Builder(config);
+        builder.addFields(schema, "", "", null, config.getFlattenDepth(), false);
+        Map<String, List<FieldTransform>> transforms = config.getFieldTransforms();
+        Field keyField = null;
+        FieldPath keyPath = null;
+        if (config.getKeyField() != null) {
+            keyField = lookupField(schema, config.getKeyField(), transforms);
+            keyPath = TransformChain.compile(keyField, keyField.name(), transforms).path(new FieldValue(keyField));
+        }
+        Field setField = null;
+        FieldPath setPath = null;
+        if (config.getSetField() != null) {
+            setField = lookupField(schema, config.getSetField(), transforms);
+            TransformChain chain = TransformChain.compile(setField, setField.name(), transforms);
+            if (chain.schema == null || chain.schema.type() != Type.STRING) {
+                throw new DataException("Field '" + config.getSetField() + "' is not of type STRING");
+            }
+            setPath = chain.path(new FieldValue(setField));
+        }
+        return new StructPlan(schema, builder.fields.toArray(new Field[0]), builder.paths.toArray(new FieldPath[0]),
+                builder.binNames.toArray(new String[0]), builder.extractors.toArray(new Extractor[0]), keyField,
+                keyPath, setField, setPath);
+    }
+
+    /*
+     * Looks up a top-level field by its name after the transforms.
+     */
+    private static Field lookupField(Schema schema, String name, Map<String, List<FieldTransform>> transforms) {
+        if (transforms == null) {
+            Field field = schema.field(name);
+            if (field == null) {
+                throw new DataException(name + " is not a valid field name");
+            }
+            return field;
+        }
+        for (Field field : schema.fields()) {
+            TransformChain chain = TransformChain.compile(field, field.name(), transforms);
+            if (!chain.dropped && chain.name.equals(name)) {
+                return field;
+            }
+        }
+        throw new DataException(name + " is not a valid field name");
+    }
+
+    public Schema schema() {
+        return schema;
+    }
+
+    public Bin[] bins(Struct struct) {
+        Bin[] bins = new Bin[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            Object value = paths[i] == null ? struct.get(fields[i]) : paths[i].get(struct);
+            bins[i] = new Bin(binNames[i], extractors[i].extract(value));
+        }
+        return bins;
+    }
+
+    /**
+     * Returns the key field's value, or null if the key is not taken from
+     * the record value.
+     */
+    public Object userKey(Struct struct) {
+        if (keyField == null) {
+            return null;
+        }
+        return keyPath == null ? struct.get(keyField) : keyPath.get(struct);
+    }
+
+    /**
+     * Returns the set field's value, or null if the set name is not taken
+     * from the record value.
+     */
+    public String setName(Struct struct) {
+        if (setField == null) {
+            return null;
+        }
+        return (String) (setPath == null ? struct.get(setField) : setPath.get(struct));
+    }
+
+    public boolean hasKeyField() {
+        return keyField != null;
+    }
+
+    public boolean hasSetField() {
+        return setField != null;
+    }
+
+    static Map<String, Object> mapFromStruct(Struct struct) {
+        List<Field> fields = struct.schema().fields();
+        Map<String, Object> map = new HashMap<>();
+        for (Field field : fields) {
+            Object value = struct.get(field);
+            if (value instanceof Struct) {
+                value = mapFromStruct((Struct) value);
+            }
+            map.put(field.name(), value);
+        }
+        return map;
+    }
+
+    /*
+     * Collects the mapped fields, flattening nested Structs up to the given
+     * depth.
+     */
+    static class Builder {
+
+        private final Map<String, String> binMapping;
+        private final Map<String, List<FieldTransform>> transforms;
+        private final String separator;
+        private final List<Field> fields = new ArrayList<>();
+        private final List<FieldPath> paths = new ArrayList<>();
+        private final List<String> binNames = new ArrayList<>();
+        private final List<Extractor> extractors = new ArrayList<>();
+
+        Builder(TopicConfig config) {
+            binMapping = config.getBinMapping();
+            transforms = config.getFieldTransforms();
+            separator = config.getFlattenSeparator();
+        }
+
+        /**
+         * @param sourcePrefix Prefix of the fields' flattened names, by which
+         *            their transforms are looked up
+         * @param prefix Prefix of the fields' bin names, i.e. the flattened
+         *            name of the holding Struct after renames
+         * @param parent Path to the Struct holding the fields, or null for the
+         *            record value
+         * @param inArray Whether the fields belong to the elements of an
+         *            array, i.e. each field yields a list of values
+         */
+        void addFields(Schema schema, String sourcePrefix, String prefix, Path parent, int depth, boolean inArray) {
+            for (Field field : schema.fields()) {
+                String sourceName = sourcePrefix + field.name();
+                String name = prefix + field.name();
+                Schema fieldSchema = field.schema();
+                Type type = fieldSchema.type();
+                TransformChain chain = null;
+                if (transforms != null && transforms.containsKey(sourceName)) {
+                    chain = TransformChain.compile(field, sourceName, transforms);
+                    if (chain.dropped) {
+                        continue;
+                    }
+                    name = prefix + chain.name;
+                }
+                if (depth > 0 && type == Type.STRUCT && (chain == null || chain.converters == null)) {
+                    addFields(fieldSchema, sourceName + separator, name + separator, new Path(parent, field, false),
+                            depth - 1, inArray);
+                    continue;
+                }
+                if (depth > 0 && !inArray && type == Type.ARRAY && fieldSchema.valueSchema().type() == Type.STRUCT
+                        && (chain == null || chain.converters == null)) {
+                    addFields(fieldSchema.valueSchema(), sourceName + separator, name + separator,
+                            new Path(parent, field, true), depth - 1, true);
+                    continue;
+                }
+                addField(field, name, chain, parent, inArray);
+            }
+        }
+
+        private void addField(Field field, String name, TransformChain chain, Path parent, boolean inArray) {
+            String binName = name;
+            if (binMapping != null) {
+                binName = binMapping.get(binName);
+                if (binName == null) {
+                    return;
+                }
+            }
+            Type type = field.schema().type();
+            Extractor extractor = Extractor.forType(type);
+            if (chain != null && chain.converters != null) {
+                extractor = chain.schema == null ? Extractor.OBJECT : Extractor.forType(chain.schema.type());
+            }
+            if (extractor == null) {
+                log.info("Ignoring struct field {} of unsupported type {}", name, type);
+                return;
+            }
+            if (binName.length() > MAX_BIN_NAME_LENGTH) {
+                log.warn("Bin name {} of struct field {} is longer than {} characters", binName, name,
+                        MAX_BIN_NAME_LENGTH);
+            }
+            FieldPath path = null;
+            if (parent != null || chain != null && chain.converters != null) {
+                path = type == Type.STRUCT && inArray ? new MapValue(field) : new FieldValue(field);
+                if (chain != null) {
+                    path = chain.path(path);
+                }
+            }
+            if (parent != null) {
+                path = parent.wrap(path);
+                if (inArray) {
+                    extractor = Extractor.LIST;
+                }
+            }
+            fields.add(field);
+            paths.add(path);
+            binNames.add(binName);
+            extractors.add(extractor);
+        }
+    }
+
+    /*
+     * The transforms of one field: the field's name after renames, whether it
+     * is dropped, and the transforms that convert its values along with the
+     * schema of the converted values (null if the type depends on the value).
+     */
+    static final class TransformChain {
+
+        private final String name;
+        private final boolean dropped;
+        private final Schema schema;
+        private final FieldTransform[] converters;
+
+        private TransformChain(String name, boolean dropped, Schema schema, FieldTransform[] converters) {
+            this.name = name;
+            this.dropped = dropped;
+            this.schema = schema;
+            this.converters = converters;
+        }
+
+        /**
+         * @param sourceName The flattened name of the field, by which its
+         *            transforms are looked up
+         */
+        static TransformChain compile(Field field, String sourceName, Map<String, List<FieldTransform>> transforms) {
+            Schema schema = field.schema();
+            List<FieldTransform> chain = transforms == null ? null : transforms.get(sourceName);
+            if (chain == null) {
+                return new TransformChain(field.name(), false, schema, null);
+            }
+            String renamed = field.name();
+            boolean dropped = false;
+            List<FieldTransform> converters = new ArrayList<>();
+            for (FieldTransform transform : chain) {
+                dropped |= transform.drops();
+                renamed = transform.rename(renamed);
+                if (transform.convertsValues()) {
+                    schema = transform.outputSchema(sourceName, schema);
+                    converters.add(transform);
+                }
+            }
+            return new TransformChain(renamed, dropped, schema,
+                    converters.isEmpty() ? null : converters.toArray(new FieldTransform[0]));
+        }
+
+        /**
+         * Returns the path reading the transformed values, or null if the
+         * values are not converted.
+         */
+        FieldPath path(FieldPath path) {
+            return converters == null ? null : new TransformedValue(path, converters);
+        }
+    }
+
+    /*
+     * A chain of Struct or array of Struct fields leading to nested fields.
+     */
+    static class Path {
+
+        private final Path parent;
+        private final Field field;
+        private final boolean array;
+
+        Path(Path parent, Field field, boolean array) {
+            this.parent = parent;
+            this.field = field;
+            this.array = array;
+        }
+
+        FieldPath wrap(FieldPath child) {
+            FieldPath path = array ? new ElementValues(field, child) : new NestedValue(field, child);
+            return parent == null ? path : parent.wrap(path);
+        }
+    }
+
+    /*
+     * Reads a nested field from the record value.
+     */
+    abstract static class FieldPath {
+
+        abstract Object get(Struct struct);
+    }
+
+    static final class FieldValue extends FieldPath {
+
+        private final Field field;
+
+        FieldValue(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        Object get(Struct struct) {
+            return struct.get(field);
+        }
+    }
+
+    /*
+     * Struct values in lists are written as maps, like the Struct values of
+     * list fields.
+     */
+    static final class MapValue extends FieldPath {
+
+        private final Field field;
+
+        MapValue(Field field) {
+            this.field = field;
+        }
+
+        @Override
+        Object get(Struct struct) {
+            Struct value = (Struct) struct.get(field);
+            return value == null ? null : mapFromStruct(value);
+        }
+    }
+
+    /*
+     * Applies the field's transforms to its non-null values.
+     */
+    static final class TransformedValue extends FieldPath {
+
+        private final FieldPath child;
+        private final FieldTransform[] transforms;
+
+        TransformedValue(FieldPath child, FieldTransform[] transforms) {
+            this.child = child;
+            this.transforms = transforms;
+        }
+
+        @Override
+        Object get(Struct struct) {
+            Object value = child.get(struct);
+            for (int i = 0; i < transforms.length && value != null; i++) {
+                value = transforms[i].apply(value);
+            }
+            return value;
+        }
+    }
+
+    /*
+     * Fields of a nested Struct are null if the Struct is null.
+     */
+    static final class NestedValue extends FieldPath {
+
+        private final Field field;
+        private final FieldPath child;
+
+        NestedValue(Field field, FieldPath child) {
+            this.field = field;
+            this.child = child;
+        }
+
+        @Override
+        Object get(Struct struct) {
+            Struct value = (Struct) struct.get(field);
+            return value == null ? null : child.get(value);
+        }
+    }
+
+    /*
+     * Collects a field of each element of an array of Structs into a list.
+     */
+    static final class ElementValues extends FieldPath {
+
+        private final Field field;
+        private final FieldPath child;
+
+        ElementValues(Field field, FieldPath child) {
+            this.field = field;
+            this.child = child;
+        }
+
+        @Override
+        Object get(Struct struct) {
+            List<?> elements = (List<?>) struct.get(field);
+            if (elements == null) {
+                return null;
+            }
+            List<Object> values = new ArrayList<>(elements.size());
+            for (Object element : elements) {
+                values.add(element == null ? null : child.get((Struct) element));
+            }
+            return values;
+        }
+    }
+
+    /*
+     * Turns the value of a field into an Aerospike value. Null values (i.e.
+     * optional fields without default) are stored as null bins.
+     */
+    enum Extractor {
+        INTEGER {
+            @Override
+            Value extractValue(Object value) {
+                return Value.get(((Number) value).intValue());
+            }
+        },
+        LONG {
+            @Override
+            Value extractValue(Object value) {
+                return Value.get(((Long) value).longValue());
+            }
+        },
+        FLOAT {
+            @Override
+            Value extractValue(Object value) {
+                return Value.get(((Float) value).floatValue());
+            }
+        },
+        DOUBLE {
+            @Override
+            Value extractValue(Object value) {
+                return Value.get(((Double) value).doubleValue());
+            }
+        },
+        BOOLEAN {
+            @Override
+            Value extractValue(Object value) {
+                return Value.get(((Boolean) value).booleanValue());
+            }
+        },
+        STRING {
+            @Override
+            Value extractValue(Object value) {
+                return Value.get((String) value);
+            }
+        },
+        BYTES {
+            @Override
+            Value extractValue(Object value) {
+                if (value instanceof ByteBuffer) {
+                    return Values.bytesOf((ByteBuffer) value);
+                }
+                return Value.get((byte[]) value);
+            }
+        },
+        LIST {
+            @Override
+            Value extractValue(Object value) {
+                return Value.get((List<?>) value);
+            }
+        },
+        MAP {
+            @Override
+            Value extractValue(Object value) {
+                return Value.get((Map<?, ?>) value);
+            }
+        },
+        STRUCT {
+            @Override
+            Value extractValue(Object value) {
+                return Value.get(mapFromStruct((Struct) value));
+            }
+        },
+        /** Values whose type is only known at runtime. */
+        OBJECT {
+            @Override
+            Value extractValue(Object value) {
+                return Values.of(value);
+            }
+        };
+
+        Value extract(Object value) {
+            if (value == null) {
+                return Value.getAsNull();
+            }
+            return extractValue(value);
+        }
+
+        abstract Value extractValue(Object value);
+
+        static Extractor forType(Type type) {
+            switch (type) {
+            case INT8:
+            case INT16:
+            case INT32:
+                return INTEGER;
+            case INT64:
+                return LONG;
+            case FLOAT32:
+                return FLOAT;
+            case FLOAT64:
+                return DOUBLE;
+            case BOOLEAN:
+                return BOOLEAN;
+            case STRING:
+                return STRING;
+            case BYTES:
+                return BYTES;
+            case ARRAY:
+                return LIST;
+            case MAP:
+                return MAP;
+            case STRUCT:
+                return STRUCT;
+            default:
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.util.Map;
+
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+import com.aerospike.kafka.connect.sink.TopicConfig;
+
+/**
+ * Converts records with null value, i.e. the tombstones of compacted topics,
+ * into deletes of the record with the same key. Since there is no value to
+ * read a key or set field from, the key is taken from the record key. On
+ * topics with a key or set field, the record key must be a struct or map
+ * that contains these fields, e.g. the primary key of a change data capture
+ * record; the fields are read by name, without applying field transforms.
+ * Tombstones with any other key are rejected, since the record to delete
+ * cannot be determined.
+ */
+public class TombstoneConverter extends RecordConverter {
+
+    public TombstoneConverter(Map<String, TopicConfig> topicConfigs) {
+        super(topicConfigs);
+    }
+
+    @Override
+    public AerospikeRecord convertRecord(SinkRecord record) {
+        Object recordKey = record.key();
+        if (recordKey == null) {
+            throw new DataException("Tombstone record has no key - cannot determine record to delete.");
+        }
+        TopicConfig config = getTopicConfig(record);
+        String set = config.getSet();
+        String setField = config.getSetField();
+        if (setField != null) {
+            set = field(recordKey, setField, "Set name").toString();
+        }
+        String keyField = config.getKeyField();
+        Object userKey = keyField == null ? recordKey : field(recordKey, keyField, "Key value");
+        return AerospikeRecord.delete(createKey(config, set, userKey));
+    }
+
+    private static Object field(Object recordKey, String name, String purpose) {
+        Object value = null;
+        if (recordKey instanceof Struct) {
+            Struct struct = (Struct) recordKey;
+            if (struct.schema().field(name) != null) {
+                value = struct.get(name);
+            }
+        } else if (recordKey instanceof Map) {
+            value = ((Map<?, ?>) recordKey).get(name);
+        } else {
+            throw new DataException("Tombstone record key is not a struct or map - cannot determine " + purpose
+                    + " from " + name + " field.");
+        }
+        if (value == null) {
+            throw new DataException("Tombstone record key is missing " + name + " field - cannot determine "
+                    + purpose + ".");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.aerospike.client.Value;
+
+/**
+ * Wraps schemaless values into Aerospike values, checking the types most
+ * common in converted records (strings and the numeric types produced by the
+ * JSON converter) first.
+ */
+final class Values {
+
+    private Values() {
+    }
+
+    static Value of(Object value) {
+        if (value == null) {
+            return Value.getAsNull();
+        }
+        if (value instanceof String) {
+            return Value.get((String) value);
+        }
+        if (value instanceof Long) {
+            return Value.get(((Long) value).longValue());
+        }
+        if (value instanceof Double) {
+            return Value.get(((Double) value).doubleValue());
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return Value.get(((Number) value).intValue());
+        }
+        if (value instanceof Boolean) {
+            return Value.get(((Boolean) value).booleanValue());
+        }
+        if (value instanceof Map) {
+            return Value.get((Map<?, ?>) value);
+        }
+        if (value instanceof List) {
+            return Value.get((List<?>) value);
+        }
+        if (value instanceof byte[]) {
+            return Value.get((byte[]) value);
+        }
+        if (value instanceof ByteBuffer) {
+            return bytesOf((ByteBuffer) value);
+        }
+        return Value.get(value);
+    }
+
+    /**
+     * Wraps the remaining bytes of the buffer, without changing its position.
+     * The backing array is only used as is if the buffer spans all of it.
+     */
+    static Value bytesOf(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset() + buffer.position();
+            if (offset == 0 && buffer.remaining() == buffer.array().length) {
+                return Value.get(buffer.array());
+            }
+            return Value.get(Arrays.copyOfRange(buffer.array(), offset, offset + buffer.remaining()));
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return Value.get(bytes);
+    }
+}
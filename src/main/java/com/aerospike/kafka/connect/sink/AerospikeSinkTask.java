@@ -16,12 +16,17 @@
  */
 package com.aerospike.kafka.connect.sink;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.errors.RetriableException;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.apache.kafka.connect.sink.SinkTask;
 import org.slf4j.Logger;
@@ -30,16 +35,21 @@ import org.slf4j.LoggerFactory;
 import com.aerospike.client.AerospikeException;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
+import com.aerospike.client.policy.RecordExistsAction;
 import com.aerospike.kafka.connect.data.AerospikeRecord;
-import com.aerospike.kafka.connect.data.RecordConverter;
-import com.aerospike.kafka.connect.data.RecordMapperFactory;
 
 public class AerospikeSinkTask extends SinkTask {
 
     private static final Logger log = LoggerFactory.getLogger(AerospikeSinkTask.class);
 
-    private RecordMapperFactory mappers;
+    private Map<String, TopicConfig> topicConfigs;
+    private ConversionStage conversion;
     private AsyncWriter writer;
+    private WriteCoalescer coalescer;
+    private ErrorHandler errorHandler;
+    private final SinkTaskMetrics metrics = new SinkTaskMetrics();
+    private final OffsetTracker offsetTracker = new OffsetTracker();
+    private long commitMaxWaitMs;
 
     private long lastFlushTimeMillis = 0;
     private Map<TopicPartition, OffsetAndMetadata> lastOffsets;
@@ -51,26 +61,117 @@ public class AerospikeSinkTask extends SinkTask {
         return new AerospikeSinkConnector().version();
     }
 
+    /**
+     * Returns the offsets up to which all records have been written
+     * successfully. In-flight writes are waited for up to the configured
+     * maximum wait time only; records with pending writes are committed by a
+     * later call once their writes have been acknowledged. Since the task
+     * overrides this method, the framework never calls {@link #flush(Map)}.
+     * Records whose writes failed with a retriable error are redelivered.
+     */
     @Override
-    public void flush(Map<TopicPartition, OffsetAndMetadata> offsets) {
+    public Map<TopicPartition, OffsetAndMetadata> preCommit(Map<TopicPartition, OffsetAndMetadata> currentOffsets) {
+        long startNanos = System.nanoTime();
+        if (coalescer != null) {
+            writeCoalesced();
+        }
+        if (commitMaxWaitMs > 0) {
+            writer.drain(commitMaxWaitMs);
+        }
+        errorHandler.raiseErrors();
+        Map<TopicPartition, OffsetAndMetadata> offsets = offsetTracker.committableOffsets();
+        rewindFailedWrites(Collections.<SinkRecord>emptyList());
+        metrics.recordCommit(System.nanoTime() - startNanos);
         if (log.isInfoEnabled()) {
             report(offsets);
         }
-        writer.flush();
+        return offsets;
     }
 
+    /**
+     * Converts and dispatches the records. The time the task thread spends
+     * converting records (or waiting for the conversion threads) and
+     * dispatching them to the writer is recorded separately. If earlier
+     * writes failed with a retriable error, the records are not written but
+     * redelivered together with the failed ones.
+     */
     @Override
     public void put(Collection<SinkRecord> sinkRecords) {
-        for (SinkRecord sinkRecord : sinkRecords) {
-            try {
-                RecordConverter mapper = mappers.getMapper(sinkRecord);
-                AerospikeRecord record = mapper.convertRecord(sinkRecord);
-                Key key = record.key();
-                Bin[] bins = record.bins();
-                log.trace("Writing record for key {}: {}", key, bins);
-                writer.write(record);
-            } catch (AerospikeException e) {
+        errorHandler.raiseErrors();
+        List<SinkRecord> records = sinkRecords instanceof List ? (List<SinkRecord>) sinkRecords
+                : new ArrayList<>(sinkRecords);
+        if (rewindFailedWrites(records)) {
+            return;
+        }
+        long conversionNanos = 0;
+        long dispatchNanos = 0;
+        ConversionStage.Batch batch = conversion.convert(records);
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                long startNanos = System.nanoTime();
+                SinkRecord sinkRecord = records.get(i);
+                OffsetTracker.Offset offset = offsetTracker.track(sinkRecord);
+                AerospikeRecord record = convert(batch, i, offset);
+                long convertedNanos = System.nanoTime();
+                conversionNanos += convertedNanos - startNanos;
+                if (record != null) {
+                    dispatch(record, offset);
+                    dispatchNanos += System.nanoTime() - convertedNanos;
+                }
+            }
+        } finally {
+            batch.close();
+            metrics.recordPut(conversionNanos, dispatchNanos);
+        }
+    }
+
+    /*
+     * Returns the converted record, or null if it has been skipped.
+     */
+    private AerospikeRecord convert(ConversionStage.Batch batch, int index, OffsetTracker.Offset offset) {
+        try {
+            return batch.record(index);
+        } catch (AerospikeException e) {
+            metrics.topic(offset.record().topic()).failed();
+            if (errorHandler.isTolerant()) {
+                errorHandler.handle(offset, ErrorHandler.Reason.CONVERSION_ERROR, e);
+            } else {
+                log.error("Error converting record", e);
+                offset.ack();
+            }
+            return null;
+        } catch (RuntimeException e) {
+            metrics.topic(offset.record().topic()).failed();
+            if (!errorHandler.isTolerant()) {
+                throw e;
+            }
+            errorHandler.handle(offset, ErrorHandler.Reason.CONVERSION_ERROR, e);
+            return null;
+        }
+    }
+
+    private void dispatch(AerospikeRecord record, OffsetTracker.Offset offset) {
+        try {
+            Key key = record.key();
+            Bin[] bins = record.bins();
+            log.trace("Writing record for key {}: {}", key, bins);
+            if (coalescer == null) {
+                writer.write(record, offset);
+            } else if (record.operations() != null || record.isDelete()) {
+                if (coalescer.contains(key)) {
+                    writeCoalesced();
+                }
+                writer.write(record, offset);
+            } else if (coalescer.add(record, offset)) {
+                writeCoalesced();
+            }
+        } catch (AerospikeException e) {
+            metrics.topic(offset.record().topic()).failed();
+            if (errorHandler.isTolerant()) {
+                errorHandler.handle(offset, ErrorHandler.Reason.WRITE_ERROR, e);
+            } else {
                 log.error("Error writing to record", e);
+                offset.ack();
             }
         }
     }
@@ -79,16 +180,109 @@ public class AerospikeSinkTask extends SinkTask {
     public void start(Map<String, String> props) {
         log.trace("Starting {} task with config: {}", this.getClass().getName(), props);
         ConnectorConfig config = new ConnectorConfig(props);
-        mappers = new RecordMapperFactory(config.getTopicConfigs());
-        writer = new AsyncWriter(config);
+        commitMaxWaitMs = config.getCommitMaxWaitMs();
+        topicConfigs = config.getTopicConfigs();
+        conversion = new ConversionStage(topicConfigs, config.getConversionThreads(),
+                config.getConversionMinChunkRecords(), metrics);
+        for (Map.Entry<String, TopicConfig> entry : topicConfigs.entrySet()) {
+            if (entry.getValue().getBinCompressor() != null) {
+                metrics.topic(entry.getKey()).setCompressor(entry.getValue().getBinCompressor());
+            }
+        }
+        errorHandler = ErrorHandler.create(config);
+        metrics.setErrorHandler(errorHandler);
+        writer = new AsyncWriter(config, errorHandler, AsyncClientBackend.create(config), metrics);
+        metrics.register(config.getName(), config.getTaskId());
+        if (config.isCoalesceEnabled()) {
+            RecordExistsAction action = config.getPolicyRecordExistsAction();
+            if (WriteCoalescer.supports(action)) {
+                coalescer = new WriteCoalescer(action, config.getCoalesceMaxRecords());
+            } else {
+                log.warn("Write coalescing is not supported for record exists action {} - disabling it", action);
+            }
+        }
+    }
+
+    @Override
+    public void close(Collection<TopicPartition> partitions) {
+        offsetTracker.remove(partitions);
     }
 
     @Override
     public void stop() {
         log.trace("Stopping {} task", this.getClass().getName());
+        if (coalescer != null) {
+            coalescer.clear();
+        }
+        offsetTracker.clear();
+        metrics.unregister();
+        if (conversion != null) {
+            conversion.close();
+        }
         if (writer != null) {
             writer.close();
         }
+        if (errorHandler != null) {
+            errorHandler.close();
+        }
+        if (topicConfigs != null) {
+            for (TopicConfig topicConfig : topicConfigs.values()) {
+                if (topicConfig.getBinCompressor() != null) {
+                    topicConfig.getBinCompressor().close();
+                }
+            }
+        }
+    }
+
+    /*
+     * Raises errors of failed asynchronous writes. The writer neither
+     * acknowledges nor retries a record whose write failed with a retriable
+     * error, so the task stops tracking records and rewinds each partition to
+     * its first record that has not been acknowledged, or to the first of the
+     * given records if that comes first; the framework then redelivers the
+     * failed records and all records that follow them. Returns true if the
+     * partitions have been rewound. Any other error is raised again by every
+     * later call and fails the task with the next put; if preCommit raises
+     * it, the framework rewinds to the last committed offsets itself.
+     */
+    private boolean rewindFailedWrites(List<SinkRecord> unwritten) {
+        try {
+            writer.raiseErrors();
+            return false;
+        } catch (RetriableException e) {
+            log.warn("Redelivering records after failed writes", e);
+        } catch (ConnectException e) {
+            stopTracking();
+            throw e;
+        }
+        Map<TopicPartition, Long> offsets = offsetTracker.unacknowledgedOffsets();
+        for (SinkRecord record : unwritten) {
+            TopicPartition partition = new TopicPartition(record.topic(), record.kafkaPartition());
+            Long offset = offsets.get(partition);
+            if (offset == null || record.kafkaOffset() < offset) {
+                offsets.put(partition, record.kafkaOffset());
+            }
+        }
+        stopTracking();
+        context.offset(offsets);
+        return true;
+    }
+
+    /*
+     * Drops the coalesced writes and the tracked records; they will be
+     * redelivered.
+     */
+    private void stopTracking() {
+        if (coalescer != null) {
+            coalescer.clear();
+        }
+        offsetTracker.clear();
+    }
+
+    private void writeCoalesced() {
+        for (WriteCoalescer.Write write : coalescer.drain()) {
+            writer.write(write.record(), write.offset());
+        }
     }
 
     private void report(Map<TopicPartition, OffsetAndMetadata> currentOffsets) {
@@ -107,6 +301,25 @@ public class AerospikeSinkTask extends SinkTask {
                         elapsedMs, partition.topic(), partition.partition(), Math.round(1000.0 * records / elapsedMs));
             }
         }
+        if (coalescer != null) {
+            log.info("Coalesced {} records into {} writes - {} writes saved", coalescer.getRecordsReceived(),
+                    coalescer.getRecordsWritten(), coalescer.getWritesSaved());
+        }
+        log.info("Spent {} ms converting and {} ms dispatching records", metrics.getPutConversionMicros() / 1000,
+                metrics.getPutDispatchMicros() / 1000);
+        log.info("{} records pending acknowledgement, {} writes retried", offsetTracker.pending(), writer.getRetries());
+        if (errorHandler.isTolerant()) {
+            log.info("Skipped records by reason: {}", errorHandler.getCounts());
+        }
+        int queued = writer.getQueued();
+        if (queued > 0) {
+            log.info("{} requests waiting in node queues", queued);
+        }
+        ConcurrencyLimiter limiter = writer.getLimiter();
+        if (limiter != null) {
+            log.info("Concurrency limit: {} ({} requests in flight)", limiter.getLimit(), limiter.getInFlight());
+            log.debug("Concurrency limit history: {}", limiter.getHistory());
+        }
         lastFlushTimeMillis = now;
         lastOffsets = currentOffsets;
     }
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.listener.DeleteListener;
+import com.aerospike.client.listener.RecordListener;
+import com.aerospike.client.listener.WriteListener;
+import com.aerospike.client.policy.WritePolicy;
+
+/**
+ * The asynchronous commands the {@link AsyncWriter} issues against the
+ * cluster. Besides the async client itself, this allows to run the writer
+ * against an in-process stub for testing and benchmarking.
+ */
+public interface AsyncBackend {
+
+    /**
+     * Starts an asynchronous write of the given bins. The listener gets called
+     * once the write has completed; errors that prevent the command from being
+     * started at all (e.g. a rejected command) are thrown instead.
+     */
+    void put(WritePolicy policy, WriteListener listener, Key key, Bin... bins) throws AerospikeException;
+
+    /**
+     * Starts an asynchronous operate command applying the given operations to
+     * a single record. Errors are reported the same way as for puts.
+     */
+    void operate(WritePolicy policy, RecordListener listener, Key key, Operation... operations)
+            throws AerospikeException;
+
+    /**
+     * Starts an asynchronous delete of a single record. Errors are reported
+     * the same way as for puts.
+     */
+    void delete(WritePolicy policy, DeleteListener listener, Key key) throws AerospikeException;
+
+    /**
+     * Returns the name of the node that currently holds the master partition
+     * of the key, or null if it is not known. Used to queue requests per
+     * node.
+     */
+    String nodeName(Key key);
+
+    void close();
+}
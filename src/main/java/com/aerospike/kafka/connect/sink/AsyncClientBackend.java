@@ -0,0 +1,261 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import org.apache.kafka.connect.errors.ConnectException;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Host;
+import com.aerospike.client.Key;
+import com.aerospike.client.NodeAwareAsyncClient;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.async.AsyncClientPolicy;
+import com.aerospike.client.async.MaxCommandAction;
+import com.aerospike.client.cluster.Cluster;
+import com.aerospike.client.cluster.Partition;
+import com.aerospike.client.listener.DeleteListener;
+import com.aerospike.client.listener.RecordListener;
+import com.aerospike.client.listener.WriteListener;
+import com.aerospike.client.policy.WritePolicy;
+
+/**
+ * Backend that sends the commands to the Aerospike cluster using the async
+ * client.
+ * <p>
+ * If clients are shared, the client comes from the {@link ClientRegistry}
+ * and does not limit the number of commands; the backend enforces the task's
+ * own limit and max command action instead.
+ */
+public class AsyncClientBackend implements AsyncBackend {
+
+    private final NodeAwareAsyncClient client;
+    private final ClientRegistry.SharedClient sharedClient;
+    private final long sharedIdleMs;
+    private final Semaphore commands;
+    private final boolean blockOnMaxCommands;
+
+    public AsyncClientBackend(ConnectorConfig config) {
+        this(config, config.getMaxAsyncCommands());
+    }
+
+    private AsyncClientBackend(ConnectorConfig config, int maxAsyncCommands) {
+        try {
+            Host[] hosts = config.getHosts();
+            AsyncClientPolicy policy = createClientPolicy(config, maxAsyncCommands);
+            client = new NodeAwareAsyncClient(policy, hosts);
+        } catch (AerospikeException e) {
+            throw new ConnectException("Error connecting to Aerospike cluster", e);
+        }
+        sharedClient = null;
+        sharedIdleMs = 0;
+        commands = null;
+        blockOnMaxCommands = false;
+    }
+
+    private AsyncClientBackend(ConnectorConfig config, int maxAsyncCommands, int shard) {
+        sharedClient = ClientRegistry.acquire(config, maxAsyncCommands, shard);
+        sharedIdleMs = config.getClientSharedIdleMs();
+        client = sharedClient.client();
+        MaxCommandAction action = config.getMaxCommandAction();
+        commands = action == MaxCommandAction.ACCEPT ? null : new Semaphore(maxAsyncCommands);
+        blockOnMaxCommands = action == MaxCommandAction.BLOCK;
+    }
+
+    /**
+     * Creates the backend for the given configuration: a single async client,
+     * or several clients sharing the async command limit if client sharding
+     * is enabled.
+     */
+    public static AsyncBackend create(ConnectorConfig config) {
+        int shards = config.getClientShards();
+        boolean shared = config.isClientShared();
+        if (shards == 1) {
+            return shared ? new AsyncClientBackend(config, config.getMaxAsyncCommands(), 0)
+                    : new AsyncClientBackend(config);
+        }
+        int maxAsyncCommands = Math.max(1, (config.getMaxAsyncCommands() + shards - 1) / shards);
+        List<AsyncBackend> backends = new ArrayList<>(shards);
+        try {
+            for (int i = 0; i < shards; i++) {
+                backends.add(shared ? new AsyncClientBackend(config, maxAsyncCommands, i)
+                        : new AsyncClientBackend(config, maxAsyncCommands));
+            }
+        } catch (RuntimeException e) {
+            for (AsyncBackend backend : backends) {
+                backend.close();
+            }
+            throw e;
+        }
+        return new ShardedBackend(backends);
+    }
+
+    @Override
+    public void put(WritePolicy policy, WriteListener listener, Key key, Bin... bins) {
+        if (commands == null) {
+            client.put(policy, listener, key, bins);
+            return;
+        }
+        acquireCommand();
+        try {
+            client.put(policy, new CommandWriteListener(listener), key, bins);
+        } catch (RuntimeException e) {
+            commands.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void operate(WritePolicy policy, RecordListener listener, Key key, Operation... operations) {
+        if (commands == null) {
+            client.operate(policy, listener, key, operations);
+            return;
+        }
+        acquireCommand();
+        try {
+            client.operate(policy, new CommandRecordListener(listener), key, operations);
+        } catch (RuntimeException e) {
+            commands.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void delete(WritePolicy policy, DeleteListener listener, Key key) {
+        if (commands == null) {
+            client.delete(policy, listener, key);
+            return;
+        }
+        acquireCommand();
+        try {
+            client.delete(policy, new CommandDeleteListener(listener), key);
+        } catch (RuntimeException e) {
+            commands.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public String nodeName(Key key) {
+        Cluster cluster = client.getCluster();
+        try {
+            return cluster.getMasterNode(new Partition(key)).getName();
+        } catch (AerospikeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (sharedClient == null) {
+            client.close();
+        } else {
+            ClientRegistry.release(sharedClient, sharedIdleMs);
+        }
+    }
+
+    int getAvailableCommands() {
+        return commands == null ? Integer.MAX_VALUE : commands.availablePermits();
+    }
+
+    private void acquireCommand() {
+        if (blockOnMaxCommands) {
+            commands.acquireUninterruptibly();
+        } else if (!commands.tryAcquire()) {
+            throw new AerospikeException.CommandRejected();
+        }
+    }
+
+    private AsyncClientPolicy createClientPolicy(ConnectorConfig config, int maxAsyncCommands) {
+        AsyncClientPolicy policy = new AsyncClientPolicy();
+        policy.asyncMaxCommands = maxAsyncCommands;
+        policy.asyncMaxCommandAction = config.getMaxCommandAction();
+        policy.asyncSelectorThreads = config.getClientSelectorThreads();
+        return policy;
+    }
+
+    /*
+     * Returns the task's command permit once the command has completed.
+     */
+    class CommandWriteListener implements WriteListener {
+
+        private final WriteListener listener;
+
+        CommandWriteListener(WriteListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSuccess(Key key) {
+            commands.release();
+            listener.onSuccess(key);
+        }
+
+        @Override
+        public void onFailure(AerospikeException e) {
+            commands.release();
+            listener.onFailure(e);
+        }
+    }
+
+    class CommandRecordListener implements RecordListener {
+
+        private final RecordListener listener;
+
+        CommandRecordListener(RecordListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSuccess(Key key, Record record) {
+            commands.release();
+            listener.onSuccess(key, record);
+        }
+
+        @Override
+        public void onFailure(AerospikeException e) {
+            commands.release();
+            listener.onFailure(e);
+        }
+    }
+
+    class CommandDeleteListener implements DeleteListener {
+
+        private final DeleteListener listener;
+
+        CommandDeleteListener(DeleteListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSuccess(Key key, boolean existed) {
+            commands.release();
+            listener.onSuccess(key, existed);
+        }
+
+        @Override
+        public void onFailure(AerospikeException e) {
+            commands.release();
+            listener.onFailure(e);
+        }
+    }
+}
@@ -16,9 +16,25 @@
  */
 package com.aerospike.kafka.connect.sink;
 
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.kafka.connect.errors.ConnectException;
 import org.apache.kafka.connect.errors.RetriableException;
@@ -29,66 +45,290 @@ import com.aerospike.client.AerospikeException;
 import com.aerospike.client.AerospikeException.CommandRejected;
 import com.aerospike.client.AerospikeException.Connection;
 import com.aerospike.client.AerospikeException.Timeout;
-import com.aerospike.client.Bin;
-import com.aerospike.client.Host;
 import com.aerospike.client.Key;
-import com.aerospike.client.async.AsyncClient;
-import com.aerospike.client.async.AsyncClientPolicy;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.listener.DeleteListener;
+import com.aerospike.client.listener.RecordListener;
 import com.aerospike.client.listener.WriteListener;
 import com.aerospike.client.policy.RecordExistsAction;
 import com.aerospike.client.policy.WritePolicy;
 import com.aerospike.kafka.connect.data.AerospikeRecord;
 
 /**
- * The AsyncWriter handles connections to the Aerospike cluster, sending data
- * and flush. The write sends individual request to write each record using the
- * async client. The flush method waits until all in-flight request have been
- * completed.
+ * The AsyncWriter handles sending data to the Aerospike cluster and flush.
+ * The write sends individual request to write each record through the
+ * {@link AsyncBackend}, normally the async client; records with bin operations
+ * are written with a single operate command instead, and tombstones are sent as
+ * deletes. Writes of the same key are never reordered: a write waits until the
+ * previous write of its key has completed. Requests can also be dispatched
+ * through a queue per cluster node, each with its own limit of requests in
+ * flight, so that a slow node only holds back the records that go to it. The
+ * flush method waits until all in-flight request have been completed. Writes
+ * can optionally be tied to an offset handle, which gets acknowledged once the
+ * record has been written successfully. Requests that fail with a transient
+ * error are retried individually with capped exponential backoff; a record
+ * only counts as failed once its retries have been exhausted. Permanently
+ * failed records are passed to the error handler if errors are tolerated.
  */
 public class AsyncWriter {
 
     private static final Logger log = LoggerFactory.getLogger(AsyncWriter.class);
 
-    private final AsyncClient client;
+    private static final ThreadFactory RETRY_THREADS = new DaemonThreadFactory("aerospike-writer-retry");
+    private static final ThreadFactory DISPATCH_THREADS = new DaemonThreadFactory("aerospike-writer-dispatch");
+
+    private final AsyncBackend backend;
     private final WritePolicy writePolicy;
+    private final WritePolicy operatePolicy;
+    private final WritePolicy deletePolicy;
     private final Counter inFlight;
     private final ResultListener listener;
+    private final ConcurrencyLimiter limiter;
+    private final ErrorHandler errorHandler;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+    private final long retryMaxBackoffMs;
+    private final ScheduledExecutorService retryScheduler;
+    private final ExecutorService dispatcher;
+    private final AtomicLong retries = new AtomicLong(0);
+    private final SinkTaskMetrics metrics;
+    private final int nodeMaxInFlight;
+    private final int nodeMaxQueuedRecords;
+    private final ConcurrentMap<String, NodeQueue> nodeQueues = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Key, RequestListener> pendingKeys = new ConcurrentHashMap<>();
 
     public AsyncWriter(ConnectorConfig config) {
+        this(config, null);
+    }
+
+    /**
+     * @param config Connector configuration
+     * @param errorHandler Handler for records that could not be written, or
+     *            null to fail the task on any write error
+     */
+    public AsyncWriter(ConnectorConfig config, ErrorHandler errorHandler) {
+        this(config, errorHandler, AsyncClientBackend.create(config));
+    }
+
+    /**
+     * @param config Connector configuration
+     * @param errorHandler Handler for records that could not be written, or
+     *            null to fail the task on any write error
+     * @param backend Backend to send the write commands to; closed when the
+     *            writer gets closed
+     */
+    public AsyncWriter(ConnectorConfig config, ErrorHandler errorHandler, AsyncBackend backend) {
+        this(config, errorHandler, backend, new SinkTaskMetrics());
+    }
+
+    /**
+     * @param config Connector configuration
+     * @param errorHandler Handler for records that could not be written, or
+     *            null to fail the task on any write error
+     * @param backend Backend to send the write commands to; closed when the
+     *            writer gets closed
+     * @param metrics Metrics to record write latencies, errors and retries in
+     */
+    public AsyncWriter(ConnectorConfig config, ErrorHandler errorHandler, AsyncBackend backend,
+            SinkTaskMetrics metrics) {
+        this.errorHandler = errorHandler;
+        this.backend = backend;
+        this.metrics = metrics;
+        inFlight = new Counter();
+        metrics.setInFlight(inFlight);
+        listener = new ResultListener(inFlight);
+        writePolicy = createWritePolicy(config);
+        operatePolicy = createOperatePolicy(writePolicy);
+        deletePolicy = new WritePolicy(writePolicy);
+        deletePolicy.durableDelete = config.isPolicyDurableDelete();
+        limiter = createLimiter(config);
+        metrics.setLimiter(limiter);
+        maxRetries = config.getRetryMaxRetries();
+        retryBackoffMs = config.getRetryBackoffMs();
+        retryMaxBackoffMs = config.getRetryMaxBackoffMs();
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(RETRY_THREADS);
+        dispatcher = Executors.newSingleThreadExecutor(DISPATCH_THREADS);
+        nodeMaxInFlight = config.getNodeMaxInFlight();
+        nodeMaxQueuedRecords = config.getNodeMaxQueuedRecords();
+    }
+
+    public void write(AerospikeRecord record) {
+        write(record, null);
+    }
+
+    public void write(AerospikeRecord record, OffsetTracker.Offset offset) {
+        Operation[] operations = record.operations();
+        if (operations != null && operations.length == 0) {
+            // Only null values for accumulating bin operations - nothing to do
+            if (offset != null) {
+                offset.ack();
+            }
+            return;
+        }
+        RequestListener request = new RequestListener(record, offset);
+        inFlight.increment();
+        RequestListener previous = pendingKeys.put(record.key(), request);
+        if (previous != null && previous.follow(request)) {
+            return;
+        }
         try {
-            Host[] hosts = config.getHosts();
-            AsyncClientPolicy policy = createClientPolicy(config);
-            client = new AsyncClient(policy, hosts);
-            inFlight = new Counter();
-            listener = new ResultListener(inFlight);
+            dispatch(request, true);
         } catch (AerospikeException e) {
-            throw new ConnectException("Error connecting to Aerospike cluster", e);
+            inFlight.decrement();
+            metrics.recordWriteError(e.getResultCode());
+            request.completed();
+            throw e;
         }
-        writePolicy = createWritePolicy(config);
     }
 
-    public void write(AerospikeRecord record) {
+    /*
+     * Sends the request, or adds it to a node queue. Only the task
+     * thread may wait for queue capacity; requests dispatched by other
+     * threads report errors to their listener instead of throwing them.
+     */
+    private void dispatch(RequestListener request, boolean waitForCapacity) {
+        AerospikeRecord record = request.record;
+        try {
+            if (nodeMaxInFlight > 0) {
+                request.queue = nodeQueue(record.key());
+                request.queue.submit(request, waitForCapacity);
+            } else {
+                request.execute();
+            }
+        } catch (AerospikeException e) {
+            if (waitForCapacity) {
+                throw e;
+            }
+            request.failed(e);
+        }
+    }
+
+    /*
+     * Dispatches a request that waited for the previous write of its key on
+     * the dispatcher thread, since the previous write completes on one of the
+     * client's selector threads, which must not block.
+     */
+    private void dispatchSuccessor(final RequestListener request) {
+        boolean accepted = dispatchLater(new Runnable() {
+            @Override
+            public void run() {
+                dispatch(request, false);
+            }
+        });
+        if (!accepted) {
+            log.debug("Writer closed - not writing key {}", request.record.key());
+        }
+    }
+
+    /*
+     * Runs the task on the dispatcher thread. Sending requests may wait for
+     * the concurrency limit or the backend's command limit, so requests that
+     * are not sent by the task thread are sent from there: neither the
+     * client's selector threads nor the scheduler thread, which times
+     * retries, must block. Returns false if the writer has been
+     * closed.
+     */
+    private boolean dispatchLater(Runnable task) {
+        try {
+            dispatcher.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private NodeQueue nodeQueue(Key key) {
+        String node = backend.nodeName(key);
+        if (node == null) {
+            node = "";
+        }
+        NodeQueue queue = nodeQueues.get(node);
+        if (queue == null) {
+            NodeQueue newQueue = new NodeQueue();
+            queue = nodeQueues.putIfAbsent(node, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Returns the number of requests waiting in node queues.
+     */
+    public int getQueued() {
+        int queued = 0;
+        for (NodeQueue queue : nodeQueues.values()) {
+            queued += queue.size();
+        }
+        return queued;
+    }
+
+    /**
+     * Raises any errors that occurred while writing records asynchronously,
+     * without waiting for in-flight requests to complete. Retriable errors
+     * are cleared once they have been raised; any other error is raised again
+     * by every later call.
+     */
+    public void raiseErrors() {
         listener.raiseErrors();
-        Key key = record.key();
-        Bin[] bins = record.bins();
-        inFlight.increment();
-        client.put(writePolicy, listener, key, bins);
     }
 
+    /**
+     * Blocks until all in-flight requests have been completed and raises any
+     * errors that occurred while writing them.
+     */
     public void flush() {
         listener.raiseErrors();
-        inFlight.waitUntilZero();
+        drain(0);
+        listener.raiseErrors();
+    }
+
+    /**
+     * Waits until all in-flight requests have been completed or the timeout
+     * expires, without raising errors.
+     *
+     * @param timeoutMs Maximum time to wait in milliseconds; zero to wait
+     *            indefinitely
+     * @return true if all in-flight requests have been completed
+     */
+    public boolean drain(long timeoutMs) {
+        return inFlight.waitUntilZero(timeoutMs);
     }
     
     public void close() {
-        client.close();
+        retryScheduler.shutdownNow();
+        dispatcher.shutdownNow();
+        backend.close();
     }
 
-    private AsyncClientPolicy createClientPolicy(ConnectorConfig config) {
-        AsyncClientPolicy policy = new AsyncClientPolicy();
-        policy.asyncMaxCommands = config.getMaxAsyncCommands();
-        policy.asyncMaxCommandAction = config.getMaxCommandAction();
-        return policy;
+    /**
+     * Returns the total number of times a failed request has been retried.
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public SinkTaskMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the adaptive concurrency limiter, or null if the number of
+     * concurrent requests is not adapted dynamically.
+     */
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    private ConcurrencyLimiter createLimiter(ConnectorConfig config) {
+        if (!config.isAdaptiveConcurrencyEnabled()) {
+            return null;
+        }
+        int min = Math.min(config.getMinAsyncCommands(), config.getMaxAsyncCommands());
+        return new ConcurrencyLimiter(min, config.getMaxAsyncCommands(), config.getLatencyTargetMs());
     }
 
     private WritePolicy createWritePolicy(ConnectorConfig config) {
@@ -102,6 +342,26 @@ public class AsyncWriter {
         return policy;
     }
     
+    /*
+     * Bin operations accumulate values in existing records, so the replace
+     * actions, which would discard the other bins, are turned into their
+     * update equivalents for operate commands.
+     */
+    private WritePolicy createOperatePolicy(WritePolicy writePolicy) {
+        WritePolicy policy = new WritePolicy(writePolicy);
+        switch (writePolicy.recordExistsAction) {
+        case REPLACE:
+            policy.recordExistsAction = RecordExistsAction.UPDATE;
+            break;
+        case REPLACE_ONLY:
+            policy.recordExistsAction = RecordExistsAction.UPDATE_ONLY;
+            break;
+        default:
+            break;
+        }
+        return policy;
+    }
+
     /*
      * Write listener implementation to track when asynchronous DB commands have
      * been completed and to record any errors raised by the commands.
@@ -109,21 +369,38 @@ public class AsyncWriter {
     class ResultListener implements WriteListener {
         
         private final Counter counter;
-        private final AtomicBoolean retry = new AtomicBoolean(true);
-        private final AtomicInteger exceptions = new AtomicInteger(0);
-        private final AtomicReference<Throwable> exception = new AtomicReference<>();
+        private boolean retry = true;
+        private int exceptions = 0;
+        private Throwable exception;
         
         public ResultListener(Counter counter) {
             this.counter = counter;
         }
         
+        /*
+         * Raises the first error recorded. Retriable errors are raised once,
+         * since the task has the failed records redelivered; any other error
+         * is raised again by every later call, as the task cannot continue.
+         */
         public void raiseErrors() throws ConnectException {
-            Throwable error = exception.get();
-            if (error == null) {
-                return;
+            Throwable error;
+            int count;
+            boolean retriable;
+            synchronized (this) {
+                error = exception;
+                if (error == null) {
+                    return;
+                }
+                count = exceptions;
+                retriable = retry;
+                if (retriable) {
+                    exception = null;
+                    exceptions = 0;
+                }
             }
-            String message = "Error writing records: " + exceptions.get() + " exception(s) occurred while asynchronously writing records";
-            if (retry.get()) {
+            String message = "Error writing records: " + count
+                    + " exception(s) occurred while asynchronously writing records";
+            if (retriable) {
                 throw new RetriableException(message, error);
             } else {
                 throw new ConnectException(message, error);
@@ -132,10 +409,26 @@ public class AsyncWriter {
 
         @Override
         public void onFailure(AerospikeException e) {
+            onFailure(e, retriable(e));
+        }
+
+        /*
+         * Records a request that failed even though it has been retried; the
+         * failure is not retriable at the task level anymore.
+         */
+        public void onRetriesExhausted(AerospikeException e) {
+            onFailure(e, false);
+        }
+
+        private void onFailure(AerospikeException e, boolean retriable) {
             log.error("Error writing record", e);
-            exception.compareAndSet(null, e);
-            retry.compareAndSet(true, retriable(e));
-            exceptions.incrementAndGet();
+            synchronized (this) {
+                if (exception == null) {
+                    exception = e;
+                }
+                retry = retry && retriable;
+                exceptions++;
+            }
             counter.decrement();
         }
 
@@ -146,52 +439,400 @@ public class AsyncWriter {
         }
         
         private boolean retriable(AerospikeException e) {
-            if (e instanceof CommandRejected
-                    || e instanceof Timeout
-                    || e instanceof Connection) {
+            return e instanceof CommandRejected || e instanceof Timeout || transientError(e);
+        }
+    }
+
+    /*
+     * Write listener for a single request. It acknowledges the offset of the
+     * record once it has been written successfully, reports the outcome of the
+     * request to the concurrency limiter and schedules retries of failed
+     * requests. It also listens to the result of operate commands, ignoring
+     * any bins they return, and to the result of deletes. Once the request
+     * has completed, it dispatches the next write of the same key, if any.
+     */
+    class RequestListener implements WriteListener, RecordListener, DeleteListener, Runnable {
+
+        private final AerospikeRecord record;
+        private final OffsetTracker.Offset offset;
+        private final SinkTaskMetrics.TopicMetrics topicMetrics;
+        private NodeQueue queue;
+        private boolean holdsQueueCapacity;
+        private long startNanos;
+        private int attempt = 0;
+        private RequestListener next;
+        private boolean completed;
+
+        public RequestListener(AerospikeRecord record, OffsetTracker.Offset offset) {
+            this.record = record;
+            this.offset = offset;
+            this.topicMetrics = metrics.topic(offset == null ? null : offset.record().topic());
+        }
+
+        public void execute() {
+            if (limiter != null) {
+                limiter.acquire();
+            }
+            startNanos = System.nanoTime();
+            try {
+                Operation[] operations = record.operations();
+                if (record.isDelete()) {
+                    backend.delete(deletePolicy, this, record.key());
+                } else if (operations == null) {
+                    backend.put(writePolicy, this, record.key(), record.bins());
+                } else {
+                    backend.operate(operatePolicy, this, record.key(), operations);
+                }
+            } catch (AerospikeException e) {
+                if (limiter != null) {
+                    limiter.cancel();
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void onSuccess(Key key) {
+            if (queue != null) {
+                queue.release();
+            }
+            metrics.recordWrite(topicMetrics, System.nanoTime() - startNanos);
+            if (offset != null) {
+                offset.ack();
+            }
+            if (limiter != null) {
+                limiter.release(startNanos, false);
+            }
+            completed();
+            listener.onSuccess(key);
+        }
+
+        @Override
+        public void onSuccess(Key key, Record result) {
+            onSuccess(key);
+        }
+
+        @Override
+        public void onSuccess(Key key, boolean existed) {
+            onSuccess(key);
+        }
+
+        /*
+         * Makes the given request wait until this one has completed. Returns
+         * false if this request has already completed.
+         */
+        synchronized boolean follow(RequestListener request) {
+            if (completed) {
+                return false;
+            }
+            next = request;
+            return true;
+        }
+
+        /*
+         * Called once the request has finally succeeded or failed.
+         */
+        void completed() {
+            RequestListener successor;
+            synchronized (this) {
+                completed = true;
+                successor = next;
+            }
+            if (successor == null) {
+                pendingKeys.remove(record.key(), this);
+            } else {
+                dispatchSuccessor(successor);
+            }
+        }
+
+        @Override
+        public void onFailure(AerospikeException e) {
+            if (queue != null) {
+                queue.release();
+            }
+            metrics.recordWriteFailure(System.nanoTime() - startNanos, e.getResultCode());
+            if (limiter != null) {
+                limiter.release(startNanos, overloaded(e));
+            }
+            retryOrFail(e);
+        }
+
+        /*
+         * Re-issues the request on the dispatcher thread. Retries go
+         * through the node queue again, but never wait for queue capacity,
+         * since that thread also dispatches the queued requests.
+         */
+        @Override
+        public void run() {
+            try {
+                if (queue != null) {
+                    queue.submit(this, false);
+                } else {
+                    execute();
+                }
+            } catch (AerospikeException e) {
+                failed(e);
+            }
+        }
+
+        /*
+         * Handles an error that prevented the request from being started.
+         */
+        void failed(AerospikeException e) {
+            metrics.recordWriteError(e.getResultCode());
+            retryOrFail(e);
+        }
+
+        private void retryOrFail(AerospikeException e) {
+            if (attempt < maxRetries && transientError(e)) {
+                long delayMs = retryDelayMs(attempt++);
+                log.debug("Retrying write of key {} in {} ms (attempt {} of {}): {}", record.key(), delayMs, attempt,
+                        maxRetries, e.getMessage());
+                try {
+                    retryScheduler.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!dispatchLater(RequestListener.this)) {
+                                log.debug("Writer closed - not retrying write of key {}", record.key());
+                            }
+                        }
+                    }, delayMs, TimeUnit.MILLISECONDS);
+                    retries.incrementAndGet();
+                    topicMetrics.retried();
+                    return;
+                } catch (RejectedExecutionException re) {
+                    log.debug("Writer closed - not retrying write of key {}", record.key());
+                }
+            }
+            topicMetrics.failed();
+            boolean permanent = attempt > 0 || !transientError(e);
+            if (permanent && offset != null && errorHandler != null && errorHandler.isTolerant()) {
+                ErrorHandler.Reason reason = attempt > 0 ? ErrorHandler.Reason.RETRIES_EXHAUSTED
+                        : ErrorHandler.Reason.WRITE_ERROR;
+                errorHandler.handle(offset, reason, e);
+                completed();
+                inFlight.decrement();
+            } else if (attempt > 0) {
+                completed();
+                listener.onRetriesExhausted(e);
+            } else {
+                completed();
+                listener.onFailure(e);
+            }
+        }
+
+        private boolean overloaded(AerospikeException e) {
+            switch (e.getResultCode()) {
+            case ResultCode.TIMEOUT:
+            case ResultCode.KEY_BUSY:
+            case ResultCode.DEVICE_OVERLOAD:
+            case ResultCode.COMMAND_REJECTED:
+            case ResultCode.NO_MORE_CONNECTIONS:
                 return true;
+            default:
+                return false;
             }
-            return false;
         }
     }
 
     /*
-     * Atomic counter to keep track of number of asynchronous, in-flight
-     * requests
+     * Dispatch queue for the requests to one node. At most nodeMaxInFlight of
+     * its requests execute at the same time; further requests wait in the
+     * queue and get dispatched on the dispatcher thread as earlier ones
+     * complete. The task thread blocks once nodeMaxQueuedRecords requests
+     * are waiting for the node.
      */
-    class Counter {
-        private static final long DEFAULT_SLEEP_INTERVAL_MS = 1;
+    class NodeQueue implements Runnable {
+
+        private final AtomicInteger executing = new AtomicInteger(0);
+        private final Queue<RequestListener> waiting = new ConcurrentLinkedQueue<>();
+        private final Semaphore capacity = new Semaphore(nodeMaxQueuedRecords);
+        private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+        /**
+         * Executes the request right away if the node has capacity, or
+         * queues it. Only errors of requests executed right away are thrown.
+         */
+        void submit(RequestListener request, boolean waitForCapacity) {
+            if (waiting.isEmpty() && tryAcquire()) {
+                try {
+                    request.execute();
+                } catch (AerospikeException e) {
+                    executing.decrementAndGet();
+                    throw e;
+                }
+                return;
+            }
+            if (waitForCapacity) {
+                try {
+                    capacity.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ConnectException("Interrupted while waiting for node queue capacity", e);
+                }
+                request.holdsQueueCapacity = true;
+            }
+            waiting.add(request);
+            drain();
+        }
 
-        private AtomicInteger counter;
-        private final long sleepMs;
+        void release() {
+            executing.decrementAndGet();
+            if (!waiting.isEmpty() && drainScheduled.compareAndSet(false, true) && !dispatchLater(this)) {
+                drainScheduled.set(false);
+            }
+        }
 
-        public Counter() {
-            this(DEFAULT_SLEEP_INTERVAL_MS);
+        int size() {
+            return waiting.size();
         }
 
-        public Counter(long sleepMs) {
-            this.sleepMs = sleepMs;
-            counter = new AtomicInteger(0);
+        @Override
+        public void run() {
+            drainScheduled.set(false);
+            drain();
         }
-        
+
+        private void drain() {
+            while (!waiting.isEmpty() && tryAcquire()) {
+                RequestListener request = waiting.poll();
+                if (request == null) {
+                    executing.decrementAndGet();
+                    return;
+                }
+                if (request.holdsQueueCapacity) {
+                    request.holdsQueueCapacity = false;
+                    capacity.release();
+                }
+                try {
+                    request.execute();
+                } catch (AerospikeException e) {
+                    executing.decrementAndGet();
+                    request.failed(e);
+                }
+            }
+        }
+
+        private boolean tryAcquire() {
+            int current = executing.get();
+            while (current < nodeMaxInFlight) {
+                if (executing.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+                current = executing.get();
+            }
+            return false;
+        }
+    }
+
+    /*
+     * Returns true for errors that may go away when the write is retried.
+     */
+    private static boolean transientError(AerospikeException e) {
+        if (e instanceof Connection || e.getCause() instanceof IOException) {
+            return true;
+        }
+        switch (e.getResultCode()) {
+        case ResultCode.TIMEOUT:
+        case ResultCode.KEY_BUSY:
+        case ResultCode.DEVICE_OVERLOAD:
+        case ResultCode.COMMAND_REJECTED:
+        case ResultCode.NO_MORE_CONNECTIONS:
+        case ResultCode.SERVER_NOT_AVAILABLE:
+        case ResultCode.INVALID_NODE_ERROR:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /*
+     * Returns the delay before the given retry attempt: the backoff doubles
+     * with every attempt up to the configured maximum, and a random jitter of
+     * up to half the backoff spreads out retries of requests that failed at
+     * the same time.
+     */
+    long retryDelayMs(int attempt) {
+        long backoff = retryBackoffMs << Math.min(attempt, 30);
+        if (backoff <= 0 || backoff > retryMaxBackoffMs) {
+            backoff = retryMaxBackoffMs;
+        }
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    /*
+     * Counter to keep track of number of asynchronous, in-flight requests.
+     * Instead of polling, threads waiting for the counter to reach zero get
+     * signalled by the callback that completes the last request. The lock is
+     * only taken on the transition to zero while a thread is waiting, so the
+     * completion callbacks do not contend on it otherwise.
+     */
+    static class Counter {
+
+        private final AtomicInteger counter = new AtomicInteger(0);
+        private final AtomicInteger waiters = new AtomicInteger(0);
+        private final Lock lock = new ReentrantLock();
+        private final Condition zero = lock.newCondition();
+
         public void increment() {
             counter.incrementAndGet();
         }
-        
+
         public void decrement() {
-            counter.decrementAndGet();
+            if (counter.decrementAndGet() == 0 && waiters.get() > 0) {
+                lock.lock();
+                try {
+                    zero.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        public int get() {
+            return counter.get();
         }
 
         public void waitUntilZero() {
+            waitUntilZero(0);
+        }
+
+        /**
+         * Blocks until the counter reaches zero or the timeout expires.
+         *
+         * @param timeoutMs Maximum time to wait in milliseconds; zero to wait
+         *            indefinitely
+         * @return true if the counter reached zero, false if the timeout
+         *         expired first
+         */
+        public boolean waitUntilZero(long timeoutMs) {
+            if (counter.get() == 0) {
+                return true;
+            }
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            lock.lock();
+            // Register as waiter before re-checking the counter so that the
+            // final decrement is guaranteed to see us.
+            waiters.incrementAndGet();
             try {
-                int count;
-                while ((count = counter.get()) > 0) {
-                    log.trace("Waiting " + sleepMs + "ms for counter to reach zero - current: " + count);
-                    Thread.sleep(sleepMs);
+                while (counter.get() > 0) {
+                    if (timeoutMs == 0) {
+                        zero.await();
+                    } else if (remainingNanos > 0) {
+                        remainingNanos = zero.awaitNanos(remainingNanos);
+                    } else {
+                        return false;
+                    }
                 }
+                return true;
             } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 throw new ConnectException("Interrupted while waiting to complete in-flight requests", e);
+            } finally {
+                waiters.decrementAndGet();
+                lock.unlock();
             }
         }
     }
-}
\ No newline at end of file
+}
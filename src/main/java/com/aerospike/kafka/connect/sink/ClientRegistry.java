@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.connect.errors.ConnectException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aerospike.client.Host;
+import com.aerospike.client.NodeAwareAsyncClient;
+import com.aerospike.client.async.AsyncClientPolicy;
+import com.aerospike.client.async.MaxCommandAction;
+
+/**
+ * JVM-wide registry of async clients shared by the sink tasks of a worker.
+ * Clients are keyed by the cluster's hosts and the client policy settings
+ * and reference counted; once the last task has released a client, it is
+ * kept open for an idle period, so that tasks restarted during a rebalance
+ * reuse it without discovering the cluster again. Shared clients accept any
+ * number of commands; each task enforces its own limit instead.
+ * <p>
+ * Clients are connected outside the registry's lock, so that connecting to
+ * one cluster does not hold up tasks acquiring or releasing other clients;
+ * tasks acquiring a client that is being connected wait for it.
+ */
+public final class ClientRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ClientRegistry.class);
+
+    private static final Map<String, SharedClient> CLIENTS = new HashMap<>();
+    private static final IdleTimer SCHEDULER_IDLE_TIMER = new SchedulerIdleTimer();
+    private static IdleTimer idleTimer = SCHEDULER_IDLE_TIMER;
+
+    private ClientRegistry() {
+    }
+
+    /**
+     * Returns the shared client for the configuration, creating it if
+     * necessary. Every call must be paired with a call to
+     * {@link #release(SharedClient, long)}.
+     *
+     * @param maxAsyncCommands Number of async commands the client is sized
+     *            for
+     * @param shard Index of the client shard; each shard has its own client
+     */
+    public static SharedClient acquire(ConnectorConfig config, int maxAsyncCommands, int shard) {
+        Host[] hosts = config.getHosts();
+        AsyncClientPolicy policy = new AsyncClientPolicy();
+        policy.asyncMaxCommands = maxAsyncCommands;
+        policy.asyncMaxCommandAction = MaxCommandAction.ACCEPT;
+        policy.asyncSelectorThreads = config.getClientSelectorThreads();
+        String key = key(hosts, policy, shard);
+        SharedClient shared;
+        boolean create = false;
+        synchronized (ClientRegistry.class) {
+            shared = CLIENTS.get(key);
+            if (shared == null) {
+                shared = new SharedClient(key, policy.password);
+                CLIENTS.put(key, shared);
+                create = true;
+            } else if (shared.closeTask != null) {
+                shared.closeTask.cancel(false);
+                shared.closeTask = null;
+            }
+            shared.references++;
+        }
+        if (create) {
+            connect(shared, policy, hosts);
+        } else {
+            await(shared, policy);
+        }
+        return shared;
+    }
+
+    /*
+     * Returns the key of the client: the hosts and every client policy
+     * setting that the connector configures or that identifies the
+     * connection. The password is not part of the key, since the key is
+     * logged; clients with the same key but a different password are
+     * rejected instead.
+     */
+    private static String key(Host[] hosts, AsyncClientPolicy policy, int shard) {
+        return Arrays.toString(hosts) + ";max_async_commands=" + policy.asyncMaxCommands + ";selector_threads="
+                + policy.asyncSelectorThreads + ";timeout=" + policy.timeout + ";user=" + policy.user + ";shard="
+                + shard;
+    }
+
+    private static void connect(SharedClient shared, AsyncClientPolicy policy, Host[] hosts) {
+        try {
+            shared.connected(new NodeAwareAsyncClient(policy, hosts));
+        } catch (RuntimeException e) {
+            shared.failed(e);
+            abandon(shared);
+            throw new ConnectException("Error connecting to Aerospike cluster", e);
+        }
+        log.info("Created shared Aerospike client for {}", shared.key);
+    }
+
+    private static void await(SharedClient shared, AsyncClientPolicy policy) {
+        try {
+            shared.connected.await();
+        } catch (InterruptedException e) {
+            abandon(shared);
+            Thread.currentThread().interrupt();
+            throw new ConnectException("Interrupted while waiting for shared Aerospike client", e);
+        }
+        if (shared.error != null) {
+            abandon(shared);
+            throw new ConnectException("Error connecting to Aerospike cluster", shared.error);
+        }
+        String password = shared.password;
+        if (password == null ? policy.password != null : !password.equals(policy.password)) {
+            release(shared, 0);
+            throw new ConnectException("Shared Aerospike client for " + shared.key + " uses a different password");
+        }
+    }
+
+    /*
+     * Drops the reference of a task that did not get the client because
+     * connecting to the cluster failed or was interrupted.
+     */
+    private static synchronized void abandon(SharedClient shared) {
+        shared.references--;
+        if (shared.error != null && CLIENTS.get(shared.key) == shared) {
+            CLIENTS.remove(shared.key);
+        }
+        if (shared.references == 0 && shared.client != null) {
+            close(shared);
+        }
+    }
+
+    /**
+     * Releases a shared client. The client is closed once it has not been
+     * used by any task for the given time.
+     */
+    public static synchronized void release(final SharedClient shared, long idleMs) {
+        if (--shared.references > 0) {
+            return;
+        }
+        if (idleMs <= 0) {
+            close(shared);
+            return;
+        }
+        shared.closeTask = idleTimer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                closeIfIdle(shared);
+            }
+        }, idleMs);
+    }
+
+    private static synchronized void closeIfIdle(SharedClient shared) {
+        if (shared.references == 0 && shared.closeTask != null) {
+            close(shared);
+        }
+    }
+
+    private static void close(SharedClient shared) {
+        CLIENTS.remove(shared.key);
+        shared.closeTask = null;
+        shared.client.close();
+        log.info("Closed shared Aerospike client for {}", shared.key);
+    }
+
+    static synchronized int size() {
+        return CLIENTS.size();
+    }
+
+    /*
+     * Replaces the timer that closes idle clients; null restores the default
+     * timer.
+     */
+    static synchronized void setIdleTimer(IdleTimer timer) {
+        idleTimer = timer == null ? SCHEDULER_IDLE_TIMER : timer;
+    }
+
+    /**
+     * An async client together with the number of tasks using it.
+     */
+    public static class SharedClient {
+
+        private final String key;
+        private final String password;
+        private final CountDownLatch connected = new CountDownLatch(1);
+        private volatile NodeAwareAsyncClient client;
+        private volatile RuntimeException error;
+        private int references = 0;
+        private Future<?> closeTask;
+
+        SharedClient(String key, String password) {
+            this.key = key;
+            this.password = password;
+        }
+
+        public NodeAwareAsyncClient client() {
+            return client;
+        }
+
+        void connected(NodeAwareAsyncClient client) {
+            this.client = client;
+            connected.countDown();
+        }
+
+        void failed(RuntimeException error) {
+            this.error = error;
+            connected.countDown();
+        }
+    }
+
+    /*
+     * Runs the task that closes an idle client once its idle period has
+     * expired.
+     */
+    interface IdleTimer {
+
+        /**
+         * Schedules the task to run after the delay; cancelling the returned
+         * future keeps it from running.
+         */
+        Future<?> schedule(Runnable task, long delayMs);
+    }
+
+    static class SchedulerIdleTimer implements IdleTimer {
+
+        private ScheduledExecutorService scheduler;
+
+        @Override
+        public synchronized Future<?> schedule(Runnable task, long delayMs) {
+            if (scheduler == null) {
+                scheduler = Executors.newSingleThreadScheduledExecutor(
+                        new DaemonThreadFactory("aerospike-client-closer"));
+            }
+            return scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.kafka.connect.errors.ConnectException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The ConcurrencyLimiter adapts the number of concurrent, in-flight requests
+ * using additive-increase/multiplicative-decrease (AIMD): the limit grows by
+ * one for every window of requests that complete successfully within the
+ * latency target and shrinks by a constant factor when a request fails because
+ * the cluster is overloaded or exceeds the latency target. At most one
+ * decrease happens per window, i.e. failures of requests that were started
+ * before the last decrease are ignored.
+ */
+public class ConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+    static final double DECREASE_FACTOR = 0.75;
+    static final int HISTORY_SIZE = 100;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicInteger successes = new AtomicInteger(0);
+    private final AtomicInteger waiters = new AtomicInteger(0);
+    private final Lock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private volatile int limit;
+    private volatile long lastDecreaseNanos;
+    private final ArrayDeque<LimitChange> history = new ArrayDeque<>(HISTORY_SIZE);
+
+    /**
+     * @param minLimit Lower bound for the concurrency limit
+     * @param maxLimit Upper bound and initial value for the concurrency limit
+     * @param latencyTargetMs Requests that take longer than this are treated
+     *            like overload errors; 0 to only react to errors
+     */
+    public ConcurrencyLimiter(int minLimit, int maxLimit, long latencyTargetMs) {
+        if (minLimit < 1 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limits: min=" + minLimit + ", max=" + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMs);
+        this.limit = maxLimit;
+        this.lastDecreaseNanos = System.nanoTime();
+    }
+
+    /**
+     * Blocks until the number of in-flight requests is below the current
+     * limit and reserves a slot for a new request.
+     */
+    public void acquire() {
+        while (true) {
+            if (tryAcquire()) {
+                return;
+            }
+            lock.lock();
+            // Register as waiter before re-checking so that the next release
+            // is guaranteed to see us.
+            waiters.incrementAndGet();
+            try {
+                while (inFlight.get() >= limit) {
+                    available.await();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectException("Interrupted while waiting for concurrency limit", e);
+            } finally {
+                waiters.decrementAndGet();
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Reserves a slot for a new request if the number of in-flight requests
+     * is below the current limit, without blocking.
+     *
+     * @return true if a slot has been reserved
+     */
+    public boolean tryAcquire() {
+        int current = inFlight.get();
+        while (current < limit) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+            current = inFlight.get();
+        }
+        return false;
+    }
+
+    /**
+     * Releases the slot of a completed request and adjusts the limit based on
+     * the outcome of the request.
+     *
+     * @param startNanos Value of System.nanoTime() when the request was started
+     * @param overloaded Whether the request failed because the cluster is
+     *            overloaded
+     */
+    public void release(long startNanos, boolean overloaded) {
+        inFlight.decrementAndGet();
+        long latencyNanos = System.nanoTime() - startNanos;
+        if (overloaded || (latencyTargetNanos > 0 && latencyNanos > latencyTargetNanos)) {
+            decrease(startNanos, overloaded ? "overload" : "latency");
+        } else if (successes.incrementAndGet() >= limit) {
+            increase();
+        }
+        signalWaiters();
+    }
+
+    /**
+     * Releases the slot of a request that could not be started, without
+     * adjusting the limit.
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+        signalWaiters();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the most recent changes of the limit, oldest first. Consecutive
+     * increases are collapsed into a single entry.
+     */
+    public synchronized List<LimitChange> getHistory() {
+        return new ArrayList<>(history);
+    }
+
+    private void signalWaiters() {
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private synchronized void increase() {
+        if (successes.get() < limit) {
+            return;
+        }
+        successes.set(0);
+        if (limit < maxLimit) {
+            limit++;
+            LimitChange last = history.peekLast();
+            if (last != null && last.reason.equals("increase")) {
+                history.pollLast();
+            }
+            record("increase");
+        }
+    }
+
+    private synchronized void decrease(long startNanos, String reason) {
+        if (startNanos - lastDecreaseNanos < 0) {
+            // Request was started before the last decrease
+            return;
+        }
+        lastDecreaseNanos = System.nanoTime();
+        successes.set(0);
+        int newLimit = Math.max(minLimit, (int) (limit * DECREASE_FACTOR));
+        if (newLimit != limit) {
+            log.debug("Decreasing concurrency limit from {} to {} due to {}", limit, newLimit, reason);
+            limit = newLimit;
+            record(reason);
+        }
+    }
+
+    private void record(String reason) {
+        if (history.size() == HISTORY_SIZE) {
+            history.pollFirst();
+        }
+        history.addLast(new LimitChange(System.currentTimeMillis(), limit, reason));
+    }
+
+    /**
+     * A change of the concurrency limit.
+     */
+    public static class LimitChange {
+
+        private final long timestamp;
+        private final int limit;
+        private final String reason;
+
+        LimitChange(long timestamp, int limit, String reason) {
+            this.timestamp = timestamp;
+            this.limit = limit;
+            this.reason = reason;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        /**
+         * Returns "increase" for additive increases, or "overload" or
+         * "latency" for decreases.
+         */
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return timestamp + ":" + limit + "(" + reason + ")";
+        }
+    }
+}
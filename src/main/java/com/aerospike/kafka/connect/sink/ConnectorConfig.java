@@ -23,6 +23,7 @@ import java.util.Map;
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigDef.Importance;
+import org.apache.kafka.common.config.ConfigDef.Range;
 import org.apache.kafka.common.config.ConfigDef.Type;
 import org.apache.kafka.common.config.ConfigDef.ValidString;
 import org.apache.kafka.common.config.ConfigDef.Validator;
@@ -40,30 +41,163 @@ public class ConnectorConfig extends AbstractConfig {
     private static final String TOPICS_DOC = "List of Kafka topics";
 
     public static final String HOSTS_CONFIG = "cluster.hosts";
-    private static final String HOSTS_DOC = "Comma separated list of one or more Aerospike cluster hosts;"
-            + "each host can be specified as a valid IP address or hostname followed by an optional port number (default is 3000)";
+    private static final String HOSTS_DOC = "Comma separated list of one or more Aerospike cluster hosts;each host can "
+            + "be specified as a valid IP address or hostname followed by an optional port number (default is 3000)";
     private static final String HOSTS_DEFAULT = "127.0.0.1";
     private static final Validator HOSTS_VALIDATOR = new HostsValidator();
 
     public static final String POLICY_RECORD_EXISTS_ACTION_CONFIG = "policy.record_exists_action";
-    private static final String POLICY_RECORD_EXISTS_ACTION_DOC = "Write Policy: How to handle writes when the record already exists";
+    private static final String POLICY_RECORD_EXISTS_ACTION_DOC = "Write Policy: How to handle writes when the record "
+            + "already exists";
     private static final String POLICY_RECORD_EXISTS_ACTION_DEFAULT = "update";
     private static final Validator POLICY_RECORD_EXISTS_ACTION_VALIDATOR = ValidString.in("create_only", "update",
             "update_only", "replace", "replace_only");
 
     public static final String POLICY_EXPIRATION_CONFIG = "policy.expiration";
-    private static final String POLICY_EXPIRATION_DOC = "Write Policy: Seconds record will live before being removed by the server. Defaults to namespace configuration variable \"default-ttl\" on the server";
+    private static final String POLICY_EXPIRATION_DOC = "Write Policy: Seconds record will live before being removed "
+            + "by the server. Defaults to namespace configuration variable \"default-ttl\" on the server";
     private static final int POLICY_EXPIRATION_DEFAULT = 0;
 
+    public static final String POLICY_DURABLE_DELETE_CONFIG = "policy.durable_delete";
+    private static final String POLICY_DURABLE_DELETE_DOC = "Write Policy: Whether records deleted by tombstones "
+            + "(records with null value) leave a tombstone on the server, so that they are not revived by a cold "
+            + "restart; requires Aerospike Enterprise";
+    private static final boolean POLICY_DURABLE_DELETE_DEFAULT = false;
+
     public static final String MAX_ASYNC_COMMANDS_CONFIG = "max_async_commands";
-    private static final String MAX_ASYNC_COMMANDS_DOC = "Maximum number of concurrent asynchronous client requests to the Aerospike cluster";
+    private static final String MAX_ASYNC_COMMANDS_DOC = "Maximum number of concurrent asynchronous client requests to "
+            + "the Aerospike cluster";
     private static final int MAX_ASYNC_COMMANDS_DEFAULT = 300;
 
     public static final String MAX_COMMAND_ACTION_CONFIG = "max_command_action";
-    private static final String MAX_COMMAND_ACTION_DOC = "How to handle cases when the asynchronous maximum number of concurrent connections have been reached";
+    private static final String MAX_COMMAND_ACTION_DOC = "How to handle cases when the asynchronous maximum number of "
+            + "concurrent connections have been reached";
     private static final String MAX_COMMAND_ACTION_DEFAULT = "block";
     private static final Validator MAX_COMMAND_ACTION_VALIDATOR = ValidString.in("accept", "block", "reject");
 
+    public static final String CONCURRENCY_ADAPTIVE_CONFIG = "concurrency.adaptive";
+    private static final String CONCURRENCY_ADAPTIVE_DOC = "Whether to adapt the number of concurrent asynchronous "
+            + "client requests to the observed latency and overload errors, between concurrency.min_async_commands and "
+            + "max_async_commands";
+    private static final boolean CONCURRENCY_ADAPTIVE_DEFAULT = false;
+
+    public static final String CONCURRENCY_MIN_ASYNC_COMMANDS_CONFIG = "concurrency.min_async_commands";
+    private static final String CONCURRENCY_MIN_ASYNC_COMMANDS_DOC = "Minimum number of concurrent asynchronous client "
+            + "requests when the concurrency is adapted dynamically";
+    private static final int CONCURRENCY_MIN_ASYNC_COMMANDS_DEFAULT = 10;
+
+    public static final String CONCURRENCY_LATENCY_TARGET_MS_CONFIG = "concurrency.latency_target_ms";
+    private static final String CONCURRENCY_LATENCY_TARGET_MS_DOC = "Request latency in milliseconds above which the "
+            + "concurrency is reduced when it is adapted dynamically; 0 to only reduce the concurrency on timeouts and "
+            + "overload errors";
+    private static final long CONCURRENCY_LATENCY_TARGET_MS_DEFAULT = 0;
+
+    public static final String RETRY_MAX_RETRIES_CONFIG = "retry.max_retries";
+    private static final String RETRY_MAX_RETRIES_DOC = "Maximum number of times a write that failed with a transient "
+            + "error is retried before the task fails; 0 to disable retries and let Kafka Connect redeliver the failed "
+            + "records instead";
+    private static final int RETRY_MAX_RETRIES_DEFAULT = 5;
+
+    public static final String RETRY_BACKOFF_MS_CONFIG = "retry.backoff_ms";
+    private static final String RETRY_BACKOFF_MS_DOC = "Initial delay in milliseconds before retrying a failed write; "
+            + "the delay doubles with every retry";
+    private static final long RETRY_BACKOFF_MS_DEFAULT = 100;
+
+    public static final String RETRY_MAX_BACKOFF_MS_CONFIG = "retry.max_backoff_ms";
+    private static final String RETRY_MAX_BACKOFF_MS_DOC = "Maximum delay in milliseconds before retrying a failed "
+            + "write";
+    private static final long RETRY_MAX_BACKOFF_MS_DEFAULT = 10000;
+
+    public static final String ERRORS_TOLERANCE_CONFIG = "errors.tolerance";
+    private static final String ERRORS_TOLERANCE_DOC = "How to handle records that cannot be converted or written: "
+            + "\"none\" fails the task, \"all\" skips the record and sends it to the dead letter queue, if one is "
+            + "configured";
+    private static final String ERRORS_TOLERANCE_DEFAULT = "none";
+    private static final Validator ERRORS_TOLERANCE_VALIDATOR = ValidString.in("none", "all");
+
+    public static final String ERRORS_DLQ_TOPIC_CONFIG = "errors.deadletterqueue.topic";
+    private static final String ERRORS_DLQ_TOPIC_DOC = "Kafka topic to send skipped records to when errors are "
+            + "tolerated";
+
+    public static final String ERRORS_DLQ_PRODUCER_PREFIX = "errors.deadletterqueue.producer.";
+    public static final String ERRORS_DLQ_BOOTSTRAP_SERVERS_CONFIG = ERRORS_DLQ_PRODUCER_PREFIX + "bootstrap.servers";
+    private static final String ERRORS_DLQ_BOOTSTRAP_SERVERS_DOC = "Kafka bootstrap servers for the dead letter queue "
+            + "topic; further producer settings can be passed with the same \"" + ERRORS_DLQ_PRODUCER_PREFIX
+            + "\" prefix";
+
+    public static final String ERRORS_DLQ_FILE_CONFIG = "errors.deadletterqueue.file";
+    private static final String ERRORS_DLQ_FILE_DOC = "Local file to append skipped records to when errors are "
+            + "tolerated, e.g. for testing";
+
+    public static final String COMMIT_MAX_WAIT_MS_CONFIG = "commit.max_wait_ms";
+    private static final String COMMIT_MAX_WAIT_MS_DOC = "Maximum time in milliseconds to wait for in-flight requests "
+            + "to complete before offsets are committed; records still in flight afterwards are committed by a later "
+            + "commit. 0 means commit the acknowledged offsets without waiting";
+    private static final long COMMIT_MAX_WAIT_MS_DEFAULT = 0;
+
+    public static final String COALESCE_ENABLED_CONFIG = "coalesce.enabled";
+    private static final String COALESCE_ENABLED_DOC = "Whether to coalesce multiple writes to the same key between "
+            + "two offset flushes into a single write; only supported with the \"replace\", \"replace_only\", "
+            + "\"update\" and \"update_only\" record exists actions";
+    private static final boolean COALESCE_ENABLED_DEFAULT = false;
+
+    public static final String COALESCE_MAX_RECORDS_CONFIG = "coalesce.max_records";
+    private static final String COALESCE_MAX_RECORDS_DOC = "Maximum number of distinct keys to buffer for write "
+            + "coalescing before the buffered records are written";
+    private static final int COALESCE_MAX_RECORDS_DEFAULT = 10000;
+
+    public static final String NODE_MAX_IN_FLIGHT_CONFIG = "node.max_in_flight";
+    private static final String NODE_MAX_IN_FLIGHT_DOC = "Maximum number of requests in flight per cluster node; "
+            + "requests beyond the limit wait in a queue per node, so that a slow node does not hold back writes to "
+            + "the other nodes; 0 disables the node queues";
+    private static final int NODE_MAX_IN_FLIGHT_DEFAULT = 0;
+
+    public static final String NODE_MAX_QUEUED_RECORDS_CONFIG = "node.max_queued_records";
+    private static final String NODE_MAX_QUEUED_RECORDS_DOC = "Maximum number of records waiting in a node's queue "
+            + "before the task blocks";
+    private static final int NODE_MAX_QUEUED_RECORDS_DEFAULT = 10000;
+
+    public static final String CLIENT_SHARDS_CONFIG = "client.shards";
+    private static final String CLIENT_SHARDS_DOC = "Number of async clients per task; records are routed to a client "
+            + "by the digest of their key and the async command limit is split between the clients";
+    private static final int CLIENT_SHARDS_DEFAULT = 1;
+
+    public static final String CLIENT_SELECTOR_THREADS_CONFIG = "client.selector_threads";
+    private static final String CLIENT_SELECTOR_THREADS_DOC = "Number of selector threads (event loops) of each async "
+            + "client";
+    private static final int CLIENT_SELECTOR_THREADS_DEFAULT = 1;
+
+    public static final String CLIENT_SHARED_CONFIG = "client.shared";
+    private static final String CLIENT_SHARED_DOC = "Whether the tasks of a worker share their async clients; clients "
+            + "are shared by tasks connecting to the same hosts with the same client settings, and each task still "
+            + "limits its own async commands";
+    private static final boolean CLIENT_SHARED_DEFAULT = false;
+
+    public static final String CLIENT_SHARED_IDLE_MS_CONFIG = "client.shared_idle_ms";
+    private static final String CLIENT_SHARED_IDLE_MS_DOC = "Time a shared client is kept open after the last task "
+            + "using it has stopped, so that restarted tasks can reuse it";
+    private static final long CLIENT_SHARED_IDLE_MS_DEFAULT = 60000;
+
+    public static final String CONVERSION_THREADS_CONFIG = "conversion.threads";
+    private static final String CONVERSION_THREADS_DOC = "Number of threads per task to convert records on; batches "
+            + "are split into chunks that are converted concurrently, while records are still written in order; 0 "
+            + "converts records on the task thread";
+    private static final int CONVERSION_THREADS_DEFAULT = 0;
+
+    public static final String CONVERSION_MIN_CHUNK_RECORDS_CONFIG = "conversion.min_chunk_records";
+    private static final String CONVERSION_MIN_CHUNK_RECORDS_DOC = "Minimum number of records per chunk converted on a "
+            + "conversion thread; smaller batches are converted on the task thread";
+    private static final int CONVERSION_MIN_CHUNK_RECORDS_DEFAULT = 100;
+
+    public static final String NAME_CONFIG = "name";
+    private static final String NAME_DOC = "Name of the connector; used to name the task's JMX metrics";
+    private static final String NAME_DEFAULT = "aerospike-sink";
+
+    public static final String TASK_ID_CONFIG = "task.id";
+    private static final String TASK_ID_DOC = "Index of the task within the connector; set by the connector for each "
+            + "task";
+    private static final int TASK_ID_DEFAULT = 0;
+
     public static ConfigDef baseConfigDef() {
         return new ConfigDef().define(TOPICS_CONFIG, Type.LIST, Importance.HIGH, TOPICS_DOC)
                 .define(HOSTS_CONFIG, Type.STRING, HOSTS_DEFAULT, HOSTS_VALIDATOR, Importance.HIGH, HOSTS_DOC)
@@ -71,10 +205,53 @@ public class ConnectorConfig extends AbstractConfig {
                         POLICY_RECORD_EXISTS_ACTION_VALIDATOR, Importance.LOW, POLICY_RECORD_EXISTS_ACTION_DOC)
                 .define(POLICY_EXPIRATION_CONFIG, Type.INT, POLICY_EXPIRATION_DEFAULT, Importance.LOW,
                         POLICY_EXPIRATION_DOC)
+                .define(POLICY_DURABLE_DELETE_CONFIG, Type.BOOLEAN, POLICY_DURABLE_DELETE_DEFAULT, Importance.LOW,
+                        POLICY_DURABLE_DELETE_DOC)
                 .define(MAX_ASYNC_COMMANDS_CONFIG, Type.INT, MAX_ASYNC_COMMANDS_DEFAULT, Importance.LOW,
                         MAX_ASYNC_COMMANDS_DOC)
                 .define(MAX_COMMAND_ACTION_CONFIG, Type.STRING, MAX_COMMAND_ACTION_DEFAULT,
-                        MAX_COMMAND_ACTION_VALIDATOR, Importance.LOW, MAX_COMMAND_ACTION_DOC);
+                        MAX_COMMAND_ACTION_VALIDATOR, Importance.LOW, MAX_COMMAND_ACTION_DOC)
+                .define(CONCURRENCY_ADAPTIVE_CONFIG, Type.BOOLEAN, CONCURRENCY_ADAPTIVE_DEFAULT, Importance.LOW,
+                        CONCURRENCY_ADAPTIVE_DOC)
+                .define(CONCURRENCY_MIN_ASYNC_COMMANDS_CONFIG, Type.INT, CONCURRENCY_MIN_ASYNC_COMMANDS_DEFAULT,
+                        Range.atLeast(1), Importance.LOW, CONCURRENCY_MIN_ASYNC_COMMANDS_DOC)
+                .define(CONCURRENCY_LATENCY_TARGET_MS_CONFIG, Type.LONG, CONCURRENCY_LATENCY_TARGET_MS_DEFAULT,
+                        Range.atLeast(0), Importance.LOW, CONCURRENCY_LATENCY_TARGET_MS_DOC)
+                .define(RETRY_MAX_RETRIES_CONFIG, Type.INT, RETRY_MAX_RETRIES_DEFAULT, Range.atLeast(0),
+                        Importance.LOW, RETRY_MAX_RETRIES_DOC)
+                .define(RETRY_BACKOFF_MS_CONFIG, Type.LONG, RETRY_BACKOFF_MS_DEFAULT, Range.atLeast(1),
+                        Importance.LOW, RETRY_BACKOFF_MS_DOC)
+                .define(RETRY_MAX_BACKOFF_MS_CONFIG, Type.LONG, RETRY_MAX_BACKOFF_MS_DEFAULT, Range.atLeast(1),
+                        Importance.LOW, RETRY_MAX_BACKOFF_MS_DOC)
+                .define(ERRORS_TOLERANCE_CONFIG, Type.STRING, ERRORS_TOLERANCE_DEFAULT, ERRORS_TOLERANCE_VALIDATOR,
+                        Importance.MEDIUM, ERRORS_TOLERANCE_DOC)
+                .define(ERRORS_DLQ_TOPIC_CONFIG, Type.STRING, null, Importance.LOW, ERRORS_DLQ_TOPIC_DOC)
+                .define(ERRORS_DLQ_BOOTSTRAP_SERVERS_CONFIG, Type.STRING, null, Importance.LOW,
+                        ERRORS_DLQ_BOOTSTRAP_SERVERS_DOC)
+                .define(ERRORS_DLQ_FILE_CONFIG, Type.STRING, null, Importance.LOW, ERRORS_DLQ_FILE_DOC)
+                .define(COMMIT_MAX_WAIT_MS_CONFIG, Type.LONG, COMMIT_MAX_WAIT_MS_DEFAULT, Range.atLeast(0),
+                        Importance.LOW, COMMIT_MAX_WAIT_MS_DOC)
+                .define(COALESCE_ENABLED_CONFIG, Type.BOOLEAN, COALESCE_ENABLED_DEFAULT, Importance.LOW,
+                        COALESCE_ENABLED_DOC)
+                .define(COALESCE_MAX_RECORDS_CONFIG, Type.INT, COALESCE_MAX_RECORDS_DEFAULT, Range.atLeast(1),
+                        Importance.LOW, COALESCE_MAX_RECORDS_DOC)
+                .define(NODE_MAX_IN_FLIGHT_CONFIG, Type.INT, NODE_MAX_IN_FLIGHT_DEFAULT, Range.atLeast(0),
+                        Importance.LOW, NODE_MAX_IN_FLIGHT_DOC)
+                .define(NODE_MAX_QUEUED_RECORDS_CONFIG, Type.INT, NODE_MAX_QUEUED_RECORDS_DEFAULT, Range.atLeast(1),
+                        Importance.LOW, NODE_MAX_QUEUED_RECORDS_DOC)
+                .define(CLIENT_SHARDS_CONFIG, Type.INT, CLIENT_SHARDS_DEFAULT, Range.atLeast(1), Importance.LOW,
+                        CLIENT_SHARDS_DOC)
+                .define(CLIENT_SELECTOR_THREADS_CONFIG, Type.INT, CLIENT_SELECTOR_THREADS_DEFAULT, Range.atLeast(1),
+                        Importance.LOW, CLIENT_SELECTOR_THREADS_DOC)
+                .define(CLIENT_SHARED_CONFIG, Type.BOOLEAN, CLIENT_SHARED_DEFAULT, Importance.LOW, CLIENT_SHARED_DOC)
+                .define(CLIENT_SHARED_IDLE_MS_CONFIG, Type.LONG, CLIENT_SHARED_IDLE_MS_DEFAULT, Range.atLeast(0),
+                        Importance.LOW, CLIENT_SHARED_IDLE_MS_DOC)
+                .define(CONVERSION_THREADS_CONFIG, Type.INT, CONVERSION_THREADS_DEFAULT, Range.atLeast(0),
+                        Importance.LOW, CONVERSION_THREADS_DOC)
+                .define(CONVERSION_MIN_CHUNK_RECORDS_CONFIG, Type.INT, CONVERSION_MIN_CHUNK_RECORDS_DEFAULT,
+                        Range.atLeast(1), Importance.LOW, CONVERSION_MIN_CHUNK_RECORDS_DOC)
+                .define(NAME_CONFIG, Type.STRING, NAME_DEFAULT, Importance.LOW, NAME_DOC)
+                .define(TASK_ID_CONFIG, Type.INT, TASK_ID_DEFAULT, Importance.LOW, TASK_ID_DOC);
     }
 
     static ConfigDef config = baseConfigDef();
@@ -111,6 +288,10 @@ public class ConnectorConfig extends AbstractConfig {
         return getInt(POLICY_EXPIRATION_CONFIG);
     }
 
+    public boolean isPolicyDurableDelete() {
+        return getBoolean(POLICY_DURABLE_DELETE_CONFIG);
+    }
+
     public int getMaxAsyncCommands() {
         return getInt(MAX_ASYNC_COMMANDS_CONFIG);
     }
@@ -130,6 +311,103 @@ public class ConnectorConfig extends AbstractConfig {
         }
     }
 
+    public boolean isAdaptiveConcurrencyEnabled() {
+        return getBoolean(CONCURRENCY_ADAPTIVE_CONFIG);
+    }
+
+    public int getMinAsyncCommands() {
+        return getInt(CONCURRENCY_MIN_ASYNC_COMMANDS_CONFIG);
+    }
+
+    public long getLatencyTargetMs() {
+        return getLong(CONCURRENCY_LATENCY_TARGET_MS_CONFIG);
+    }
+
+    public int getRetryMaxRetries() {
+        return getInt(RETRY_MAX_RETRIES_CONFIG);
+    }
+
+    public long getRetryBackoffMs() {
+        return getLong(RETRY_BACKOFF_MS_CONFIG);
+    }
+
+    public long getRetryMaxBackoffMs() {
+        return getLong(RETRY_MAX_BACKOFF_MS_CONFIG);
+    }
+
+    public boolean isErrorToleranceEnabled() {
+        return "all".equals(getString(ERRORS_TOLERANCE_CONFIG));
+    }
+
+    public String getDeadLetterQueueTopic() {
+        return getString(ERRORS_DLQ_TOPIC_CONFIG);
+    }
+
+    public Map<String, Object> getDeadLetterQueueProducerConfig() {
+        String topic = getDeadLetterQueueTopic();
+        if (topic != null && getString(ERRORS_DLQ_BOOTSTRAP_SERVERS_CONFIG) == null) {
+            throw new ConfigException(ERRORS_DLQ_BOOTSTRAP_SERVERS_CONFIG, null,
+                    "Bootstrap servers are required for dead letter queue topic " + topic);
+        }
+        return originalsWithPrefix(ERRORS_DLQ_PRODUCER_PREFIX);
+    }
+
+    public String getDeadLetterQueueFile() {
+        return getString(ERRORS_DLQ_FILE_CONFIG);
+    }
+
+    public long getCommitMaxWaitMs() {
+        return getLong(COMMIT_MAX_WAIT_MS_CONFIG);
+    }
+
+    public boolean isCoalesceEnabled() {
+        return getBoolean(COALESCE_ENABLED_CONFIG);
+    }
+
+    public int getCoalesceMaxRecords() {
+        return getInt(COALESCE_MAX_RECORDS_CONFIG);
+    }
+
+    public int getNodeMaxInFlight() {
+        return getInt(NODE_MAX_IN_FLIGHT_CONFIG);
+    }
+
+    public int getNodeMaxQueuedRecords() {
+        return getInt(NODE_MAX_QUEUED_RECORDS_CONFIG);
+    }
+
+    public int getClientShards() {
+        return getInt(CLIENT_SHARDS_CONFIG);
+    }
+
+    public int getClientSelectorThreads() {
+        return getInt(CLIENT_SELECTOR_THREADS_CONFIG);
+    }
+
+    public boolean isClientShared() {
+        return getBoolean(CLIENT_SHARED_CONFIG);
+    }
+
+    public long getClientSharedIdleMs() {
+        return getLong(CLIENT_SHARED_IDLE_MS_CONFIG);
+    }
+
+    public int getConversionThreads() {
+        return getInt(CONVERSION_THREADS_CONFIG);
+    }
+
+    public int getConversionMinChunkRecords() {
+        return getInt(CONVERSION_MIN_CHUNK_RECORDS_CONFIG);
+    }
+
+    public String getName() {
+        return getString(NAME_CONFIG);
+    }
+
+    public int getTaskId() {
+        return getInt(TASK_ID_CONFIG);
+    }
+
     public Map<String, TopicConfig> getTopicConfigs() {
         Map<String, TopicConfig> topicConfigs = new HashMap<>();
         Map<String, Object> defaultTopicConfig = originalsWithPrefix(TOPIC_CONFIG_PREFIX);
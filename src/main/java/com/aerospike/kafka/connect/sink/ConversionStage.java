@@ -0,0 +1,221 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+import com.aerospike.kafka.connect.data.AerospikeRecord;
+import com.aerospike.kafka.connect.data.RecordMapperFactory;
+
+/**
+ * Converts the records passed to the task, either on the task thread or on a
+ * pool of conversion threads. Large batches are split into contiguous
+ * chunks, one per conversion thread, and each thread converts its chunk with
+ * its own converters, since converters are not thread-safe. The task takes
+ * the converted records in the order of the batch, waiting for a chunk only
+ * when it reaches it, so that it dispatches the records of the first chunks
+ * while the following chunks are still being converted, and writes to each
+ * key stay in order.
+ */
+class ConversionStage {
+
+    private static final ThreadFactory CONVERTER_THREADS = new DaemonThreadFactory("aerospike-converter");
+
+    private final SinkTaskMetrics metrics;
+    private final RecordMapperFactory mappers;
+    private final RecordMapperFactory[] workerMappers;
+    private final ExecutorService executor;
+    private final int minChunkRecords;
+
+    ConversionStage(Map<String, TopicConfig> topicConfigs, int threads,
+            int minChunkRecords, SinkTaskMetrics metrics) {
+        this.metrics = metrics;
+        this.mappers = new RecordMapperFactory(topicConfigs);
+        this.minChunkRecords = minChunkRecords;
+        if (threads > 0) {
+            workerMappers = new RecordMapperFactory[threads];
+            for (int i = 0; i < threads; i++) {
+                workerMappers[i] = new RecordMapperFactory(topicConfigs);
+            }
+            executor = Executors.newFixedThreadPool(threads, CONVERTER_THREADS);
+        } else {
+            workerMappers = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * Starts converting the records. The batch must be closed once the task
+     * is done with it, even if taking a record failed.
+     */
+    public Batch convert(List<SinkRecord> records) {
+        int chunks = executor == null ? 1 : Math.min(workerMappers.length, records.size() / minChunkRecords);
+        if (chunks <= 1) {
+            return new Batch(records, null, 0);
+        }
+        int chunkSize = (records.size() + chunks - 1) / chunks;
+        Batch batch = new Batch(records, new Future<?>[chunks], chunkSize);
+        for (int i = 0; i < chunks; i++) {
+            int from = i * chunkSize;
+            int to = Math.min(from + chunkSize, records.size());
+            batch.futures[i] = executor.submit(new Chunk(workerMappers[i], batch, from, to));
+        }
+        return batch;
+    }
+
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private AerospikeRecord convert(RecordMapperFactory mappers, SinkRecord record) {
+        long startNanos = System.nanoTime();
+        AerospikeRecord converted = mappers.getMapper(record).convertRecord(record);
+        metrics.recordConversion(metrics.topic(record.topic()), System.nanoTime() - startNanos);
+        return converted;
+    }
+
+    /**
+     * The records of one call to put. Conversion errors are raised when the
+     * failed record is taken, like errors of records converted on the task
+     * thread.
+     */
+    class Batch {
+
+        private final List<SinkRecord> records;
+        private final Future<?>[] futures;
+        private final int chunkSize;
+        private final AerospikeRecord[] converted;
+        private final RuntimeException[] errors;
+        private int completed = 0;
+
+        Batch(List<SinkRecord> records, Future<?>[] futures, int chunkSize) {
+            this.records = records;
+            this.futures = futures;
+            this.chunkSize = chunkSize;
+            this.converted = futures == null ? null : new AerospikeRecord[records.size()];
+            this.errors = futures == null ? null : new RuntimeException[records.size()];
+        }
+
+        /**
+         * Returns the converted record at the given index of the batch.
+         *
+         * @throws RuntimeException if the record could not be converted: a
+         *         DataException for unsupported records, an AerospikeException
+         *         if the record's key could not be created, or any other error
+         *         of the converter
+         */
+        public AerospikeRecord record(int index) {
+            if (futures == null) {
+                return convert(mappers, records.get(index));
+            }
+            int chunk = index / chunkSize;
+            while (completed <= chunk) {
+                await(futures[completed]);
+                completed++;
+            }
+            if (errors[index] != null) {
+                throw errors[index];
+            }
+            return converted[index];
+        }
+
+        private void await(Future<?> future) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectException("Interrupted while converting records", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new ConnectException("Error converting records", cause);
+            }
+        }
+
+        /**
+         * Waits for the remaining chunks, so that their converters are free
+         * for the next batch.
+         */
+        public void close() {
+            if (futures == null) {
+                return;
+            }
+            boolean interrupted = false;
+            for (int i = completed; i < futures.length; i++) {
+                while (true) {
+                    try {
+                        futures[i].get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        break;
+                    }
+                }
+            }
+            completed = futures.length;
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Converts a range of the batch on a conversion thread.
+     */
+    class Chunk implements Runnable {
+
+        private final RecordMapperFactory mappers;
+        private final Batch batch;
+        private final int from;
+        private final int to;
+
+        Chunk(RecordMapperFactory mappers, Batch batch, int from, int to) {
+            this.mappers = mappers;
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void run() {
+            for (int i = from; i < to; i++) {
+                try {
+                    batch.converted[i] = convert(mappers, batch.records.get(i));
+                } catch (RuntimeException e) {
+                    batch.errors[i] = e;
+                }
+            }
+        }
+    }
+}
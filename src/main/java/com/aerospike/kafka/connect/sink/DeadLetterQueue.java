@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.nio.ByteBuffer;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+
+import com.fasterxml.jackson.core.Base64Variants;
+
+/**
+ * A DeadLetterQueue receives the records that could not be converted or
+ * written, together with the reason for the failure. Each entry is a JSON
+ * document with the original topic, partition, offset and timestamp, the
+ * failure reason and error message, and the string representations of the
+ * record key and value; binary keys and values are base64 encoded.
+ */
+public abstract class DeadLetterQueue {
+
+    /**
+     * Callback invoked once an entry has been written to the dead letter
+     * queue.
+     */
+    public interface Completion {
+        /**
+         * @param error Error that occurred while writing the entry, or null
+         */
+        void onCompletion(Exception error);
+    }
+
+    public abstract void write(SinkRecord record, String reason, Throwable error, Completion completion);
+
+    public abstract void close();
+
+    public static DeadLetterQueue create(ConnectorConfig config) {
+        String topic = config.getDeadLetterQueueTopic();
+        if (topic != null) {
+            return new KafkaDeadLetterQueue(topic, config.getDeadLetterQueueProducerConfig());
+        }
+        String file = config.getDeadLetterQueueFile();
+        if (file != null) {
+            return new FileDeadLetterQueue(file);
+        }
+        return null;
+    }
+
+    protected static String toJson(SinkRecord record, String reason, Throwable error) {
+        StringBuilder json = new StringBuilder(256);
+        json.append('{');
+        appendField(json, "topic", record.topic()).append(',');
+        json.append("\"partition\":").append(record.kafkaPartition()).append(',');
+        json.append("\"offset\":").append(record.kafkaOffset()).append(',');
+        json.append("\"timestamp\":").append(record.timestamp()).append(',');
+        appendField(json, "reason", reason).append(',');
+        appendField(json, "error", error == null ? null : error.toString()).append(',');
+        appendField(json, "key", toString(record.key())).append(',');
+        appendField(json, "value", toString(record.value()));
+        json.append('}');
+        return json.toString();
+    }
+
+    /**
+     * Returns the string representation of a record key or value, or null.
+     * Binary data is base64 encoded.
+     */
+    protected static String toString(Object value) {
+        if (value instanceof byte[]) {
+            return Base64Variants.getDefaultVariant().encode((byte[]) value);
+        }
+        if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return Base64Variants.getDefaultVariant().encode(bytes);
+        }
+        return value == null ? null : value.toString();
+    }
+
+    private static StringBuilder appendField(StringBuilder json, String name, String value) {
+        json.append('"').append(name).append("\":");
+        if (value == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            case '\n':
+                json.append("\\n");
+                break;
+            case '\r':
+                json.append("\\r");
+                break;
+            case '\t':
+                json.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+        }
+        return json.append('"');
+    }
+}
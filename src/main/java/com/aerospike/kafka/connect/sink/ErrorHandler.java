@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.kafka.connect.errors.ConnectException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The ErrorHandler decides what happens to records that cannot be converted
+ * or written. Unless errors are tolerated, such errors fail the task. When
+ * errors are tolerated, failed records are counted per reason, sent to the
+ * dead letter queue (if one is configured) and their offsets are acknowledged
+ * once the dead letter queue has accepted them, so that the rest of the batch
+ * keeps flowing. Records are written to the dead letter queue on a dedicated
+ * thread, since failed writes are handled on the client's selector threads,
+ * which must not block on the dead letter queue.
+ */
+public class ErrorHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ErrorHandler.class);
+
+    private static final ThreadFactory DEAD_LETTER_THREADS = new DaemonThreadFactory("aerospike-dead-letter-queue");
+
+    static final long CLOSE_TIMEOUT_MS = 30_000;
+
+    /**
+     * Reasons why a record could not be written.
+     */
+    public enum Reason {
+        /** The record could not be converted to an Aerospike record. */
+        CONVERSION_ERROR,
+        /** The cluster rejected the write with a non-transient error. */
+        WRITE_ERROR,
+        /** The write failed with a transient error and all retries failed. */
+        RETRIES_EXHAUSTED;
+
+        public String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final boolean tolerant;
+    private final DeadLetterQueue deadLetterQueue;
+    private final ExecutorService deadLetterExecutor;
+    private final Map<Reason, AtomicLong> counts = new EnumMap<>(Reason.class);
+    private final AtomicReference<Exception> deadLetterQueueError = new AtomicReference<>();
+
+    public ErrorHandler(boolean tolerant, DeadLetterQueue deadLetterQueue) {
+        this.tolerant = tolerant;
+        this.deadLetterQueue = deadLetterQueue;
+        this.deadLetterExecutor = deadLetterQueue == null ? null
+                : Executors.newSingleThreadExecutor(DEAD_LETTER_THREADS);
+        for (Reason reason : Reason.values()) {
+            counts.put(reason, new AtomicLong(0));
+        }
+    }
+
+    public static ErrorHandler create(ConnectorConfig config) {
+        boolean tolerant = config.isErrorToleranceEnabled();
+        DeadLetterQueue deadLetterQueue = tolerant ? DeadLetterQueue.create(config) : null;
+        return new ErrorHandler(tolerant, deadLetterQueue);
+    }
+
+    public boolean isTolerant() {
+        return tolerant;
+    }
+
+    /**
+     * Handles a record that could not be written. The offset handle and all
+     * records it superseded get acknowledged once they have been sent to the
+     * dead letter queue, which happens asynchronously.
+     */
+    public void handle(final OffsetTracker.Offset offset, final Reason reason, final Throwable error) {
+        counts.get(reason).incrementAndGet();
+        log.warn("Skipping record from topic {}, partition {}, offset {} ({}): {}", offset.record().topic(),
+                offset.record().kafkaPartition(), offset.offset(), reason.label(), error.toString());
+        if (deadLetterQueue == null) {
+            offset.ack();
+            return;
+        }
+        try {
+            deadLetterExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeDeadLetters(offset, reason, error);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Error handler closed - not writing record at offset {} to dead letter queue", offset.offset());
+        }
+    }
+
+    private void writeDeadLetters(OffsetTracker.Offset offset, Reason reason, Throwable error) {
+        int records = 0;
+        for (OffsetTracker.Offset o = offset; o != null; o = o.superseded()) {
+            records++;
+        }
+        DeadLetterQueue.Completion completion = new AckCompletion(offset, records);
+        for (OffsetTracker.Offset o = offset; o != null; o = o.superseded()) {
+            try {
+                deadLetterQueue.write(o.record(), reason.label(), error, completion);
+            } catch (RuntimeException e) {
+                completion.onCompletion(e);
+            }
+        }
+    }
+
+    /**
+     * Raises an error if writing to the dead letter queue failed.
+     */
+    public void raiseErrors() {
+        Exception error = deadLetterQueueError.get();
+        if (error != null) {
+            throw new ConnectException("Error writing to dead letter queue", error);
+        }
+    }
+
+    public long getCount(Reason reason) {
+        return counts.get(reason).get();
+    }
+
+    public Map<Reason, Long> getCounts() {
+        Map<Reason, Long> result = new EnumMap<>(Reason.class);
+        for (Map.Entry<Reason, AtomicLong> entry : counts.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    /**
+     * Writes the records still waiting for the dead letter queue and closes
+     * it.
+     */
+    public void close() {
+        if (deadLetterQueue == null) {
+            return;
+        }
+        deadLetterExecutor.shutdown();
+        try {
+            if (!deadLetterExecutor.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("Timed out writing records to dead letter queue");
+                deadLetterExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deadLetterExecutor.shutdownNow();
+        }
+        deadLetterQueue.close();
+    }
+
+    /*
+     * Acknowledges the offset once all of its records have been written to
+     * the dead letter queue.
+     */
+    class AckCompletion implements DeadLetterQueue.Completion {
+
+        private final OffsetTracker.Offset offset;
+        private final AtomicInteger remaining;
+
+        AckCompletion(OffsetTracker.Offset offset, int records) {
+            this.offset = offset;
+            this.remaining = new AtomicInteger(records);
+        }
+
+        @Override
+        public void onCompletion(Exception error) {
+            if (error != null) {
+                log.error("Error writing record to dead letter queue", error);
+                deadLetterQueueError.compareAndSet(null, error);
+                return;
+            }
+            if (remaining.decrementAndGet() == 0) {
+                offset.ack();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dead letter queue that appends one JSON document per line to a local file;
+ * mainly intended for testing.
+ */
+public class FileDeadLetterQueue extends DeadLetterQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(FileDeadLetterQueue.class);
+
+    private final Writer writer;
+
+    public FileDeadLetterQueue(String path) {
+        try {
+            writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(path, true), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new ConnectException("Error opening dead letter queue file " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized void write(SinkRecord record, String reason, Throwable error, Completion completion) {
+        Exception writeError = null;
+        try {
+            writer.write(toJson(record, reason, error));
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            writeError = e;
+        }
+        completion.onCompletion(writeError);
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.warn("Error closing dead letter queue file", e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+/**
+ * Dead letter queue that produces the failed records to a Kafka topic. The
+ * message key is the string representation of the original record key,
+ * base64 encoded if it is binary.
+ */
+public class KafkaDeadLetterQueue extends DeadLetterQueue {
+
+    private final String topic;
+    private final KafkaProducer<String, String> producer;
+
+    public KafkaDeadLetterQueue(String topic, Map<String, Object> producerConfig) {
+        this.topic = topic;
+        Map<String, Object> config = new HashMap<>(producerConfig);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        this.producer = new KafkaProducer<>(config);
+    }
+
+    @Override
+    public void write(SinkRecord record, String reason, Throwable error, final Completion completion) {
+        String key = toString(record.key());
+        String value = toJson(record, reason, error);
+        producer.send(new ProducerRecord<>(topic, key, value), new Callback() {
+            @Override
+            public void onCompletion(RecordMetadata metadata, Exception exception) {
+                completion.onCompletion(exception);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        producer.close();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+/**
+ * The OffsetTracker keeps track of the records that have been handed to the
+ * writer for each topic partition and determines the highest offset up to
+ * which all records have been acknowledged, i.e. the offset that can safely
+ * be committed. Records are tracked and offsets are computed on the task
+ * thread; acknowledgements may arrive on any thread.
+ */
+public class OffsetTracker {
+
+    private final Map<TopicPartition, PartitionOffsets> partitions = new HashMap<>();
+    private PartitionOffsets lastPartition;
+
+    /**
+     * Starts tracking the given record. The returned handle must be
+     * acknowledged once the record has been written, or once it can be
+     * skipped.
+     */
+    public Offset track(SinkRecord record) {
+        PartitionOffsets partition = partitionFor(record.topic(), record.kafkaPartition());
+        Offset offset = new Offset(record);
+        partition.pending.addLast(offset);
+        return offset;
+    }
+
+    /**
+     * Returns for each partition the offset of the next record to consume
+     * after the last contiguously acknowledged record. Partitions without any
+     * acknowledged records are omitted.
+     */
+    public Map<TopicPartition, OffsetAndMetadata> committableOffsets() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (PartitionOffsets partition : partitions.values()) {
+            long committable = partition.advance();
+            if (committable >= 0) {
+                offsets.put(partition.topicPartition, new OffsetAndMetadata(committable));
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Returns for each partition the offset of its first record that has not
+     * been acknowledged yet. Partitions whose tracked records have all been
+     * acknowledged are omitted.
+     */
+    public Map<TopicPartition, Long> unacknowledgedOffsets() {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        for (PartitionOffsets partition : partitions.values()) {
+            partition.advance();
+            Offset head = partition.pending.peekFirst();
+            if (head != null) {
+                offsets.put(partition.topicPartition, head.offset);
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Returns the total number of tracked records that have not been
+     * acknowledged yet or that follow a record that has not been acknowledged
+     * yet.
+     */
+    public int pending() {
+        int pending = 0;
+        for (PartitionOffsets partition : partitions.values()) {
+            partition.advance();
+            pending += partition.pending.size();
+        }
+        return pending;
+    }
+
+    /**
+     * Stops tracking the given partitions, e.g. after they have been revoked
+     * from the task.
+     */
+    public void remove(Collection<TopicPartition> topicPartitions) {
+        for (TopicPartition topicPartition : topicPartitions) {
+            partitions.remove(topicPartition);
+        }
+        lastPartition = null;
+    }
+
+    public void clear() {
+        partitions.clear();
+        lastPartition = null;
+    }
+
+    private PartitionOffsets partitionFor(String topic, int partition) {
+        PartitionOffsets last = lastPartition;
+        if (last != null && last.topicPartition.partition() == partition
+                && last.topicPartition.topic().equals(topic)) {
+            return last;
+        }
+        TopicPartition topicPartition = new TopicPartition(topic, partition);
+        PartitionOffsets offsets = partitions.get(topicPartition);
+        if (offsets == null) {
+            offsets = new PartitionOffsets(topicPartition);
+            partitions.put(topicPartition, offsets);
+        }
+        lastPartition = offsets;
+        return offsets;
+    }
+
+    /*
+     * Records of a single partition in the order in which they were tracked.
+     */
+    static class PartitionOffsets {
+
+        private final TopicPartition topicPartition;
+        private final ArrayDeque<Offset> pending = new ArrayDeque<>();
+        private long committable = -1;
+
+        PartitionOffsets(TopicPartition topicPartition) {
+            this.topicPartition = topicPartition;
+        }
+
+        long advance() {
+            Offset head;
+            while ((head = pending.peekFirst()) != null && head.acked) {
+                committable = head.offset + 1;
+                pending.pollFirst();
+            }
+            return committable;
+        }
+    }
+
+    /**
+     * Handle for a single tracked record.
+     */
+    public static class Offset {
+
+        private final SinkRecord record;
+        private final long offset;
+        private volatile boolean acked = false;
+        private Offset superseded;
+
+        Offset(SinkRecord record) {
+            this.record = record;
+            this.offset = record.kafkaOffset();
+        }
+
+        public long offset() {
+            return offset;
+        }
+
+        public SinkRecord record() {
+            return record;
+        }
+
+        /**
+         * Returns the most recent record replaced by this one, if any.
+         */
+        public Offset superseded() {
+            return superseded;
+        }
+
+        public boolean isAcked() {
+            return acked;
+        }
+
+        /**
+         * Marks a record that will not be written because this record
+         * replaces it; the superseded record gets acknowledged together with
+         * this one. Must be called before this record is written.
+         */
+        public void supersede(Offset previous) {
+            Offset last = this;
+            while (last.superseded != null) {
+                last = last.superseded;
+            }
+            last.superseded = previous;
+        }
+
+        public void ack() {
+            Offset offset = this;
+            while (offset != null) {
+                offset.acked = true;
+                offset = offset.superseded;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.List;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.listener.DeleteListener;
+import com.aerospike.client.listener.RecordListener;
+import com.aerospike.client.listener.WriteListener;
+import com.aerospike.client.policy.WritePolicy;
+
+/**
+ * Spreads the commands over several backends, e.g. multiple async clients
+ * with their own selector threads. Keys are routed by their digest, so all
+ * commands for a key go through the same shard.
+ */
+public class ShardedBackend implements AsyncBackend {
+
+    private final AsyncBackend[] shards;
+
+    public ShardedBackend(List<? extends AsyncBackend> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard required");
+        }
+        this.shards = shards.toArray(new AsyncBackend[shards.size()]);
+    }
+
+    /*
+     * Uses digest bytes other than the ones the partition ID is taken from,
+     * so that the shards do not correlate with the nodes.
+     */
+    int shardIndex(Key key) {
+        byte[] digest = key.digest;
+        int hash = ((digest[4] & 0xFF) << 16) | ((digest[5] & 0xFF) << 8) | (digest[6] & 0xFF);
+        return hash % shards.length;
+    }
+
+    private AsyncBackend shard(Key key) {
+        return shards[shardIndex(key)];
+    }
+
+    @Override
+    public void put(WritePolicy policy, WriteListener listener, Key key, Bin... bins) throws AerospikeException {
+        shard(key).put(policy, listener, key, bins);
+    }
+
+    @Override
+    public void operate(WritePolicy policy, RecordListener listener, Key key, Operation... operations)
+            throws AerospikeException {
+        shard(key).operate(policy, listener, key, operations);
+    }
+
+    @Override
+    public void delete(WritePolicy policy, DeleteListener listener, Key key) throws AerospikeException {
+        shard(key).delete(policy, listener, key);
+    }
+
+    @Override
+    public String nodeName(Key key) {
+        return shard(key).nodeName(key);
+    }
+
+    @Override
+    public void close() {
+        for (AsyncBackend shard : shards) {
+            shard.close();
+        }
+    }
+}
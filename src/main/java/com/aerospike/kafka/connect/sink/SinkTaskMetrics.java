@@ -0,0 +1,408 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aerospike.client.ResultCode;
+import com.aerospike.kafka.connect.data.BinCompressor;
+
+/**
+ * Metrics of a sink task, exposed as platform MXBeans once registered:
+ * <ul>
+ * <li><code>com.aerospike.kafka.connect:type=sink-task-metrics,connector=&lt;name&gt;,task=&lt;id&gt;</code>
+ * for the task as a whole and</li>
+ * <li><code>com.aerospike.kafka.connect:type=sink-topic-metrics,connector=&lt;name&gt;,task=&lt;id&gt;,topic=&lt;topic&gt;</code>
+ * for each topic the task has received records from.</li>
+ * </ul>
+ * All counters are updated lock-free, since most of them are recorded from
+ * the async client's completion callbacks.
+ */
+public class SinkTaskMetrics implements SinkTaskMetricsMXBean {
+
+    private static final Logger log = LoggerFactory.getLogger(SinkTaskMetrics.class);
+
+    public static final String DOMAIN = "com.aerospike.kafka.connect";
+
+    private final TopicMetrics total = new TopicMetrics();
+    private final ConcurrentMap<String, TopicMetrics> topics = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, AtomicLong> errorsByResultCode = new ConcurrentHashMap<>();
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram commitDuration = new LatencyHistogram();
+    private final LatencyHistogram conversionTime = new LatencyHistogram();
+    private final AtomicLong putConversionNanos = new AtomicLong(0);
+    private final AtomicLong putDispatchNanos = new AtomicLong(0);
+    private final List<ObjectName> registered = new ArrayList<>();
+    private volatile AsyncWriter.Counter inFlight;
+    private volatile ErrorHandler errorHandler;
+    private volatile ConcurrencyLimiter limiter;
+    private String connector;
+    private String task;
+
+    /**
+     * Registers the task's MXBean. Topic MXBeans are registered as records
+     * from new topics arrive. Failures to register are logged, but do not
+     * prevent the task from running.
+     */
+    public synchronized void register(String connectorName, int taskId) {
+        connector = connectorName;
+        task = String.valueOf(taskId);
+        register(taskObjectName(), this);
+        for (Map.Entry<String, TopicMetrics> entry : topics.entrySet()) {
+            register(topicObjectName(entry.getKey()), entry.getValue());
+        }
+    }
+
+    public synchronized void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                log.debug("Could not unregister MBean {}: {}", name, e.toString());
+            }
+        }
+        registered.clear();
+        connector = null;
+    }
+
+    ObjectName taskObjectName() {
+        return objectName("type=sink-task-metrics,connector=" + quote(connector) + ",task=" + task);
+    }
+
+    ObjectName topicObjectName(String topic) {
+        return objectName("type=sink-topic-metrics,connector=" + quote(connector) + ",task=" + task + ",topic="
+                + quote(topic));
+    }
+
+    private ObjectName objectName(String properties) {
+        try {
+            return new ObjectName(DOMAIN + ":" + properties);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Invalid MBean name properties: " + properties, e);
+        }
+    }
+
+    private static String quote(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            switch (value.charAt(i)) {
+            case ',':
+            case '=':
+            case ':':
+            case '*':
+            case '?':
+            case '"':
+            case '\n':
+                return ObjectName.quote(value);
+            default:
+                break;
+            }
+        }
+        return value;
+    }
+
+    private void register(ObjectName name, Object mbean) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, name);
+            registered.add(name);
+        } catch (JMException e) {
+            log.warn("Could not register MBean {}: {}", name, e.toString());
+        }
+    }
+
+    void setInFlight(AsyncWriter.Counter inFlight) {
+        this.inFlight = inFlight;
+    }
+
+    void setErrorHandler(ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    void setLimiter(ConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /**
+     * Returns the metrics for the given topic, or the task totals only if the
+     * topic is not known.
+     */
+    public TopicMetrics topic(String topic) {
+        if (topic == null) {
+            return total;
+        }
+        TopicMetrics metrics = topics.get(topic);
+        if (metrics == null) {
+            metrics = newTopic(topic);
+        }
+        return metrics;
+    }
+
+    private synchronized TopicMetrics newTopic(String topic) {
+        TopicMetrics metrics = topics.get(topic);
+        if (metrics == null) {
+            metrics = new TopicMetrics(total);
+            topics.put(topic, metrics);
+            if (connector != null) {
+                register(topicObjectName(topic), metrics);
+            }
+        }
+        return metrics;
+    }
+
+    public void recordConversion(TopicMetrics topic, long nanos) {
+        topic.converted();
+        conversionTime.recordNanos(nanos);
+    }
+
+    /**
+     * Records how long the task thread spent converting records, including
+     * waiting for the conversion threads, and dispatching them in a call to
+     * put.
+     */
+    public void recordPut(long conversionNanos, long dispatchNanos) {
+        putConversionNanos.addAndGet(conversionNanos);
+        putDispatchNanos.addAndGet(dispatchNanos);
+    }
+
+    public void recordWrite(TopicMetrics topic, long nanos) {
+        topic.written();
+        writeLatency.recordNanos(nanos);
+    }
+
+    /**
+     * Records a write command that completed with an error; the write may
+     * still be retried.
+     */
+    public void recordWriteFailure(long nanos, int resultCode) {
+        writeLatency.recordNanos(nanos);
+        recordWriteError(resultCode);
+    }
+
+    /**
+     * Records a write error without latency, e.g. for a command that the
+     * client rejected before sending it.
+     */
+    public void recordWriteError(int resultCode) {
+        AtomicLong count = errorsByResultCode.get(resultCode);
+        if (count == null) {
+            AtomicLong newCount = new AtomicLong(0);
+            count = errorsByResultCode.putIfAbsent(resultCode, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    public void recordCommit(long nanos) {
+        commitDuration.recordNanos(nanos);
+    }
+
+    @Override
+    public long getRecordsConverted() {
+        return total.getRecordsConverted();
+    }
+
+    @Override
+    public long getRecordsWritten() {
+        return total.getRecordsWritten();
+    }
+
+    @Override
+    public long getRecordsFailed() {
+        return total.getRecordsFailed();
+    }
+
+    @Override
+    public long getRecordsRetried() {
+        return total.getRecordsRetried();
+    }
+
+    @Override
+    public int getInFlight() {
+        AsyncWriter.Counter counter = inFlight;
+        return counter == null ? 0 : counter.get();
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        ConcurrencyLimiter l = limiter;
+        return l == null ? 0 : l.getLimit();
+    }
+
+    @Override
+    public List<ConcurrencyLimiter.LimitChange> getConcurrencyLimitHistory() {
+        ConcurrencyLimiter l = limiter;
+        return l == null ? Collections.<ConcurrencyLimiter.LimitChange>emptyList() : l.getHistory();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getWriteLatencyMicros() {
+        return writeLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getCommitDurationMicros() {
+        return commitDuration.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getConversionTimeMicros() {
+        return conversionTime.snapshot();
+    }
+
+    @Override
+    public long getPutConversionMicros() {
+        return putConversionNanos.get() / 1000;
+    }
+
+    @Override
+    public long getPutDispatchMicros() {
+        return putDispatchNanos.get() / 1000;
+    }
+
+    @Override
+    public Map<String, Long> getErrorsByResultCode() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<Integer, AtomicLong> entry : errorsByResultCode.entrySet()) {
+            int code = entry.getKey();
+            result.put(code + " " + ResultCode.getResultString(code), entry.getValue().get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getRecordsSkippedByReason() {
+        Map<String, Long> result = new TreeMap<>();
+        ErrorHandler handler = errorHandler;
+        if (handler != null) {
+            for (Map.Entry<ErrorHandler.Reason, Long> entry : handler.getCounts().entrySet()) {
+                result.put(entry.getKey().label(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Record counts for one topic. Updates are propagated to the task totals.
+     */
+    public static class TopicMetrics implements TopicMetricsMXBean {
+
+        private final TopicMetrics parent;
+        private final AtomicLong converted = new AtomicLong(0);
+        private final AtomicLong written = new AtomicLong(0);
+        private final AtomicLong failed = new AtomicLong(0);
+        private final AtomicLong retried = new AtomicLong(0);
+        private volatile BinCompressor compressor;
+
+        TopicMetrics() {
+            this(null);
+        }
+
+        TopicMetrics(TopicMetrics parent) {
+            this.parent = parent;
+        }
+
+        void setCompressor(BinCompressor compressor) {
+            this.compressor = compressor;
+        }
+
+        void converted() {
+            converted.incrementAndGet();
+            if (parent != null) {
+                parent.converted();
+            }
+        }
+
+        void written() {
+            written.incrementAndGet();
+            if (parent != null) {
+                parent.written();
+            }
+        }
+
+        public void failed() {
+            failed.incrementAndGet();
+            if (parent != null) {
+                parent.failed();
+            }
+        }
+
+        public void retried() {
+            retried.incrementAndGet();
+            if (parent != null) {
+                parent.retried();
+            }
+        }
+
+        @Override
+        public long getRecordsConverted() {
+            return converted.get();
+        }
+
+        @Override
+        public long getRecordsWritten() {
+            return written.get();
+        }
+
+        @Override
+        public long getRecordsFailed() {
+            return failed.get();
+        }
+
+        @Override
+        public long getRecordsRetried() {
+            return retried.get();
+        }
+
+        @Override
+        public long getBinsCompressed() {
+            BinCompressor c = compressor;
+            return c == null ? 0 : c.getBinsCompressed();
+        }
+
+        @Override
+        public double getCompressionRatio() {
+            BinCompressor c = compressor;
+            if (c == null || c.getBytesOut() == 0) {
+                return 1;
+            }
+            return (double) c.getBytesIn() / c.getBytesOut();
+        }
+
+        @Override
+        public long getCompressionTimeMicros() {
+            BinCompressor c = compressor;
+            return c == null ? 0 : c.getNanos() / 1000;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Metrics of a single sink task. Durations are in microseconds.
+ */
+public interface SinkTaskMetricsMXBean {
+
+    long getRecordsConverted();
+
+    long getRecordsWritten();
+
+    long getRecordsFailed();
+
+    long getRecordsRetried();
+
+    int getInFlight();
+
+    /**
+     * Returns the current adaptive concurrency limit, or 0 if the limit is
+     * not adaptive.
+     */
+    int getConcurrencyLimit();
+
+    /**
+     * Returns the most recent changes of the adaptive concurrency limit,
+     * oldest first.
+     */
+    List<ConcurrencyLimiter.LimitChange> getConcurrencyLimitHistory();
+
+    LatencyHistogram.Snapshot getWriteLatencyMicros();
+
+    /**
+     * Returns the time the task spent preparing offset commits, including
+     * any wait for in-flight requests.
+     */
+    LatencyHistogram.Snapshot getCommitDurationMicros();
+
+    LatencyHistogram.Snapshot getConversionTimeMicros();
+
+    /**
+     * Returns the total time the task thread spent converting records in
+     * put, or waiting for the conversion threads to convert them.
+     */
+    long getPutConversionMicros();
+
+    /**
+     * Returns the total time the task thread spent dispatching converted
+     * records to the writer in put, including waiting for write capacity.
+     */
+    long getPutDispatchMicros();
+
+    /**
+     * Returns the number of failed write attempts (including attempts that
+     * were retried) by Aerospike result code.
+     */
+    Map<String, Long> getErrorsByResultCode();
+
+    /**
+     * Returns the number of records skipped because errors are tolerated, by
+     * reason.
+     */
+    Map<String, Long> getRecordsSkippedByReason();
+}
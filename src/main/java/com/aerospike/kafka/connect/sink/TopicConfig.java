@@ -16,13 +16,23 @@
  */
 package com.aerospike.kafka.connect.sink;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigDef.Importance;
+import org.apache.kafka.common.config.ConfigDef.Range;
 import org.apache.kafka.common.config.ConfigDef.Type;
+import org.apache.kafka.common.config.ConfigDef.ValidString;
+import org.apache.kafka.common.config.ConfigException;
+
+import com.aerospike.kafka.connect.data.BinCodec;
+import com.aerospike.kafka.connect.data.BinCompressor;
+import com.aerospike.kafka.connect.data.BinOperation;
+import com.aerospike.kafka.connect.data.FieldTransform;
 
 public class TopicConfig extends AbstractConfig {
 
@@ -33,14 +43,74 @@ public class TopicConfig extends AbstractConfig {
     private static final String SET_DOC = "Set to use for the topic";
 
     public static final String KEY_FIELD_CONFIG = "key_field";
-    private static final String KEY_FIELD_DOC = "Name of the Kafka record field that contains the Aerospike user key";
+    private static final String KEY_FIELD_DOC = "Name of the Kafka record field that contains the Aerospike user key; "
+            + "tombstones read it from the record key, which must then be a struct or map";
 
     public static final String SET_FIELD_CONFIG = "set_field";
-    private static final String SET_FIELD_DOC = "Name of the Kafka record field that contains the Aerospike set name";
+    private static final String SET_FIELD_DOC = "Name of the Kafka record field that contains the Aerospike set name; "
+            + "tombstones read it from the record key, which must then be a struct or map";
+
+    public static final String KEY_MODE_CONFIG = "key_mode";
+    private static final String KEY_MODE_DOC = "How to determine the Aerospike key from the user key: \"user_key\" "
+            + "computes the digest of the user key, \"digest\" takes the 20 byte digest as is from the user key bytes, "
+            + "e.g. for producers that already know the digest of their records";
+    private static final String KEY_MODE_DEFAULT = "user_key";
+    public static final String KEY_MODE_DIGEST = "digest";
+
+    public static final String KEY_CACHE_SIZE_CONFIG = "key_cache_size";
+    private static final String KEY_CACHE_SIZE_DOC = "Maximum number of keys of recently written records to keep per "
+            + "task, so that the digest of frequently written keys is not computed again; 0 disables the cache";
+    private static final int KEY_CACHE_SIZE_DEFAULT = 0;
+
+    public static final String VALUE_FORMAT_CONFIG = "value_format";
+    private static final String VALUE_FORMAT_DOC = "Format of BYTES and STRING record values: \"raw\" writes the value "
+            + "as is into a single bin, \"json\" parses a JSON object and writes its fields as bins, reading only the "
+            + "fields needed for the bins, key field and set field";
+    private static final String VALUE_FORMAT_DEFAULT = "raw";
+    public static final String VALUE_FORMAT_JSON = "json";
+
+    public static final String VALUE_BIN_CONFIG = "value_bin";
+    private static final String VALUE_BIN_DOC = "Name of the bin to write BYTES and STRING record values to as is";
+    private static final String VALUE_BIN_DEFAULT = "value";
 
     public static final String BINS_CONFIG = "bins";
-    private static final String BINS_DOC = "Comma separated listed of bin names to include in the Aerospike record with " +
-            "optinal field name mappings in the Kafka record: \"<bin1>[:<field1>][,<bin2>[:<field2>]]+\"";
+    private static final String BINS_DOC = "Comma separated listed of bin names to include in the Aerospike record "
+            + "with optinal field name mappings in the Kafka record: \"<bin1>[:<field1>][,<bin2>[:<field2>]]+\"";
+
+    public static final String OPERATIONS_CONFIG = "operations";
+    private static final String OPERATIONS_DOC = "Comma separated list of operations to apply to individual bins: "
+            + "\"<bin1>:<operation1>[,<bin2>:<operation2>]+\", where the operation is one of \"write\", \"add\", "
+            + "\"append\", \"list_append\" or \"map_put\"; if set, records are written with a single operate "
+            + "command and bins without operation are written as usual";
+
+    public static final String COMPRESSION_CONFIG = "compression";
+    private static final String COMPRESSION_DOC = "Comma separated list of string or bytes bins to compress: "
+            + "\"<bin1>:<codec1>[,<bin2>:<codec2>]+\", where the codec is \"lz4\" or \"deflate\"; compressed values "
+            + "are written as blobs with a header that identifies the codec";
+
+    public static final String COMPRESSION_THRESHOLD_CONFIG = "compression_threshold";
+    private static final String COMPRESSION_THRESHOLD_DOC = "Minimum size in bytes of the bin values to compress";
+    private static final int COMPRESSION_THRESHOLD_DEFAULT = 1024;
+
+    public static final String FLATTEN_DEPTH_CONFIG = "flatten_depth";
+    private static final String FLATTEN_DEPTH_DOC = "Number of levels of nested Struct fields to write as separate "
+            + "top-level bins, named by the field path, e.g. \"address_city\"; fields of arrays of Structs become list "
+            + "bins with the field's value for each element; deeper Structs are written as map bins; 0 writes all "
+            + "nested Structs as map bins";
+    private static final int FLATTEN_DEPTH_DEFAULT = 0;
+
+    public static final String FLATTEN_SEPARATOR_CONFIG = "flatten_separator";
+    private static final String FLATTEN_SEPARATOR_DOC = "Separator between the field names of the bin name of a "
+            + "flattened field";
+    private static final String FLATTEN_SEPARATOR_DEFAULT = "_";
+
+    public static final String FIELD_TRANSFORMS_CONFIG = "field_transforms";
+    private static final String FIELD_TRANSFORMS_DOC = "Comma separated list of transforms to apply to Struct fields, "
+            + "in order: \"<field1>:<transform1>[,<field2>:<transform2>]+\", where the transform is \"drop\", "
+            + "\"rename:<name>\", \"cast:<type>\" (int8, int16, int32, int64, float32, float64, boolean or string), "
+            + "\"epoch[:seconds]\" (Timestamp, Date or Time to milliseconds or seconds since the epoch) or \"number\" "
+            + "(numeric strings to int64 or float64); nested fields are named by their flattened bin names; the bins "
+            + "mapping, key field and set field refer to the renamed fields";
 
     public static ConfigDef baseConfigDef() {
         return new ConfigDef()
@@ -48,16 +118,38 @@ public class TopicConfig extends AbstractConfig {
                 .define(SET_CONFIG, Type.STRING, null, Importance.LOW, SET_DOC)
                 .define(KEY_FIELD_CONFIG, Type.STRING, null, Importance.LOW, KEY_FIELD_DOC)
                 .define(SET_FIELD_CONFIG, Type.STRING, null, Importance.LOW, SET_FIELD_DOC)
-                .define(BINS_CONFIG, Type.STRING, null, Importance.LOW, BINS_DOC);
+                .define(KEY_MODE_CONFIG, Type.STRING, KEY_MODE_DEFAULT,
+                        ValidString.in(KEY_MODE_DEFAULT, KEY_MODE_DIGEST), Importance.LOW, KEY_MODE_DOC)
+                .define(KEY_CACHE_SIZE_CONFIG, Type.INT, KEY_CACHE_SIZE_DEFAULT, Range.atLeast(0), Importance.LOW,
+                        KEY_CACHE_SIZE_DOC)
+                .define(VALUE_FORMAT_CONFIG, Type.STRING, VALUE_FORMAT_DEFAULT,
+                        ValidString.in(VALUE_FORMAT_DEFAULT, VALUE_FORMAT_JSON), Importance.LOW, VALUE_FORMAT_DOC)
+                .define(VALUE_BIN_CONFIG, Type.STRING, VALUE_BIN_DEFAULT, Importance.LOW, VALUE_BIN_DOC)
+                .define(BINS_CONFIG, Type.STRING, null, Importance.LOW, BINS_DOC)
+                .define(OPERATIONS_CONFIG, Type.STRING, null, Importance.LOW, OPERATIONS_DOC)
+                .define(COMPRESSION_CONFIG, Type.STRING, null, Importance.LOW, COMPRESSION_DOC)
+                .define(COMPRESSION_THRESHOLD_CONFIG, Type.INT, COMPRESSION_THRESHOLD_DEFAULT, Range.atLeast(0),
+                        Importance.LOW, COMPRESSION_THRESHOLD_DOC)
+                .define(FLATTEN_DEPTH_CONFIG, Type.INT, FLATTEN_DEPTH_DEFAULT, Range.atLeast(0), Importance.LOW,
+                        FLATTEN_DEPTH_DOC)
+                .define(FLATTEN_SEPARATOR_CONFIG, Type.STRING, FLATTEN_SEPARATOR_DEFAULT, Importance.LOW,
+                        FLATTEN_SEPARATOR_DOC)
+                .define(FIELD_TRANSFORMS_CONFIG, Type.STRING, null, Importance.LOW, FIELD_TRANSFORMS_DOC);
     }
 
     public static ConfigDef config = baseConfigDef();
     
     private final Map<String, String> binMapping;
+    private final Map<String, BinOperation> binOperations;
+    private final BinCompressor binCompressor;
+    private final Map<String, List<FieldTransform>> fieldTransforms;
 
     public TopicConfig(Map<String, Object> props) {
         super(config, props);
         binMapping = createBinMapping();
+        binOperations = createBinOperations();
+        binCompressor = createBinCompressor();
+        fieldTransforms = createFieldTransforms();
     }
 
     public String getNamespace() {
@@ -75,11 +167,128 @@ public class TopicConfig extends AbstractConfig {
     public String getSetField() {
         return getString(SET_FIELD_CONFIG);
     }
+
+    /**
+     * Returns whether the user key is the digest of the Aerospike key.
+     */
+    public boolean isDigestKeyMode() {
+        return KEY_MODE_DIGEST.equals(getString(KEY_MODE_CONFIG));
+    }
+
+    public int getKeyCacheSize() {
+        return getInt(KEY_CACHE_SIZE_CONFIG);
+    }
     
+    /**
+     * Returns whether BYTES and STRING record values hold JSON objects.
+     */
+    public boolean isJsonValueFormat() {
+        return VALUE_FORMAT_JSON.equals(getString(VALUE_FORMAT_CONFIG));
+    }
+
+    public String getValueBin() {
+        return getString(VALUE_BIN_CONFIG);
+    }
+
+    public int getFlattenDepth() {
+        return getInt(FLATTEN_DEPTH_CONFIG);
+    }
+
+    public String getFlattenSeparator() {
+        return getString(FLATTEN_SEPARATOR_CONFIG);
+    }
+
     public Map<String, String> getBinMapping() {
         return binMapping;
     }
     
+    /**
+     * Returns the operation by bin name, or null if records are written with
+     * plain puts.
+     */
+    public Map<String, BinOperation> getBinOperations() {
+        return binOperations;
+    }
+
+    /**
+     * Returns the compressor for the topic's bins, or null if no bins get
+     * compressed.
+     */
+    public BinCompressor getBinCompressor() {
+        return binCompressor;
+    }
+
+    /**
+     * Returns the transforms by field name, in the order to apply them, or
+     * null if fields are not transformed.
+     */
+    public Map<String, List<FieldTransform>> getFieldTransforms() {
+        return fieldTransforms;
+    }
+
+    private BinCompressor createBinCompressor() {
+        String compressionStr = getString(COMPRESSION_CONFIG);
+        if (compressionStr == null) {
+            return null;
+        }
+        Map<String, BinCodec> codecs = new HashMap<>();
+        for (String entry : compressionStr.split(",")) {
+            String[] binCodec = entry.trim().split(":", 2);
+            BinCodec codec = binCodec.length == 2 ? BinCodec.forLabel(binCodec[1]) : null;
+            if (codec == null) {
+                throw new ConfigException(COMPRESSION_CONFIG, compressionStr,
+                        "Invalid bin compression \"" + entry + "\" - expected \"<bin>:<codec>\"");
+            }
+            codecs.put(binCodec[0], codec);
+        }
+        return new BinCompressor(codecs, getInt(COMPRESSION_THRESHOLD_CONFIG));
+    }
+
+    private Map<String, List<FieldTransform>> createFieldTransforms() {
+        String transformsStr = getString(FIELD_TRANSFORMS_CONFIG);
+        if (transformsStr == null) {
+            return null;
+        }
+        Map<String, List<FieldTransform>> transforms = new HashMap<>();
+        for (String entry : transformsStr.split(",")) {
+            String[] fieldTransform = entry.trim().split(":", 3);
+            FieldTransform transform = null;
+            if (fieldTransform.length >= 2) {
+                transform = FieldTransform.forLabel(fieldTransform[1],
+                        fieldTransform.length == 3 ? fieldTransform[2] : null);
+            }
+            if (transform == null) {
+                throw new ConfigException(FIELD_TRANSFORMS_CONFIG, transformsStr,
+                        "Invalid field transform \"" + entry + "\" - expected \"<field>:<transform>[:<argument>]\"");
+            }
+            List<FieldTransform> chain = transforms.get(fieldTransform[0]);
+            if (chain == null) {
+                chain = new ArrayList<>();
+                transforms.put(fieldTransform[0], chain);
+            }
+            chain.add(transform);
+        }
+        return transforms;
+    }
+
+    private Map<String, BinOperation> createBinOperations() {
+        String operationsStr = getString(OPERATIONS_CONFIG);
+        if (operationsStr == null) {
+            return null;
+        }
+        Map<String, BinOperation> operations = new HashMap<>();
+        for (String entry : operationsStr.split(",")) {
+            String[] binOperation = entry.trim().split(":", 2);
+            BinOperation operation = binOperation.length == 2 ? BinOperation.forLabel(binOperation[1]) : null;
+            if (operation == null) {
+                throw new ConfigException(OPERATIONS_CONFIG, operationsStr,
+                        "Invalid bin operation \"" + entry + "\" - expected \"<bin>:<operation>\"");
+            }
+            operations.put(binOperation[0], operation);
+        }
+        return operations;
+    }
+
     private Map<String, String> createBinMapping() {
         String binsStr = getString(BINS_CONFIG);
         if (binsStr == null) {
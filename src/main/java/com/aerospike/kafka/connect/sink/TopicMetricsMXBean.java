@@ -0,0 +1,45 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+/**
+ * Record counts of a single sink task for one topic, and the effect and cost
+ * of bin compression if the topic compresses bins.
+ */
+public interface TopicMetricsMXBean {
+
+    long getRecordsConverted();
+
+    long getRecordsWritten();
+
+    long getRecordsFailed();
+
+    long getRecordsRetried();
+
+    long getBinsCompressed();
+
+    /**
+     * Returns the size of the bin values before compression divided by their
+     * size after compression, or 1 if no values have been compressed.
+     */
+    double getCompressionRatio();
+
+    /**
+     * Returns the total time spent compressing bin values.
+     */
+    long getCompressionTimeMicros();
+}
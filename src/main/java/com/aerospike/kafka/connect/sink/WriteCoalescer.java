@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.kafka.connect.data.AerospikeRecord;
+
+/**
+ * The WriteCoalescer buffers records between two flushes and collapses
+ * multiple writes to the same key into a single write. With the "replace"
+ * record exists actions only the last version of each record is kept; with the
+ * "update" actions the bins of all versions are merged, with later values
+ * taking precedence. Records with bin operations cannot be coalesced, since
+ * their effect depends on the current record. The offsets of records that get coalesced are only
+ * acknowledged once the write that replaces them has been acknowledged.
+ */
+public class WriteCoalescer {
+
+    private final boolean mergeBins;
+    private final int maxRecords;
+    private final Map<Key, Write> pending;
+
+    private long recordsReceived = 0;
+    private long recordsWritten = 0;
+
+    public WriteCoalescer(RecordExistsAction action, int maxRecords) {
+        if (!supports(action)) {
+            throw new IllegalArgumentException("Write coalescing is not supported for record exists action " + action);
+        }
+        this.mergeBins = action == RecordExistsAction.UPDATE || action == RecordExistsAction.UPDATE_ONLY;
+        this.maxRecords = maxRecords;
+        this.pending = new LinkedHashMap<>();
+    }
+
+    /**
+     * Returns true if writes using the given record exists action can be
+     * coalesced without changing the final state of the records.
+     */
+    public static boolean supports(RecordExistsAction action) {
+        switch (action) {
+        case REPLACE:
+        case REPLACE_ONLY:
+        case UPDATE:
+        case UPDATE_ONLY:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Adds a record to the buffer, replacing or merging with any pending
+     * record for the same key.
+     *
+     * @param record Record to write
+     * @param offset Offset of the Kafka record the record was converted from
+     * @return true if the buffer is full and should be drained
+     */
+    public boolean add(AerospikeRecord record, OffsetTracker.Offset offset) {
+        recordsReceived++;
+        Key key = record.key();
+        Write previous = pending.get(key);
+        if (previous != null) {
+            if (mergeBins) {
+                record = new AerospikeRecord(key, mergeBins(previous.record.bins(), record.bins()));
+            }
+            offset.supersede(previous.offset);
+        }
+        pending.put(key, new Write(record, offset));
+        return pending.size() >= maxRecords;
+    }
+
+    /**
+     * Returns true if a record for the given key is pending.
+     */
+    public boolean contains(Key key) {
+        return pending.containsKey(key);
+    }
+
+    /**
+     * Removes all pending records from the buffer.
+     *
+     * @return Records to write, in the order in which their keys were first
+     *         added
+     */
+    public List<Write> drain() {
+        List<Write> records = new ArrayList<>(pending.values());
+        pending.clear();
+        recordsWritten += records.size();
+        return records;
+    }
+
+    /**
+     * Discards all pending records without writing them, e.g. when the task
+     * is stopped. The records will be redelivered since their offsets have not
+     * been committed yet.
+     */
+    public void clear() {
+        recordsReceived -= pending.size();
+        pending.clear();
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    public long getRecordsReceived() {
+        return recordsReceived;
+    }
+
+    public long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    public long getWritesSaved() {
+        return recordsReceived - recordsWritten - pending.size();
+    }
+
+    /**
+     * A coalesced record together with the offset handle to acknowledge once
+     * it has been written.
+     */
+    public static class Write {
+
+        private final AerospikeRecord record;
+        private final OffsetTracker.Offset offset;
+
+        Write(AerospikeRecord record, OffsetTracker.Offset offset) {
+            this.record = record;
+            this.offset = offset;
+        }
+
+        public AerospikeRecord record() {
+            return record;
+        }
+
+        public OffsetTracker.Offset offset() {
+            return offset;
+        }
+    }
+
+    private Bin[] mergeBins(Bin[] previous, Bin[] current) {
+        List<Bin> merged = new ArrayList<>(previous.length + current.length);
+        for (Bin bin : previous) {
+            if (!containsBin(current, bin.name)) {
+                merged.add(bin);
+            }
+        }
+        for (Bin bin : current) {
+            merged.add(bin);
+        }
+        return merged.toArray(new Bin[merged.size()]);
+    }
+
+    private boolean containsBin(Bin[] bins, String name) {
+        for (Bin bin : bins) {
+            if (bin.name.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.junit.Test;
 
@@ -223,6 +224,47 @@ public abstract class AbstractConverterTest {
         assertArrayEquals(new byte[] { 0x01, 0x02, 0x03, 0x04 }, (byte[]) askey.userKey.getObject());
     }
 
+    @Test
+    public void testConvertDigestKey() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "key_mode", "digest");
+        RecordConverter subject = getConverter(config);
+        byte[] digest = new Key("topicNamespace", "topicSet", "testKey").digest;
+        SinkRecord record = createSinkRecord("testTopic", digest, "bin1", "aString");
+
+        AerospikeRecord result = subject.convertRecord(record);
+
+        assertEquals(new Key("topicNamespace", "topicSet", "testKey"), result.key());
+        assertArrayEquals(digest, result.key().digest);
+    }
+
+    @Test(expected = DataException.class)
+    public void testRejectsInvalidDigestKey() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "key_mode", "digest");
+        RecordConverter subject = getConverter(config);
+
+        subject.convertRecord(createSinkRecord("testTopic", new byte[] { 0x01, 0x02 }, "bin1", "aString"));
+    }
+
+    @Test
+    public void testCachesKeys() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "key_cache_size", "2");
+        RecordConverter subject = getConverter(config);
+
+        Key first = subject.convertRecord(createSinkRecord("testTopic", "key1", "bin1", "aString")).key();
+        Key second = subject.convertRecord(createSinkRecord("testTopic", "key1", "bin1", "anotherString")).key();
+        subject.convertRecord(createSinkRecord("testTopic", "key2", "bin1", "aString"));
+        subject.convertRecord(createSinkRecord("testTopic", "key3", "bin1", "aString"));
+        Key evicted = subject.convertRecord(createSinkRecord("testTopic", "key1", "bin1", "aString")).key();
+
+        assertSame(first, second);
+        assertNotSame(first, evicted);
+        assertEquals(first, evicted);
+        assertEquals(new Key("topicNamespace", "topicSet", "key1"), first);
+    }
+
     @Test
     public void testBinMapping() {
         Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
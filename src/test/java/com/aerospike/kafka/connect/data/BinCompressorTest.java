@@ -0,0 +1,140 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.kafka.connect.errors.DataException;
+import org.junit.Test;
+
+import com.aerospike.client.Bin;
+
+public class BinCompressorTest {
+
+    @Test
+    public void testCompressesLargeBins() {
+        for (BinCodec codec : BinCodec.values()) {
+            Map<String, BinCodec> codecs = new HashMap<>();
+            codecs.put("json", codec);
+            codecs.put("blob", codec);
+            BinCompressor subject = new BinCompressor(codecs, 100);
+            String json = repeat("{\"name\":\"value\",\"count\":42}", 100);
+            byte[] blob = repeat("0123456789", 100).getBytes();
+            Bin[] bins = new Bin[] { new Bin("json", json), new Bin("blob", blob), new Bin("other", json) };
+
+            subject.compress(bins, null);
+
+            byte[] compressed = (byte[]) bins[0].value.getObject();
+            assertTrue(BinCompressor.isCompressed(compressed));
+            assertEquals(codec.id(), compressed[2]);
+            assertTrue(compressed.length < json.length() / 4);
+            assertEquals(json, BinCompressor.decompress(compressed));
+            assertArrayEquals(blob, (byte[]) BinCompressor.decompress((byte[]) bins[1].value.getObject()));
+            assertEquals(json, bins[2].value.getObject());
+            assertEquals(2, subject.getBinsCompressed());
+            assertEquals(json.length() + blob.length, subject.getBytesIn());
+            assertTrue(subject.getBytesOut() < subject.getBytesIn() / 4);
+        }
+    }
+
+    @Test
+    public void testKeepsSmallAndIncompressibleValues() {
+        BinCompressor subject = new BinCompressor(Collections.singletonMap("bin", BinCodec.LZ4), 100);
+        byte[] random = new byte[1000];
+        new Random(42).nextBytes(random);
+        Bin[] small = new Bin[] { new Bin("bin", "short value") };
+        Bin[] incompressible = new Bin[] { new Bin("bin", random) };
+
+        subject.compress(small, null);
+        subject.compress(incompressible, null);
+
+        assertEquals("short value", small[0].value.getObject());
+        assertSame(random, incompressible[0].value.getObject());
+        assertEquals(0, subject.getBinsCompressed());
+        assertEquals(subject.getBytesIn(), subject.getBytesOut());
+    }
+
+    @Test
+    public void testSkipsBinsWithAccumulatingOperations() {
+        BinCompressor subject = new BinCompressor(Collections.singletonMap("log", BinCodec.DEFLATE), 10);
+        String value = repeat("event;", 100);
+        Bin[] bins = new Bin[] { new Bin("log", value) };
+
+        subject.compress(bins, Collections.singletonMap("log", BinOperation.APPEND));
+
+        assertEquals(value, bins[0].value.getObject());
+    }
+
+    @Test
+    public void testPassesUncompressedValuesThrough() {
+        byte[] value = new byte[] { 0x01, 0x02, 0x03 };
+
+        assertSame(value, BinCompressor.decompress(value));
+    }
+
+    @Test
+    public void testFramesRawValuesThatStartWithMagic() {
+        BinCompressor subject = new BinCompressor(Collections.singletonMap("bin", BinCodec.LZ4), 100);
+        byte[] small = new byte[] { (byte) 0xC0, (byte) 0xDE, 0x01, 0x00, 0x00, 0x00, 0x00, 0x05, 0x42 };
+        byte[] incompressible = new byte[1000];
+        new Random(42).nextBytes(incompressible);
+        incompressible[0] = (byte) 0xC0;
+        incompressible[1] = (byte) 0xDE;
+        Bin[] bins = new Bin[] { new Bin("bin", small) };
+        Bin[] otherBins = new Bin[] { new Bin("bin", incompressible) };
+
+        subject.compress(bins, null);
+        subject.compress(otherBins, null);
+
+        byte[] framed = (byte[]) bins[0].value.getObject();
+        assertEquals(small.length + BinCompressor.HEADER_SIZE, framed.length);
+        assertEquals(0, framed[2]);
+        assertArrayEquals(small, (byte[]) BinCompressor.decompress(framed));
+        assertArrayEquals(incompressible, (byte[]) BinCompressor.decompress((byte[]) otherBins[0].value.getObject()));
+        assertEquals(0, subject.getBinsCompressed());
+    }
+
+    @Test(expected = DataException.class)
+    public void testRejectsImplausibleLength() {
+        byte[] value = new byte[] { (byte) 0xC0, (byte) 0xDE, 0x01, 0x00, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                0x00, 0x00 };
+
+        BinCompressor.decompress(value);
+    }
+
+    @Test(expected = DataException.class)
+    public void testFailsToCompressAfterClose() {
+        BinCompressor subject = new BinCompressor(Collections.singletonMap("bin", BinCodec.DEFLATE), 10);
+        subject.compress(new Bin[] { new Bin("bin", repeat("value", 100)) }, null);
+
+        subject.close();
+        subject.compress(new Bin[] { new Bin("bin", repeat("value", 100)) }, null);
+    }
+
+    private static String repeat(String string, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(string);
+        }
+        return builder.toString();
+    }
+}
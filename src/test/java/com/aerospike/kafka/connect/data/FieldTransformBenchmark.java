@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.apache.kafka.connect.transforms.ReplaceField;
+import org.apache.kafka.connect.transforms.Transformation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aerospike.kafka.connect.sink.TopicConfig;
+
+/**
+ * Measures renaming, dropping and casting fields of Struct records. The "smt"
+ * transforms run the ReplaceField transform followed by a cast that copies
+ * the Struct like the Cast transform of later Kafka versions, before the
+ * StructConverter; the "fused" transforms are the topic's field transforms.
+ * Both drop a quarter of the fields, rename three and cast three.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldTransformBenchmark {
+
+    private static final String[] CAST_FIELDS = { "field1", "field4", "field7" };
+
+    @Param({ "smt", "fused" })
+    public String transforms;
+
+    @Param({ "NARROW", "WIDE", "LARGE" })
+    public String shape;
+
+    private ReplaceField<SinkRecord> replaceField;
+    private CopyingCast cast;
+    private RecordConverter converter;
+    private SinkRecord record;
+
+    @Setup
+    public void setup() {
+        RecordShapes.Shape recordShape = RecordShapes.Shape.valueOf(shape);
+        StringBuilder dropped = new StringBuilder();
+        for (int i = 3; i < recordShape.fields(); i += 4) {
+            dropped.append(dropped.length() == 0 ? "" : ",").append("field").append(i);
+        }
+        String renamed = "field0:f0,field2:f2,field4:f4";
+        Map<String, Object> props = new HashMap<>();
+        if (transforms.equals("smt")) {
+            replaceField = new ReplaceField.Value<>();
+            Map<String, String> config = new HashMap<>();
+            config.put("blacklist", dropped.toString());
+            config.put("renames", renamed);
+            replaceField.configure(config);
+            cast = new CopyingCast();
+        } else {
+            StringBuilder fieldTransforms = new StringBuilder(dropped.toString().replace(",", ":drop,"));
+            fieldTransforms.append(":drop");
+            for (String rename : renamed.split(",")) {
+                fieldTransforms.append(',').append(rename.replace(":", ":rename:"));
+            }
+            for (String field : CAST_FIELDS) {
+                fieldTransforms.append(',').append(field).append(":cast:string");
+            }
+            props.put("field_transforms", fieldTransforms.toString());
+        }
+        Map<String, TopicConfig> topicConfigs = RecordShapes.topicConfigs(recordShape, false, props);
+        converter = new StructConverter(topicConfigs);
+        record = RecordShapes.structRecord(recordShape);
+    }
+
+    @Benchmark
+    public AerospikeRecord convert() {
+        SinkRecord input = record;
+        if (replaceField != null) {
+            input = cast.apply(replaceField.apply(input));
+        }
+        return converter.convertRecord(input);
+    }
+
+    /*
+     * Casts fields to strings into a copy of the Struct with a new schema,
+     * which is cached like the SMTs cache their updated schemas.
+     */
+    static class CopyingCast implements Transformation<SinkRecord> {
+
+        private Schema lastInput;
+        private Schema lastSchema;
+
+        @Override
+        public SinkRecord apply(SinkRecord record) {
+            Struct value = (Struct) record.value();
+            if (value.schema() != lastInput) {
+                SchemaBuilder builder = SchemaBuilder.struct();
+                for (Field field : value.schema().fields()) {
+                    builder.field(field.name(), isCast(field.name()) ? Schema.STRING_SCHEMA : field.schema());
+                }
+                lastInput = value.schema();
+                lastSchema = builder.build();
+            }
+            Schema schema = lastSchema;
+            Struct updated = new Struct(schema);
+            for (Field field : schema.fields()) {
+                Object fieldValue = value.get(field.name());
+                updated.put(field, isCast(field.name()) ? String.valueOf(fieldValue) : fieldValue);
+            }
+            return record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(), schema,
+                    updated, record.timestamp());
+        }
+
+        private static boolean isCast(String name) {
+            for (String field : CAST_FIELDS) {
+                if (field.equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public ConfigDef config() {
+            return new ConfigDef();
+        }
+
+        @Override
+        public void configure(Map<String, ?> configs) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.json.JsonConverter;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aerospike.kafka.connect.sink.TopicConfig;
+
+/**
+ * Measures the conversion of records with JSON values. The "tree" conversion
+ * parses the value with the schemaless JsonConverter and converts the
+ * resulting map with the MapConverter; the "stream" conversion reads the
+ * bins straight from the JSON text. The "few" mapping keeps five fields,
+ * "half" every other field and "all" every field.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonStreamConverterBenchmark {
+
+    @Param({ "tree", "stream" })
+    public String conversion;
+
+    @Param({ "NARROW", "WIDE", "NESTED", "LARGE" })
+    public String shape;
+
+    @Param({ "few", "half", "all" })
+    public String mapping;
+
+    private JsonConverter jsonConverter;
+    private RecordConverter converter;
+    private SinkRecord record;
+
+    @Setup
+    public void setup() {
+        RecordShapes.Shape recordShape = RecordShapes.Shape.valueOf(shape);
+        Map<String, Object> props = new HashMap<>();
+        if (mapping.equals("few")) {
+            props.put("bins", "field0,field1,field2,field3,field4");
+        }
+        Map<String, TopicConfig> topicConfigs = RecordShapes.topicConfigs(recordShape, mapping.equals("half"), props);
+        switch (conversion) {
+        case "tree":
+            jsonConverter = new JsonConverter();
+            jsonConverter.configure(Collections.singletonMap("schemas.enable", "false"), false);
+            converter = new MapConverter(topicConfigs);
+            break;
+        case "stream":
+            converter = new JsonStreamConverter(topicConfigs);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown conversion: " + conversion);
+        }
+        record = RecordShapes.jsonRecord(recordShape);
+    }
+
+    @Benchmark
+    public AerospikeRecord convert() {
+        SinkRecord input = record;
+        if (jsonConverter != null) {
+            SchemaAndValue value = jsonConverter.toConnectData(RecordShapes.TOPIC, (byte[]) record.value());
+            input = record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(),
+                    value.schema(), value.value(), record.timestamp());
+        }
+        return converter.convertRecord(input);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.Test;
+
+import com.aerospike.client.Bin;
+import com.aerospike.kafka.connect.sink.TopicConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JsonStreamConverterTest extends AbstractConverterTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Override
+    public RecordConverter getConverter(Map<String, TopicConfig> config) {
+        return new JsonStreamConverter(config);
+    }
+
+    @Test
+    @Override
+    public void testConvertBytesKey() {
+        // JSON has no bytes type; byte arrays are written as base64 strings
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "key_field", "bin2");
+        RecordConverter subject = getConverter(config);
+        SinkRecord record = createSinkRecord("testTopic", "testKey", "bin1", "aString", "bin2",
+                new byte[] { 0x01, 0x02, 0x03, 0x04 });
+
+        AerospikeRecord result = subject.convertRecord(record);
+
+        assertEquals("AQIDBA==", result.key().userKey.getObject());
+    }
+
+    @Test
+    public void testSkipsUnmappedFields() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "bins", "bin1,nested", "key_field", "id");
+        RecordConverter subject = getConverter(config);
+        SinkRecord record = createSinkRecord("testTopic", null, "skipped",
+                Collections.singletonMap("deep", Arrays.asList(1, 2, Collections.singletonMap("x", "y"))), "bin1", 42,
+                "id", "aKey", "nested", Collections.singletonMap("list", Arrays.asList(1.5, true, null)));
+
+        AerospikeRecord result = subject.convertRecord(record);
+
+        assertEquals("aKey", result.key().userKey.getObject());
+        Bin[] bins = result.bins();
+        assertEquals(2, bins.length);
+        assertEquals("bin1", bins[0].name);
+        assertEquals(42L, bins[0].value.getObject());
+        assertEquals("nested", bins[1].name);
+        Map<?, ?> nested = (Map<?, ?>) bins[1].value.getObject();
+        assertEquals(Arrays.asList(1.5, true, null), (List<?>) nested.get("list"));
+    }
+
+    @Test
+    public void testConvertsBytesValues() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "value_format", "json");
+        RecordMapperFactory factory = new RecordMapperFactory(config);
+        byte[] json = "{\"bin1\":\"aString\"}".getBytes(StandardCharsets.UTF_8);
+        SinkRecord record = new SinkRecord("testTopic", 0, null, "testKey", Schema.BYTES_SCHEMA, json, 0);
+
+        AerospikeRecord result = factory.getMapper(record).convertRecord(record);
+
+        assertEquals(1, result.bins().length);
+        assertEquals("aString", result.bins()[0].value.toString());
+    }
+
+    @Test(expected = DataException.class)
+    public void testRejectsMissingKeyField() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "key_field", "id");
+        RecordConverter subject = getConverter(config);
+
+        subject.convertRecord(createSinkRecord("testTopic", null, "bin1", "aString"));
+    }
+
+    @Test(expected = DataException.class)
+    public void testRejectsNonObjectValues() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace");
+        RecordConverter subject = getConverter(config);
+
+        subject.convertRecord(new SinkRecord("testTopic", 0, null, "testKey", null, "[1, 2]", 0));
+    }
+
+    @Test(expected = DataException.class)
+    public void testRejectsMalformedJson() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace");
+        RecordConverter subject = getConverter(config);
+
+        subject.convertRecord(new SinkRecord("testTopic", 0, null, "testKey", null, "{\"bin1\": ", 0));
+    }
+
+    @Override
+    public SinkRecord createSinkRecord(String topic, Object key, Object... keysAndValues) {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i = i + 2) {
+            map.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        try {
+            String value = mapper.writeValueAsString(map);
+            return new SinkRecord(topic, 0, null, key, Schema.STRING_SCHEMA, value, 0);
+        } catch (JsonProcessingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
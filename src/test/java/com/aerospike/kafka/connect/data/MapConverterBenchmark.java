@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Value;
+import com.aerospike.kafka.connect.sink.TopicConfig;
+
+/**
+ * Measures the conversion of schemaless records of various shapes. Run with "-prof gc" to see
+ * the allocation per record (gc.alloc.rate.norm). The "legacy" conversion is
+ * the previous implementation, which collected the bins in an ArrayList and
+ * wrapped each value through Value.get(Object).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapConverterBenchmark {
+
+    @Param({ "legacy", "lean" })
+    public String conversion;
+
+    @Param({ "NARROW", "WIDE", "NESTED", "ARRAYS", "LARGE" })
+    public String shape;
+
+    @Param({ "false", "true" })
+    public boolean binMapping;
+
+    private RecordConverter converter;
+    private SinkRecord record;
+
+    @Setup
+    public void setup() {
+        Map<String, TopicConfig> topicConfigs = RecordShapes.topicConfigs(RecordShapes.Shape.valueOf(shape), binMapping);
+        switch (conversion) {
+        case "legacy":
+            converter = new LegacyMapConverter(topicConfigs);
+            break;
+        case "lean":
+            converter = new MapConverter(topicConfigs);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown conversion: " + conversion);
+        }
+        record = RecordShapes.mapRecord(RecordShapes.Shape.valueOf(shape));
+    }
+
+    @Benchmark
+    public AerospikeRecord convert() {
+        return converter.convertRecord(record);
+    }
+
+    static class LegacyMapConverter extends RecordConverter {
+
+        LegacyMapConverter(Map<String, TopicConfig> topicConfigs) {
+            super(topicConfigs);
+        }
+
+        @Override
+        public AerospikeRecord convertRecord(SinkRecord record) {
+            Map<?, ?> map = (Map<?, ?>) record.value();
+            TopicConfig config = getTopicConfig(record);
+            Key key = new Key(config.getNamespace(), config.getSet(), Value.get(record.key()));
+            Map<String, String> binMapping = config.getBinMapping();
+            List<Bin> bins = new ArrayList<Bin>();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                String name = entry.getKey().toString();
+                if (binMapping != null) {
+                    name = binMapping.get(name);
+                    if (name == null) {
+                        continue;
+                    }
+                }
+                bins.add(new Bin(name, entry.getValue()));
+            }
+            return new AerospikeRecord(key, bins.toArray(new Bin[0]));
+        }
+    }
+}
@@ -16,12 +16,21 @@
  */
 package com.aerospike.kafka.connect.data;
 
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.Test;
 
+import com.aerospike.client.Bin;
+import com.aerospike.client.Operation;
 import com.aerospike.kafka.connect.sink.TopicConfig;
 
 public class MapConverterTest extends AbstractConverterTest {
@@ -31,6 +40,95 @@ public class MapConverterTest extends AbstractConverterTest {
         return new MapConverter(config);
     }
 
+    @Test
+    public void testReusesScratchAcrossRecords() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet");
+        RecordConverter subject = getConverter(config);
+        Object[] keysAndValues = new Object[40];
+        for (int i = 0; i < 20; i++) {
+            keysAndValues[2 * i] = "bin" + i;
+            keysAndValues[2 * i + 1] = i;
+        }
+
+        AerospikeRecord wide = subject.convertRecord(createSinkRecord("testTopic", "testKey", keysAndValues));
+        AerospikeRecord narrow = subject.convertRecord(createSinkRecord("testTopic", "testKey", "bin1", "aString"));
+
+        assertEquals(20, wide.bins().length);
+        assertEquals(1, narrow.bins().length);
+        assertEquals("aString", narrow.bins()[0].value.toString());
+    }
+
+    @Test
+    public void testConvertNonStringKeysAndNullValues() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "bins", "intBin:1,nullBin");
+        RecordConverter subject = getConverter(config);
+        SinkRecord record = createSinkRecord("testTopic", "testKey", 1, (short) 7, "nullBin", null, "unmapped", "x");
+
+        for (int i = 0; i < 2; i++) {
+            Bin[] bins = subject.convertRecord(record).bins();
+            assertEquals(2, bins.length);
+            for (Bin bin : bins) {
+                switch (bin.name) {
+                case "intBin":
+                    assertEquals(7, bin.value.getObject());
+                    break;
+                case "nullBin":
+                    assertNull(bin.value.getObject());
+                    break;
+                default:
+                    fail("Unexpected bin name: " + bin.name);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConvertsRemainingBytesOfBuffers() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace");
+        RecordConverter subject = getConverter(config);
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0x01, 0x02, 0x03, 0x04, 0x05 });
+        buffer.position(1);
+        ByteBuffer slice = buffer.slice();
+        slice.limit(3);
+        SinkRecord record = createSinkRecord("testTopic", "testKey", "bytesBin", slice);
+
+        Bin[] bins = subject.convertRecord(record).bins();
+
+        assertArrayEquals(new byte[] { 0x02, 0x03, 0x04 }, (byte[]) bins[0].value.getObject());
+        assertEquals(0, slice.position());
+    }
+
+    @Test
+    public void testConvertBinOperations() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "operations",
+                "count:add,events:list_append,missing:add");
+        RecordConverter subject = getConverter(config);
+        SinkRecord record = createSinkRecord("testTopic", "testKey", "count", 1L, "events", Arrays.asList("a", "b"),
+                "missing", null, "str", "aString");
+
+        AerospikeRecord result = subject.convertRecord(record);
+
+        assertEquals(4, result.bins().length);
+        Map<String, Operation.Type> types = new HashMap<>();
+        for (Operation operation : result.operations()) {
+            types.put(operation.binName, operation.type);
+        }
+        assertEquals(3, types.size());
+        assertEquals(Operation.Type.ADD, types.get("count"));
+        assertEquals(Operation.Type.CDT_MODIFY, types.get("events"));
+        assertEquals(Operation.Type.WRITE, types.get("str"));
+    }
+
+    @Test(expected = DataException.class)
+    public void testBinOperationTypeMismatch() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "operations",
+                "count:add");
+        RecordConverter subject = getConverter(config);
+
+        subject.convertRecord(createSinkRecord("testTopic", "testKey", "count", "notANumber"));
+    }
+
     public SinkRecord createSinkRecord(String topic, Object key, Object... keysAndValues) {
         int partition = 0;
         Schema keySchema = null;
@@ -42,4 +140,34 @@ public class MapConverterTest extends AbstractConverterTest {
         long offset = 0;
         return new SinkRecord(topic, partition, keySchema, key, valueSchema, value, offset);
     }
+
+    @Test
+    public void testCompressesConfiguredBins() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "compression", "payload:lz4", "compression_threshold", "64");
+        RecordConverter subject = getConverter(config);
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            payload.append("{\"id\":").append(i % 5).append('}');
+        }
+        SinkRecord record = createSinkRecord("testTopic", "testKey", "payload", payload.toString(), "name", "aName");
+
+        AerospikeRecord result = subject.convertRecord(record);
+
+        for (Bin bin : result.bins()) {
+            if (bin.name.equals("payload")) {
+                byte[] value = (byte[]) bin.value.getObject();
+                assertTrue(BinCompressor.isCompressed(value));
+                assertEquals(payload.toString(), BinCompressor.decompress(value));
+            } else {
+                assertEquals("aName", bin.value.getObject());
+            }
+        }
+        assertEquals(1, config.get("testTopic").getBinCompressor().getBinsCompressed());
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testRejectsInvalidCompression() {
+        configFor("testTopic", "namespace", "topicNamespace", "compression", "payload:zip");
+    }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.Test;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.kafka.connect.sink.TopicConfig;
+
+public class RawConverterTest {
+
+    @Test
+    public void testWritesBytesWithoutCopying() {
+        RecordMapperFactory factory = new RecordMapperFactory(config());
+        byte[] payload = new byte[] { 0x01, 0x02, 0x03 };
+        SinkRecord record = new SinkRecord("testTopic", 0, null, "testKey", null, payload, 0);
+
+        AerospikeRecord result = factory.getMapper(record).convertRecord(record);
+
+        assertEquals(new Key("topicNamespace", "topicSet", "testKey"), result.key());
+        Bin[] bins = result.bins();
+        assertEquals(1, bins.length);
+        assertEquals("payload", bins[0].name);
+        assertSame(payload, bins[0].value.getObject());
+    }
+
+    @Test
+    public void testWritesStrings() {
+        RecordMapperFactory factory = new RecordMapperFactory(config());
+        SinkRecord record = new SinkRecord("testTopic", 0, Schema.STRING_SCHEMA, "testKey", Schema.STRING_SCHEMA,
+                "aValue", 0);
+
+        AerospikeRecord result = factory.getMapper(record).convertRecord(record);
+
+        assertEquals("aValue", result.bins()[0].value.getObject());
+    }
+
+    @Test
+    public void testWritesRemainingBytesOfBuffer() {
+        RecordMapperFactory factory = new RecordMapperFactory(config());
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0x01, 0x02, 0x03, 0x04 });
+        buffer.position(1);
+        SinkRecord record = new SinkRecord("testTopic", 0, null, "testKey", Schema.BYTES_SCHEMA, buffer.slice(), 0);
+
+        AerospikeRecord result = factory.getMapper(record).convertRecord(record);
+
+        assertArrayEquals(new byte[] { 0x02, 0x03, 0x04 }, (byte[]) result.bins()[0].value.getObject());
+    }
+
+    @Test(expected = DataException.class)
+    public void testRejectsRecordWithoutKey() {
+        RecordMapperFactory factory = new RecordMapperFactory(config());
+        SinkRecord record = new SinkRecord("testTopic", 0, null, null, null, new byte[] { 0x01 }, 0);
+
+        factory.getMapper(record).convertRecord(record);
+    }
+
+    private Map<String, TopicConfig> config() {
+        Map<String, Object> config = new HashMap<>();
+        config.put("namespace", "topicNamespace");
+        config.put("set", "topicSet");
+        config.put("value_bin", "payload");
+        return Collections.singletonMap("testTopic", new TopicConfig(config));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the converter lookup by record type, on its own and followed by
+ * the conversion, for records with and without value schema.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordMapperFactoryBenchmark {
+
+    @Param({ "struct", "map", "bytes" })
+    public String value;
+
+    private RecordMapperFactory mappers;
+    private SinkRecord record;
+
+    @Setup
+    public void setup() {
+        RecordShapes.Shape shape = RecordShapes.Shape.NARROW;
+        mappers = new RecordMapperFactory(RecordShapes.topicConfigs(shape, false));
+        switch (value) {
+        case "struct":
+            record = RecordShapes.structRecord(shape);
+            break;
+        case "map":
+            record = RecordShapes.mapRecord(shape);
+            break;
+        case "bytes":
+            record = new SinkRecord(RecordShapes.TOPIC, 0, null, "aKey", null, new byte[256], 0);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown value type: " + value);
+        }
+    }
+
+    @Benchmark
+    public RecordConverter getMapper() {
+        return mappers.getMapper(record);
+    }
+
+    @Benchmark
+    public AerospikeRecord getMapperAndConvert() {
+        return mappers.getMapper(record).convertRecord(record);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.sink.SinkRecord;
+
+import com.aerospike.kafka.connect.sink.TopicConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Builds records of typical shapes for the conversion benchmarks. All shapes
+ * mix string, long and double fields; the "nested" shape adds nested structs
+ * (maps for schemaless records) and the "arrays" shape adds lists of 20
+ * elements. The bin mapping, if requested, maps every other field to a bin.
+ */
+final class RecordShapes {
+
+    static final String TOPIC = "benchmark";
+
+    private static final int NESTED_FIELDS = 5;
+    private static final int ARRAY_ELEMENTS = 20;
+
+    private RecordShapes() {
+    }
+
+    enum Shape {
+        NARROW(5, false, false),
+        WIDE(80, false, false),
+        NESTED(10, true, false),
+        ARRAYS(10, false, true),
+        LARGE(500, false, false);
+
+        private final int fields;
+        private final boolean nested;
+        private final boolean arrays;
+
+        Shape(int fields, boolean nested, boolean arrays) {
+            this.fields = fields;
+            this.nested = nested;
+            this.arrays = arrays;
+        }
+
+        int fields() {
+            return fields;
+        }
+
+        /*
+         * Every third field holds the shape's special type, if any.
+         */
+        private boolean special(int i) {
+            return i % 3 == 2 && (nested || arrays);
+        }
+    }
+
+    static Map<String, TopicConfig> topicConfigs(Shape shape, boolean binMapping) {
+        return topicConfigs(shape, binMapping, Collections.<String, Object>emptyMap());
+    }
+
+    static Map<String, TopicConfig> topicConfigs(Shape shape, boolean binMapping, Map<String, Object> props) {
+        Map<String, Object> config = new HashMap<>(props);
+        config.put("namespace", "test");
+        config.put("set", "benchmark");
+        if (binMapping) {
+            StringBuilder bins = new StringBuilder();
+            for (int i = 0; i < shape.fields(); i += 2) {
+                bins.append(bins.length() == 0 ? "" : ",").append("bin").append(i).append(':').append(field(i));
+            }
+            config.put("bins", bins.toString());
+        }
+        return Collections.singletonMap(TOPIC, new TopicConfig(config));
+    }
+
+    static SinkRecord structRecord(Shape shape) {
+        Schema nestedSchema = nestedSchema();
+        SchemaBuilder builder = SchemaBuilder.struct().name("benchmark");
+        for (int i = 0; i < shape.fields(); i++) {
+            if (shape.special(i)) {
+                builder.field(field(i), shape.nested ? nestedSchema : SchemaBuilder.array(Schema.INT64_SCHEMA).build());
+            } else {
+                builder.field(field(i), schema(i));
+            }
+        }
+        Schema schema = builder.build();
+        Struct struct = new Struct(schema);
+        for (int i = 0; i < shape.fields(); i++) {
+            if (shape.special(i)) {
+                struct.put(field(i), shape.nested ? nestedStruct(nestedSchema) : list());
+            } else {
+                struct.put(field(i), value(i));
+            }
+        }
+        return new SinkRecord(TOPIC, 0, Schema.STRING_SCHEMA, "aKey", schema, struct, 0);
+    }
+
+    static SinkRecord mapRecord(Shape shape) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < shape.fields(); i++) {
+            if (shape.special(i)) {
+                map.put(field(i), shape.nested ? nestedMap() : list());
+            } else {
+                map.put(field(i), value(i));
+            }
+        }
+        return new SinkRecord(TOPIC, 0, null, "aKey", null, map, 0);
+    }
+
+    /*
+     * The map record's value as JSON text, as produced by a JSON serializer.
+     */
+    static SinkRecord jsonRecord(Shape shape) {
+        try {
+            byte[] json = new ObjectMapper().writeValueAsBytes(mapRecord(shape).value());
+            return new SinkRecord(TOPIC, 0, Schema.STRING_SCHEMA, "aKey", Schema.BYTES_SCHEMA, json, 0);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String field(int i) {
+        return "field" + i;
+    }
+
+    private static Schema schema(int i) {
+        switch (i % 3) {
+        case 0:
+            return Schema.STRING_SCHEMA;
+        case 1:
+            return Schema.INT64_SCHEMA;
+        default:
+            return Schema.FLOAT64_SCHEMA;
+        }
+    }
+
+    private static Object value(int i) {
+        switch (i % 3) {
+        case 0:
+            return "value" + i;
+        case 1:
+            return (long) i;
+        default:
+            return i + 0.5;
+        }
+    }
+
+    private static Schema nestedSchema() {
+        SchemaBuilder builder = SchemaBuilder.struct().name("nested");
+        for (int i = 0; i < NESTED_FIELDS; i++) {
+            builder.field(field(i), i % 3 == 2 ? Schema.FLOAT64_SCHEMA : schema(i));
+        }
+        return builder.build();
+    }
+
+    private static Struct nestedStruct(Schema schema) {
+        Struct struct = new Struct(schema);
+        for (int i = 0; i < NESTED_FIELDS; i++) {
+            struct.put(field(i), value(i));
+        }
+        return struct;
+    }
+
+    private static Map<String, Object> nestedMap() {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < NESTED_FIELDS; i++) {
+            map.put(field(i), value(i));
+        }
+        return map;
+    }
+
+    private static List<Long> list() {
+        List<Long> list = new ArrayList<>();
+        for (long i = 0; i < ARRAY_ELEMENTS; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+}
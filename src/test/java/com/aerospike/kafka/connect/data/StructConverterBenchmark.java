@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aerospike.client.Key;
+
+/**
+ * Measures the conversion of records with Struct values of various shapes.
+ * Run with "-prof gc" to see the allocation per record. The key mode compares
+ * computing the digest of each key with a key cache that always hits and
+ * with keys that are digests already; the flatten depth compares writing
+ * nested Structs as map bins with flattening them into top-level bins.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StructConverterBenchmark {
+
+    @Param({ "NARROW", "WIDE", "NESTED", "ARRAYS" })
+    public String shape;
+
+    @Param({ "false", "true" })
+    public boolean binMapping;
+
+    @Param({ "user_key", "cached", "digest" })
+    public String keyMode;
+
+    @Param({ "0", "1" })
+    public int flattenDepth;
+
+    private RecordConverter converter;
+    private SinkRecord record;
+
+    @Setup
+    public void setup() {
+        Map<String, Object> props = new HashMap<>();
+        props.put("flatten_depth", String.valueOf(flattenDepth));
+        if (keyMode.equals("cached")) {
+            props.put("key_cache_size", "1000");
+        } else if (keyMode.equals("digest")) {
+            props.put("key_mode", "digest");
+        }
+        converter = new StructConverter(RecordShapes.topicConfigs(RecordShapes.Shape.valueOf(shape), binMapping, props));
+        record = RecordShapes.structRecord(RecordShapes.Shape.valueOf(shape));
+        if (keyMode.equals("digest")) {
+            byte[] digest = new Key("test", "benchmark", (String) record.key()).digest;
+            record = record.newRecord(record.topic(), record.kafkaPartition(), Schema.BYTES_SCHEMA, digest,
+                    record.valueSchema(), record.value(), record.timestamp());
+        }
+    }
+
+    @Benchmark
+    public AerospikeRecord convert() {
+        return converter.convertRecord(record);
+    }
+}
@@ -18,15 +18,22 @@ package com.aerospike.kafka.connect.data;
 
 import static org.junit.Assert.*;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.connect.data.ConnectSchema;
 import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.Schema.Type;
 import org.apache.kafka.connect.data.SchemaBuilder;
 import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.data.Timestamp;
+import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.junit.Test;
 
@@ -55,6 +62,198 @@ public class StructConverterTest extends AbstractConverterTest {
         assertEquals(42, value.get("intKey"));
     }
 
+    @Test
+    public void testReusesPlanForSameSchema() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet");
+        StructConverter subject = new StructConverter(config);
+        Struct struct = buildStruct("aKey", "aValue");
+        Struct other = buildStruct("aKey", "aValue");
+        TopicConfig topicConfig = config.get("testTopic");
+
+        StructPlan plan = subject.getPlan(struct.schema(), topicConfig);
+
+        assertSame(plan, subject.getPlan(struct.schema(), topicConfig));
+        assertSame(plan, subject.getPlan(other.schema(), topicConfig));
+    }
+
+    @Test
+    public void testCompilesPlanForChangedSchema() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet");
+        RecordConverter subject = getConverter(config);
+
+        AerospikeRecord first = subject.convertRecord(createSinkRecord("testTopic", "testKey", "bin1", "aString"));
+        AerospikeRecord second = subject.convertRecord(
+                createSinkRecord("testTopic", "testKey", "bin1", "aString", "bin2", 12345));
+
+        assertEquals(1, first.bins().length);
+        assertEquals(2, second.bins().length);
+        assertEquals("bin2", second.bins()[1].name);
+        assertEquals(12345, second.bins()[1].value.toInteger());
+    }
+
+    @Test
+    public void testConvertsRemainingBytesOfBufferFields() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet");
+        RecordConverter subject = getConverter(config);
+        Schema schema = SchemaBuilder.struct().field("bytesBin", Schema.BYTES_SCHEMA).build();
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0x01, 0x02, 0x03, 0x04 });
+        buffer.position(1);
+        Struct struct = new Struct(schema).put("bytesBin", buffer.slice());
+        SinkRecord record = new SinkRecord("testTopic", 0, null, "testKey", schema, struct, 0);
+
+        AerospikeRecord result = subject.convertRecord(record);
+
+        assertArrayEquals(new byte[] { 0x02, 0x03, 0x04 }, (byte[]) result.bins()[0].value.getObject());
+    }
+
+    @Test
+    public void testConvertNullAndSmallIntegerFields() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet");
+        RecordConverter subject = getConverter(config);
+        Schema schema = SchemaBuilder.struct()
+                .field("int8Bin", Schema.INT8_SCHEMA)
+                .field("optBin", Schema.OPTIONAL_STRING_SCHEMA)
+                .field("nestedBin", SchemaBuilder.struct().field("aKey", Schema.STRING_SCHEMA).optional().build())
+                .build();
+        Struct struct = new Struct(schema).put("int8Bin", (byte) 7);
+        SinkRecord record = new SinkRecord("testTopic", 0, null, "testKey", schema, struct, 0);
+
+        AerospikeRecord result = subject.convertRecord(record);
+
+        Bin[] bins = result.bins();
+        assertEquals(3, bins.length);
+        assertEquals(7, bins[0].value.toInteger());
+        assertNull(bins[1].value.getObject());
+        assertNull(bins[2].value.getObject());
+    }
+
+    @Test
+    public void testFlattensNestedStructs() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "flatten_depth", "1");
+        RecordConverter subject = getConverter(config);
+        Schema geoSchema = SchemaBuilder.struct().field("lat", Schema.FLOAT64_SCHEMA).build();
+        Schema addressSchema = SchemaBuilder.struct().field("city", Schema.STRING_SCHEMA).field("geo", geoSchema)
+                .optional().build();
+        Schema schema = SchemaBuilder.struct()
+                .field("name", Schema.STRING_SCHEMA)
+                .field("address", addressSchema)
+                .field("billing", addressSchema)
+                .build();
+        Struct address = new Struct(addressSchema).put("city", "Oslo").put("geo", new Struct(geoSchema).put("lat", 59.9));
+        Struct struct = new Struct(schema).put("name", "aName").put("address", address);
+        SinkRecord record = new SinkRecord("testTopic", 0, null, "testKey", schema, struct, 0);
+
+        Map<String, Object> bins = binsByName(subject.convertRecord(record));
+
+        assertEquals(5, bins.size());
+        assertEquals("aName", bins.get("name"));
+        assertEquals("Oslo", bins.get("address_city"));
+        assertEquals(59.9, ((Map<?, ?>) bins.get("address_geo")).get("lat"));
+        assertTrue(bins.containsKey("billing_city"));
+        assertNull(bins.get("billing_city"));
+    }
+
+    @Test
+    public void testFlattensArraysOfStructsIntoListBins() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "flatten_depth", "2", "flatten_separator", ".", "bins", "items.sku,items.qty,i.price:items.price.amount");
+        RecordConverter subject = getConverter(config);
+        Schema priceSchema = SchemaBuilder.struct().field("amount", Schema.INT64_SCHEMA).build();
+        Schema itemSchema = SchemaBuilder.struct()
+                .field("sku", Schema.STRING_SCHEMA)
+                .field("qty", Schema.INT32_SCHEMA)
+                .field("price", priceSchema)
+                .build();
+        Schema schema = SchemaBuilder.struct().field("items", SchemaBuilder.array(itemSchema).build()).build();
+        List<Struct> items = Arrays.asList(
+                new Struct(itemSchema).put("sku", "a").put("qty", 1).put("price", new Struct(priceSchema).put("amount", 10L)),
+                new Struct(itemSchema).put("sku", "b").put("qty", 2).put("price", new Struct(priceSchema).put("amount", 20L)));
+        Struct struct = new Struct(schema).put("items", items);
+        SinkRecord record = new SinkRecord("testTopic", 0, null, "testKey", schema, struct, 0);
+
+        Map<String, Object> bins = binsByName(subject.convertRecord(record));
+
+        assertEquals(3, bins.size());
+        assertEquals(Arrays.asList("a", "b"), bins.get("items.sku"));
+        assertEquals(Arrays.asList(1, 2), bins.get("items.qty"));
+        assertEquals(Arrays.asList(10L, 20L), bins.get("i.price"));
+    }
+
+    @Test
+    public void testAppliesFieldTransforms() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "field_transforms", "secret:drop,created:epoch:seconds,amount:number,qty:cast:int64,"
+                        + "id:cast:string,id:rename:key,name:rename:n",
+                "key_field", "key", "bins", "created,amount,qty,n");
+        RecordConverter subject = getConverter(config);
+        Schema schema = SchemaBuilder.struct()
+                .field("id", Schema.INT32_SCHEMA)
+                .field("name", Schema.STRING_SCHEMA)
+                .field("secret", Schema.STRING_SCHEMA)
+                .field("created", Timestamp.SCHEMA)
+                .field("amount", Schema.OPTIONAL_STRING_SCHEMA)
+                .field("qty", Schema.STRING_SCHEMA)
+                .build();
+        Struct struct = new Struct(schema).put("id", 42).put("name", "aName").put("secret", "s")
+                .put("created", new Date(1500000000000L)).put("amount", "12.5").put("qty", "3");
+        SinkRecord record = new SinkRecord("testTopic", 0, null, null, schema, struct, 0);
+
+        AerospikeRecord result = subject.convertRecord(record);
+
+        assertEquals("42", result.key().userKey.getObject());
+        Map<String, Object> bins = binsByName(result);
+        assertEquals(4, bins.size());
+        assertEquals(1500000000L, bins.get("created"));
+        assertEquals(12.5, bins.get("amount"));
+        assertEquals(3L, bins.get("qty"));
+        assertEquals("aName", bins.get("n"));
+
+        struct.put("amount", null);
+        assertNull(binsByName(subject.convertRecord(record)).get("amount"));
+    }
+
+    @Test
+    public void testTransformsFlattenedFields() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "flatten_depth", "1", "field_transforms", "address:rename:addr,address_zip:cast:int32,address_geo:drop");
+        RecordConverter subject = getConverter(config);
+        Schema geoSchema = SchemaBuilder.struct().field("lat", Schema.FLOAT64_SCHEMA).build();
+        Schema addressSchema = SchemaBuilder.struct().field("zip", Schema.STRING_SCHEMA).field("geo", geoSchema)
+                .build();
+        Schema schema = SchemaBuilder.struct().field("address", addressSchema).build();
+        Struct address = new Struct(addressSchema).put("zip", "0150").put("geo", new Struct(geoSchema).put("lat", 1.0));
+        SinkRecord record = new SinkRecord("testTopic", 0, null, "testKey", schema,
+                new Struct(schema).put("address", address), 0);
+
+        Map<String, Object> bins = binsByName(subject.convertRecord(record));
+
+        assertEquals(1, bins.size());
+        assertEquals(150, bins.get("addr_zip"));
+    }
+
+    @Test(expected = DataException.class)
+    public void testRejectsTransformOfUnsupportedType() {
+        Map<String, TopicConfig> config = configFor("testTopic", "namespace", "topicNamespace", "set", "topicSet",
+                "field_transforms", "bin1:epoch");
+        RecordConverter subject = getConverter(config);
+
+        subject.convertRecord(createSinkRecord("testTopic", "testKey", "bin1", "aString"));
+    }
+
+    @Test(expected = ConfigException.class)
+    public void testRejectsInvalidTransform() {
+        configFor("testTopic", "namespace", "topicNamespace", "field_transforms", "bin1:cast:decimal");
+    }
+
+    private Map<String, Object> binsByName(AerospikeRecord record) {
+        Map<String, Object> bins = new HashMap<>();
+        for (Bin bin : record.bins()) {
+            bins.put(bin.name, bin.value.getObject());
+        }
+        return bins;
+    }
+
     @Override
     public RecordConverter getConverter(Map<String, TopicConfig> config) {
         return new StructConverter(config);
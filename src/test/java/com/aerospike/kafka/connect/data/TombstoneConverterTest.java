@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.data;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.Test;
+
+import com.aerospike.client.Key;
+import com.aerospike.kafka.connect.sink.TopicConfig;
+
+public class TombstoneConverterTest {
+
+    @Test
+    public void testConvertsNullValueToDelete() {
+        RecordMapperFactory factory = new RecordMapperFactory(config());
+        SinkRecord record = new SinkRecord("testTopic", 0, null, "testKey", null, null, 0);
+
+        AerospikeRecord delete = factory.getMapper(record).convertRecord(record);
+
+        assertTrue(delete.isDelete());
+        assertEquals(new Key("topicNamespace", "topicSet", "testKey"), delete.key());
+        assertEquals(0, delete.bins().length);
+    }
+
+    @Test
+    public void testConvertsNullValueWithSchemaToDelete() {
+        RecordMapperFactory factory = new RecordMapperFactory(config());
+        SinkRecord record = new SinkRecord("testTopic", 0, null, 7L,
+                SchemaBuilder.struct().optional().build(), null, 0);
+
+        AerospikeRecord delete = factory.getMapper(record).convertRecord(record);
+
+        assertTrue(delete.isDelete());
+        assertEquals(new Key("topicNamespace", "topicSet", 7L), delete.key());
+    }
+
+    @Test(expected = DataException.class)
+    public void testRejectsTombstoneWithoutKey() {
+        RecordMapperFactory factory = new RecordMapperFactory(config());
+        SinkRecord record = new SinkRecord("testTopic", 0, null, null, null, null, 0);
+
+        factory.getMapper(record).convertRecord(record);
+    }
+
+    @Test
+    public void testReadsKeyAndSetFieldsFromStructKey() {
+        RecordMapperFactory factory = new RecordMapperFactory(fieldConfig());
+        Schema keySchema = SchemaBuilder.struct().field("id", Schema.INT64_SCHEMA).field("type", Schema.STRING_SCHEMA)
+                .build();
+        Struct key = new Struct(keySchema).put("id", 7L).put("type", "users");
+        SinkRecord record = new SinkRecord("testTopic", 0, keySchema, key, null, null, 0);
+
+        AerospikeRecord delete = factory.getMapper(record).convertRecord(record);
+
+        assertTrue(delete.isDelete());
+        assertEquals(new Key("topicNamespace", "users", 7L), delete.key());
+    }
+
+    @Test
+    public void testReadsKeyAndSetFieldsFromMapKey() {
+        RecordMapperFactory factory = new RecordMapperFactory(fieldConfig());
+        Map<String, Object> key = new HashMap<>();
+        key.put("id", "testKey");
+        key.put("type", "users");
+        SinkRecord record = new SinkRecord("testTopic", 0, null, key, null, null, 0);
+
+        AerospikeRecord delete = factory.getMapper(record).convertRecord(record);
+
+        assertEquals(new Key("topicNamespace", "users", "testKey"), delete.key());
+    }
+
+    @Test(expected = DataException.class)
+    public void testRejectsPlainKeyOnTopicWithKeyField() {
+        RecordMapperFactory factory = new RecordMapperFactory(fieldConfig());
+        SinkRecord record = new SinkRecord("testTopic", 0, null, "testKey", null, null, 0);
+
+        factory.getMapper(record).convertRecord(record);
+    }
+
+    @Test(expected = DataException.class)
+    public void testRejectsKeyWithoutSetField() {
+        RecordMapperFactory factory = new RecordMapperFactory(fieldConfig());
+        SinkRecord record = new SinkRecord("testTopic", 0, null, Collections.singletonMap("id", "testKey"), null,
+                null, 0);
+
+        factory.getMapper(record).convertRecord(record);
+    }
+
+    private Map<String, TopicConfig> fieldConfig() {
+        Map<String, Object> config = new HashMap<>();
+        config.put("namespace", "topicNamespace");
+        config.put("key_field", "id");
+        config.put("set_field", "type");
+        return Collections.singletonMap("testTopic", new TopicConfig(config));
+    }
+
+    private Map<String, TopicConfig> config() {
+        Map<String, Object> config = new HashMap<>();
+        config.put("namespace", "topicNamespace");
+        config.put("set", "topicSet");
+        return Collections.singletonMap("testTopic", new TopicConfig(config));
+    }
+}
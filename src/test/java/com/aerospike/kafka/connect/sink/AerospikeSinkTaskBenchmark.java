@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aerospike.client.ResultCode;
+
+/**
+ * Runs the sink task end to end against a cluster of fake nodes: each
+ * operation puts a batch of records and commits once all of them have been
+ * written. The nodes answer with exponentially distributed latency, fail a
+ * fraction of commands with DEVICE_OVERLOAD and one of them can be made
+ * slower than the others. The peak number of concurrent commands per node
+ * is printed after each iteration. "clientShards" and "selectorThreads"
+ * scale the client side, e.g. with -p meanLatencyMicros=0 -p
+ * clientShards=1,2,4 to measure how throughput scales once the selector
+ * threads are the bottleneck.
+ * "conversionThreads" converts each batch on that many threads, in chunks of
+ * at least 100 records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AerospikeSinkTaskBenchmark {
+
+    @Param({ "3" })
+    public int nodes;
+
+    @Param({ "200" })
+    public long meanLatencyMicros;
+
+    @Param({ "1" })
+    public int slowNodeFactor;
+
+    @Param({ "0.0", "0.01" })
+    public double errorRate;
+
+    @Param({ "100", "500" })
+    public int maxAsyncCommands;
+
+    @Param({ "false", "true" })
+    public boolean adaptive;
+
+    @Param({ "1000" })
+    public int batchSize;
+
+    @Param({ "1" })
+    public int clientShards;
+
+    @Param({ "1" })
+    public int selectorThreads;
+
+    @Param({ "0" })
+    public int conversionThreads;
+
+    private FakeCluster cluster;
+    private AerospikeSinkTask task;
+    private List<SinkRecord> records;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        cluster = new FakeCluster(nodes, "test");
+        cluster.setLatency(FakeNode.exponential(meanLatencyMicros));
+        cluster.setErrors(errorRate, ResultCode.DEVICE_OVERLOAD);
+        cluster.node(0).setLatency(FakeNode.exponential(meanLatencyMicros * slowNodeFactor));
+        Map<String, String> config = new HashMap<>();
+        config.put("cluster.hosts", cluster.getSeedHost());
+        config.put("topics", "benchmark");
+        config.put("topic.namespace", "test");
+        config.put("topic.set", "benchmark");
+        config.put("max_async_commands", Integer.toString(maxAsyncCommands));
+        config.put("concurrency.adaptive", Boolean.toString(adaptive));
+        config.put("client.shards", Integer.toString(clientShards));
+        config.put("client.selector_threads", Integer.toString(selectorThreads));
+        config.put("conversion.threads", Integer.toString(conversionThreads));
+        config.put("retry.backoff_ms", "1");
+        config.put("retry.max_backoff_ms", "50");
+        config.put("retry.max_retries", "20");
+        config.put("commit.max_wait_ms", "60000");
+        task = new AerospikeSinkTask();
+        task.start(config);
+        records = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            Map<String, Object> value = new HashMap<>();
+            value.put("str", "value" + i);
+            value.put("int", (long) i);
+            records.add(new SinkRecord("benchmark", 0, null, "key" + i, null, value, i));
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportInFlight() {
+        StringBuilder peaks = new StringBuilder();
+        for (FakeNode node : cluster.nodes()) {
+            peaks.append(' ').append(node.getName()).append('=').append(node.getMaxInFlight());
+        }
+        System.out.println("Peak commands in flight:" + peaks);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        task.stop();
+        cluster.close();
+    }
+
+    @Benchmark
+    public void putAndCommit(Counters counters) {
+        task.put(records);
+        task.preCommit(Collections.<TopicPartition, OffsetAndMetadata>emptyMap());
+        counters.records += records.size();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long records;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            records = 0;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.errors.RetriableException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aerospike.client.Key;
+import com.aerospike.client.ResultCode;
+
+public class AerospikeSinkTaskFakeClusterTest {
+
+    private static final int RECORDS = 200;
+    private static final TopicPartition PARTITION = new TopicPartition("testTopic", 0);
+
+    private FakeCluster cluster;
+    private AerospikeSinkTask task;
+
+    @Before
+    public void setUp() throws IOException {
+        cluster = new FakeCluster(2, "test");
+        task = new AerospikeSinkTask();
+    }
+
+    @After
+    public void tearDown() {
+        task.stop();
+        cluster.close();
+    }
+
+    @Test
+    public void testWritesRecordsToAllNodes() {
+        task.start(config());
+
+        task.put(records());
+        Map<TopicPartition, OffsetAndMetadata> offsets = commit(task);
+
+        assertRecordsWritten();
+        assertEquals(RECORDS, offsets.get(PARTITION).offset());
+        assertTrue(cluster.node(0).getWrites() > 0);
+        assertTrue(cluster.node(1).getWrites() > 0);
+        Map<String, Object> record = cluster.getRecord(new Key("test", "testSet", "key7"));
+        assertEquals("value7", record.get("str"));
+        assertEquals(7L, record.get("int"));
+    }
+
+    @Test
+    public void testWritesThroughShardedClients() {
+        Map<String, String> config = config();
+        config.put("client.shards", "3");
+        config.put("client.selector_threads", "2");
+        task.start(config);
+
+        task.put(records());
+        commit(task);
+
+        assertRecordsWritten();
+    }
+
+    @Test
+    public void testSharesClientBetweenTasks() {
+        Map<String, String> config = config();
+        config.put("client.shared", "true");
+        config.put("client.shared_idle_ms", "0");
+        AerospikeSinkTask other = new AerospikeSinkTask();
+        task.start(config);
+        other.start(config);
+        try {
+            assertEquals(1, ClientRegistry.size());
+
+            task.put(records());
+            commit(task);
+            other.put(records());
+            commit(other);
+        } finally {
+            other.stop();
+        }
+
+        assertRecordsWritten();
+        assertEquals(1, ClientRegistry.size());
+        task.stop();
+        assertEquals(0, ClientRegistry.size());
+    }
+
+    @Test
+    public void testDeletesRecordsForTombstones() {
+        Map<String, String> config = config();
+        config.put("coalesce.enabled", "true");
+        task.start(config);
+        List<SinkRecord> records = records();
+        for (int i = 0; i < RECORDS; i += 2) {
+            records.add(new SinkRecord("testTopic", 0, null, "key" + i, null, null, RECORDS + i));
+        }
+
+        task.put(records);
+        Map<TopicPartition, OffsetAndMetadata> offsets = commit(task);
+
+        assertEquals(2 * RECORDS - 1, offsets.get(PARTITION).offset());
+        assertEquals(RECORDS / 2, cluster.size());
+        assertNull(cluster.getRecord(new Key("test", "testSet", "key0")));
+        assertNotNull(cluster.getRecord(new Key("test", "testSet", "key1")));
+    }
+
+    @Test
+    public void testRetriesOverloadedNodes() {
+        cluster.node(0).setErrors(0.3, ResultCode.KEY_BUSY);
+        cluster.node(1).setErrors(0.3, ResultCode.DEVICE_OVERLOAD);
+        Map<String, String> config = config();
+        config.put("retry.max_retries", "20");
+        task.start(config);
+
+        task.put(records());
+        commit(task);
+
+        assertRecordsWritten();
+        assertTrue(cluster.node(0).getErrors() > 0);
+        assertTrue(cluster.node(1).getErrors() > 0);
+    }
+
+    @Test
+    public void testSurvivesDroppedConnections() {
+        cluster.setDropRate(0.05);
+        Map<String, String> config = config();
+        config.put("retry.max_retries", "20");
+        task.start(config);
+
+        task.put(records());
+        commit(task);
+
+        assertRecordsWritten();
+        assertTrue(cluster.node(0).getDrops() + cluster.node(1).getDrops() > 0);
+    }
+
+    @Test
+    public void testAccumulatesBinOperations() {
+        Map<String, String> config = config();
+        config.put("topic.operations", "count:add,events:list_append,log:append,tags:map_put");
+        task.start(config);
+
+        List<SinkRecord> records = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Map<String, Object> value = new HashMap<>();
+            value.put("count", 1L);
+            value.put("events", "event" + i);
+            value.put("log", "x");
+            value.put("tags", Collections.singletonMap("tag" + i, (long) i));
+            value.put("str", "value");
+            records.add(new SinkRecord("testTopic", 0, null, "counter", null, value, i));
+        }
+        task.put(records);
+        commit(task);
+
+        Map<String, Object> record = cluster.getRecord(new Key("test", "testSet", "counter"));
+        assertEquals(5L, record.get("count"));
+        assertEquals("xxxxx", record.get("log"));
+        assertEquals("value", record.get("str"));
+        List<?> events = (List<?>) record.get("events");
+        assertEquals(5, events.size());
+        assertTrue(events.contains("event3"));
+        Map<?, ?> tags = (Map<?, ?>) record.get("tags");
+        assertEquals(5, tags.size());
+        assertEquals(3L, tags.get("tag3"));
+    }
+
+    @Test
+    public void testConvertsRecordsInParallelInOrder() {
+        Map<String, String> config = config();
+        config.put("conversion.threads", "3");
+        config.put("conversion.min_chunk_records", "10");
+        config.put("topic.operations", "log:append");
+        task.start(config);
+        List<SinkRecord> records = records();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < RECORDS; i++) {
+            String entry = String.valueOf((char) ('a' + i % 26));
+            expected.append(entry);
+            records.add(new SinkRecord("testTopic", 0, null, "log", null, Collections.singletonMap("log", entry),
+                    RECORDS + i));
+        }
+
+        task.put(records);
+        commit(task);
+
+        assertEquals(expected.toString(), cluster.getRecord(new Key("test", "testSet", "log")).get("log"));
+        assertEquals(RECORDS + 1, cluster.size());
+    }
+
+    @Test
+    public void testCommitsAcknowledgedOffsetsWithoutWaitingForSlowNode() throws InterruptedException {
+        cluster.node(1).setLatency(FakeNode.fixed(2_000_000));
+        Map<String, String> config = config();
+        config.put("commit.max_wait_ms", "200");
+        task.start(config);
+
+        task.put(records());
+        long startNanos = System.nanoTime();
+        Map<TopicPartition, OffsetAndMetadata> offsets = commit(task);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        assertTrue(elapsedMs >= 200 && elapsedMs < 2000);
+        assertTrue(!offsets.containsKey(PARTITION) || offsets.get(PARTITION).offset() < RECORDS);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!offsets.containsKey(PARTITION) || offsets.get(PARTITION).offset() < RECORDS) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            offsets = commit(task);
+        }
+        assertRecordsWritten();
+    }
+
+    @Test(expected = ConnectException.class)
+    public void testCommitRaisesWriteErrors() {
+        cluster.setErrors(1.0, ResultCode.BIN_TYPE_ERROR);
+        task.start(config());
+
+        task.put(records().subList(0, 1));
+        commit(task);
+    }
+
+    @Test
+    public void testKeepsRaisingPermanentWriteErrors() {
+        cluster.setErrors(1.0, ResultCode.BIN_TYPE_ERROR);
+        task.start(config());
+
+        task.put(records().subList(0, 1));
+        for (int i = 0; i < 2; i++) {
+            try {
+                commit(task);
+                fail("Expected commit to fail");
+            } catch (ConnectException e) {
+                assertFalse(e instanceof RetriableException);
+            }
+        }
+        try {
+            task.put(records().subList(1, 2));
+            fail("Expected put to fail");
+        } catch (ConnectException e) {
+            assertFalse(e instanceof RetriableException);
+        }
+        assertEquals(0, cluster.size());
+    }
+
+    @Test
+    public void testRedeliversRecordsOfFailedWrites() {
+        cluster.setErrors(1.0, ResultCode.KEY_BUSY);
+        StubSinkTaskContext context = new StubSinkTaskContext();
+        task.initialize(context);
+        Map<String, String> config = config();
+        config.put("retry.max_retries", "0");
+        task.start(config);
+
+        task.put(records());
+        Map<TopicPartition, OffsetAndMetadata> offsets = commit(task);
+
+        assertFalse(offsets.containsKey(PARTITION));
+        assertEquals(Collections.singletonMap(PARTITION, 0L), context.takeOffsets());
+        cluster.setErrors(0.0, ResultCode.KEY_BUSY);
+        task.put(records());
+        offsets = commit(task);
+
+        assertTrue(context.takeOffsets().isEmpty());
+        assertRecordsWritten();
+        assertEquals(RECORDS, offsets.get(PARTITION).offset());
+    }
+
+    @Test
+    public void testSkipsRecordsFailingConversionUnexpectedly() {
+        Map<String, String> config = config();
+        config.put("errors.tolerance", "all");
+        task.start(config);
+        List<SinkRecord> records = records();
+        Schema schema = SchemaBuilder.struct().field("str", Schema.STRING_SCHEMA).build();
+        records.set(7, new SinkRecord("testTopic", 0, null, "key7", schema, "notAStruct", 7));
+
+        task.put(records);
+        Map<TopicPartition, OffsetAndMetadata> offsets = commit(task);
+
+        assertEquals(RECORDS, offsets.get(PARTITION).offset());
+        assertEquals(RECORDS - 1, cluster.size());
+        assertNull(cluster.getRecord(new Key("test", "testSet", "key7")));
+    }
+
+    @Test
+    public void testCommitWritesCoalescedRecords() {
+        Map<String, String> config = config();
+        config.put("coalesce.enabled", "true");
+        config.put("coalesce.max_records", Integer.toString(2 * RECORDS));
+        task.start(config);
+
+        task.put(records());
+        assertEquals(0, cluster.size());
+        Map<TopicPartition, OffsetAndMetadata> offsets = commit(task);
+
+        assertRecordsWritten();
+        assertEquals(RECORDS, offsets.get(PARTITION).offset());
+    }
+
+    /*
+     * Commits offsets the way the framework does.
+     */
+    private Map<TopicPartition, OffsetAndMetadata> commit(AerospikeSinkTask task) {
+        return task.preCommit(Collections.<TopicPartition, OffsetAndMetadata>emptyMap());
+    }
+
+    private void assertRecordsWritten() {
+        assertEquals(RECORDS, cluster.size());
+        for (int i = 0; i < RECORDS; i++) {
+            assertNotNull("Missing record " + i, cluster.getRecord(new Key("test", "testSet", "key" + i)));
+        }
+    }
+
+    private Map<String, String> config() {
+        Map<String, String> config = new HashMap<>();
+        config.put("cluster.hosts", cluster.getSeedHost());
+        config.put("topics", "testTopic");
+        config.put("topic.namespace", "test");
+        config.put("topic.set", "testSet");
+        config.put("retry.backoff_ms", "1");
+        config.put("retry.max_backoff_ms", "10");
+        config.put("commit.max_wait_ms", "10000");
+        return config;
+    }
+
+    private List<SinkRecord> records() {
+        List<SinkRecord> records = new ArrayList<>();
+        for (int i = 0; i < RECORDS; i++) {
+            Map<String, Object> value = new HashMap<>();
+            value.put("str", "value" + i);
+            value.put("int", (long) i);
+            records.add(new SinkRecord("testTopic", 0, null, "key" + i, null, value, i));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.async.MaxCommandAction;
+import com.aerospike.kafka.connect.data.AerospikeRecord;
+
+/**
+ * Measures the writer's own overhead against the in-process stub backend:
+ * each operation writes a batch of records and flushes the writer, like the
+ * task does between offset commits. The "records" and "rejected" counters
+ * report records written and rejected per second, the peak number of
+ * concurrent commands is printed after each iteration. The "flush" benchmark
+ * reports the latency of the flush alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncWriterBenchmark {
+
+    @Param({ "100", "1000" })
+    public int maxAsyncCommands;
+
+    @Param({ "block", "reject", "accept" })
+    public String maxCommandAction;
+
+    @Param({ "false", "true" })
+    public boolean adaptive;
+
+    @Param({ "500" })
+    public long latencyMicros;
+
+    @Param({ "250" })
+    public long jitterMicros;
+
+    @Param({ "0.0" })
+    public double failureRate;
+
+    @Param({ "1000" })
+    public int batchSize;
+
+    private StubBackend backend;
+    private AsyncWriter writer;
+    private AerospikeRecord[] records;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Map<String, String> props = new HashMap<>();
+        props.put("cluster.hosts", "127.0.0.1");
+        props.put("topics", "benchmark");
+        props.put("topic.namespace", "test");
+        props.put("max_async_commands", Integer.toString(maxAsyncCommands));
+        props.put("max_command_action", maxCommandAction);
+        props.put("concurrency.adaptive", Boolean.toString(adaptive));
+        props.put("retry.backoff_ms", "1");
+        props.put("retry.max_backoff_ms", "10");
+        backend = new StubBackend(2)
+                .withNodes(4)
+                .withLatency(latencyMicros, jitterMicros)
+                .withFailures(failureRate, ResultCode.DEVICE_OVERLOAD)
+                .withMaxCommands(maxAsyncCommands, MaxCommandAction.valueOf(maxCommandAction.toUpperCase()));
+        writer = new AsyncWriter(new ConnectorConfig(props), null, backend, new SinkTaskMetrics());
+        records = new AerospikeRecord[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            Key key = new Key("test", "benchmark", i);
+            records[i] = new AerospikeRecord(key, new Bin[] { new Bin("id", i), new Bin("str", "aString") });
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportInFlight() {
+        System.out.println("Peak commands in flight: " + backend.resetMaxInFlight());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        writer.close();
+    }
+
+    @Benchmark
+    public void writeAndFlush(Counters counters) {
+        write(counters);
+        writer.flush();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void flush(PendingWrites pending) {
+        writer.flush();
+    }
+
+    private void write(Counters counters) {
+        for (AerospikeRecord record : records) {
+            try {
+                writer.write(record);
+                counters.records++;
+            } catch (AerospikeException.CommandRejected e) {
+                counters.rejected++;
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long records;
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            records = 0;
+            rejected = 0;
+        }
+    }
+
+    /*
+     * Issues a batch of writes before each flush.
+     */
+    @State(Scope.Thread)
+    public static class PendingWrites {
+
+        @Setup(Level.Invocation)
+        public void write(AsyncWriterBenchmark benchmark) {
+            benchmark.write(new Counters());
+        }
+    }
+}
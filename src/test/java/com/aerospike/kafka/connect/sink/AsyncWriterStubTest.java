@@ -0,0 +1,282 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.errors.RetriableException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.async.MaxCommandAction;
+import com.aerospike.kafka.connect.data.AerospikeRecord;
+
+public class AsyncWriterStubTest {
+
+    private AsyncWriter writer;
+
+    @After
+    public void tearDown() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testRetriesTransientFailures() {
+        StubBackend backend = new StubBackend(1).failNext(2, ResultCode.TIMEOUT);
+        writer = new AsyncWriter(config(), null, backend);
+        OffsetTracker.Offset offset = offset(1);
+
+        writer.write(record("aKey"), offset);
+        writer.flush();
+
+        assertTrue(offset.isAcked());
+        assertEquals(2, writer.getRetries());
+        assertEquals(3, backend.getPuts());
+    }
+
+    @Test
+    public void testFailsOnPermanentError() {
+        StubBackend backend = new StubBackend(1).failNext(1, ResultCode.BIN_TYPE_ERROR);
+        writer = new AsyncWriter(config(), null, backend);
+
+        writer.write(record("aKey"), offset(1));
+        try {
+            writer.flush();
+            fail("Expected flush to fail");
+        } catch (RetriableException e) {
+            fail("Permanent error should not be retriable");
+        } catch (ConnectException e) {
+            assertEquals(0, writer.getRetries());
+        }
+        try {
+            writer.raiseErrors();
+            fail("Expected permanent error to be raised again");
+        } catch (RetriableException e) {
+            fail("Permanent error should not be retriable");
+        } catch (ConnectException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testExhaustedRetriesAreNotRetriable() {
+        StubBackend backend = new StubBackend(1).failNext(10, ResultCode.DEVICE_OVERLOAD);
+        writer = new AsyncWriter(config(), null, backend);
+        OffsetTracker.Offset offset = offset(1);
+
+        writer.write(record("aKey"), offset);
+        try {
+            writer.flush();
+            fail("Expected flush to fail");
+        } catch (RetriableException e) {
+            fail("Exhausted retries should not be retriable");
+        } catch (ConnectException e) {
+            assertFalse(offset.isAcked());
+            assertEquals(2, writer.getRetries());
+            assertEquals(3, backend.getPuts());
+        }
+    }
+
+    @Test
+    public void testRaisesTransientErrorWithoutRetriesOnce() {
+        Map<String, String> props = props();
+        props.put("retry.max_retries", "0");
+        StubBackend backend = new StubBackend(1).failNext(1, ResultCode.KEY_BUSY);
+        writer = new AsyncWriter(new ConnectorConfig(props), null, backend);
+
+        writer.write(record("aKey"), offset(1));
+        try {
+            writer.flush();
+            fail("Expected flush to fail");
+        } catch (RetriableException e) {
+            assertEquals(0, writer.getRetries());
+        }
+        OffsetTracker.Offset offset = offset(2);
+        writer.write(record("aKey"), offset);
+        writer.flush();
+
+        assertTrue(offset.isAcked());
+        assertEquals(2, backend.getPuts());
+    }
+
+    @Test
+    public void testRetryDelayDoublesUpToMaximum() {
+        Map<String, String> props = props();
+        props.put("retry.backoff_ms", "10");
+        props.put("retry.max_backoff_ms", "100");
+        writer = new AsyncWriter(new ConnectorConfig(props), null, new StubBackend(1));
+
+        for (int i = 0; i < 100; i++) {
+            assertDelay(5, 10, writer.retryDelayMs(0));
+            assertDelay(20, 40, writer.retryDelayMs(2));
+            assertDelay(50, 100, writer.retryDelayMs(4));
+            assertDelay(50, 100, writer.retryDelayMs(62));
+        }
+    }
+
+    @Test
+    public void testToleratesExhaustedRetries() {
+        StubBackend backend = new StubBackend(1).failNext(10, ResultCode.DEVICE_OVERLOAD);
+        ErrorHandler errorHandler = new ErrorHandler(true, null);
+        writer = new AsyncWriter(config(), errorHandler, backend);
+        OffsetTracker.Offset offset = offset(1);
+
+        writer.write(record("aKey"), offset);
+        writer.flush();
+
+        assertTrue(offset.isAcked());
+        assertEquals(2, writer.getRetries());
+        assertEquals(1, errorHandler.getCount(ErrorHandler.Reason.RETRIES_EXHAUSTED));
+    }
+
+    @Test
+    public void testRejectsCommandsOverLimit() {
+        StubBackend backend = new StubBackend(1).withLatency(100_000, 0).withMaxCommands(1, MaxCommandAction.REJECT);
+        writer = new AsyncWriter(config(), null, backend);
+
+        writer.write(record("aKey"));
+        try {
+            writer.write(record("anotherKey"));
+            fail("Expected command to be rejected");
+        } catch (AerospikeException.CommandRejected e) {
+            assertEquals(1, backend.getRejections());
+        }
+        writer.flush();
+        assertEquals(1, backend.getPuts());
+    }
+
+    @Test
+    public void testSlowNodeOnlyHoldsBackItsOwnQueue() throws InterruptedException {
+        StubBackend backend = new StubBackend(2).withNodes(2).withNodeLatency("stub-1", 100_000)
+                .withMaxCommands(8, MaxCommandAction.BLOCK);
+        Map<String, String> props = new HashMap<>(config().originalsStrings());
+        props.put("node.max_in_flight", "4");
+        writer = new AsyncWriter(new ConnectorConfig(props), null, backend);
+        List<OffsetTracker.Offset> fast = new ArrayList<>();
+        List<OffsetTracker.Offset> slow = new ArrayList<>();
+
+        for (int i = 0; i < 40; i++) {
+            AerospikeRecord record = record("key" + i);
+            OffsetTracker.Offset offset = offset(i);
+            (backend.nodeName(record.key()).equals("stub-1") ? slow : fast).add(offset);
+            writer.write(record, offset);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!allAcked(fast) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertTrue(allAcked(fast));
+        assertFalse(allAcked(slow));
+        assertTrue(writer.getQueued() > 0);
+        writer.flush();
+        assertTrue(allAcked(slow));
+        assertEquals(0, writer.getQueued());
+    }
+
+    @Test
+    public void testDeleteWaitsForRetriedPutOfSameKey() {
+        StubBackend backend = new StubBackend(2).failNext(1, ResultCode.KEY_BUSY);
+        Map<String, String> props = new HashMap<>(config().originalsStrings());
+        props.put("retry.backoff_ms", "50");
+        writer = new AsyncWriter(new ConnectorConfig(props), null, backend);
+        OffsetTracker.Offset put = offset(1);
+        OffsetTracker.Offset delete = offset(2);
+
+        writer.write(record("aKey"), put);
+        writer.write(AerospikeRecord.delete(new Key("test", "test", "aKey")), delete);
+        writer.write(record("anotherKey"));
+        writer.flush();
+
+        assertTrue(put.isAcked());
+        assertTrue(delete.isAcked());
+        assertEquals(1, backend.getDeletes());
+        List<String> completed = backend.getCompleted();
+        assertEquals(Arrays.asList("put anotherKey", "put aKey", "delete aKey"), completed);
+    }
+
+    @Test
+    public void testSendsRetriesAndSuccessorsFromDispatcherThread() {
+        StubBackend backend = new StubBackend(2).failNext(1, ResultCode.KEY_BUSY)
+                .withMaxCommands(1, MaxCommandAction.BLOCK);
+        writer = new AsyncWriter(config(), null, backend);
+
+        writer.write(record("aKey"), offset(1));
+        writer.write(AerospikeRecord.delete(new Key("test", "test", "aKey")), offset(2));
+        writer.flush();
+
+        assertEquals(1, writer.getRetries());
+        assertEquals(1, backend.getDeletes());
+        for (String thread : backend.getCallerThreads()) {
+            assertFalse(thread, thread.startsWith("aerospike-writer-retry-"));
+        }
+        boolean dispatched = false;
+        for (String thread : backend.getCallerThreads()) {
+            dispatched |= thread.startsWith("aerospike-writer-dispatch-");
+        }
+        assertTrue(dispatched);
+    }
+
+    private boolean allAcked(List<OffsetTracker.Offset> offsets) {
+        for (OffsetTracker.Offset offset : offsets) {
+            if (!offset.isAcked()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void assertDelay(long min, long max, long delayMs) {
+        assertTrue("Delay " + delayMs + " ms not in [" + min + ", " + max + "]", delayMs >= min && delayMs <= max);
+    }
+
+    private ConnectorConfig config() {
+        return new ConnectorConfig(props());
+    }
+
+    private Map<String, String> props() {
+        Map<String, String> props = new HashMap<>();
+        props.put("cluster.hosts", "127.0.0.1");
+        props.put("topics", "testTopic");
+        props.put("topic.namespace", "test");
+        props.put("retry.max_retries", "2");
+        props.put("retry.backoff_ms", "1");
+        return props;
+    }
+
+    private AerospikeRecord record(String key) {
+        return new AerospikeRecord(new Key("test", "test", key), new Bin[] { new Bin("aBin", "aValue") });
+    }
+
+    private OffsetTracker.Offset offset(long offset) {
+        return new OffsetTracker.Offset(new SinkRecord("testTopic", 0, null, "aKey", null, "aValue", offset));
+    }
+}
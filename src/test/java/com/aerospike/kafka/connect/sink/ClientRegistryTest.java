@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.listener.WriteListener;
+import com.aerospike.client.policy.WritePolicy;
+
+public class ClientRegistryTest {
+
+    private static final int MAX_ASYNC_COMMANDS = 200;
+
+    private FakeCluster cluster;
+    private ManualIdleTimer idleTimer;
+
+    @Before
+    public void setUp() throws IOException {
+        cluster = new FakeCluster(1, "test");
+        idleTimer = new ManualIdleTimer();
+        ClientRegistry.setIdleTimer(idleTimer);
+    }
+
+    @After
+    public void tearDown() {
+        ClientRegistry.setIdleTimer(null);
+        cluster.close();
+    }
+
+    @Test
+    public void testSharesClientForSameHosts() {
+        ConnectorConfig config = new ConnectorConfig(config());
+        ClientRegistry.SharedClient first = ClientRegistry.acquire(config, MAX_ASYNC_COMMANDS, 0);
+        ClientRegistry.SharedClient second = ClientRegistry.acquire(config, MAX_ASYNC_COMMANDS, 0);
+        ClientRegistry.SharedClient otherShard = ClientRegistry.acquire(config, MAX_ASYNC_COMMANDS, 1);
+
+        assertSame(first, second);
+        assertNotSame(first, otherShard);
+        assertEquals(2, ClientRegistry.size());
+
+        ClientRegistry.release(first, 0);
+        assertTrue(second.client().isConnected());
+        ClientRegistry.release(second, 0);
+        ClientRegistry.release(otherShard, 0);
+        assertFalse(first.client().isConnected());
+        assertEquals(0, ClientRegistry.size());
+    }
+
+    @Test
+    public void testSeparatesClientsWithDifferentCommandLimits() {
+        ConnectorConfig config = new ConnectorConfig(config());
+        ClientRegistry.SharedClient first = ClientRegistry.acquire(config, MAX_ASYNC_COMMANDS, 0);
+        ClientRegistry.SharedClient second = ClientRegistry.acquire(config, 2 * MAX_ASYNC_COMMANDS, 0);
+
+        assertNotSame(first, second);
+        assertEquals(2, ClientRegistry.size());
+
+        ClientRegistry.release(first, 0);
+        ClientRegistry.release(second, 0);
+        assertEquals(0, ClientRegistry.size());
+    }
+
+    @Test
+    public void testKeepsIdleClientForRestart() {
+        ConnectorConfig config = new ConnectorConfig(config());
+        ClientRegistry.SharedClient first = ClientRegistry.acquire(config, MAX_ASYNC_COMMANDS, 0);
+        ClientRegistry.release(first, 200);
+
+        ClientRegistry.SharedClient restarted = ClientRegistry.acquire(config, MAX_ASYNC_COMMANDS, 0);
+        assertSame(first, restarted);
+        idleTimer.expire();
+        assertTrue(restarted.client().isConnected());
+
+        ClientRegistry.release(restarted, 50);
+        assertEquals(1, ClientRegistry.size());
+        idleTimer.expire();
+        assertEquals(0, ClientRegistry.size());
+        assertFalse(restarted.client().isConnected());
+    }
+
+    @Test(timeout = 30000)
+    public void testConcurrentTasksShareOneClient() throws Exception {
+        final ConnectorConfig config = new ConnectorConfig(config());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<ClientRegistry.SharedClient>> acquired = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                acquired.add(executor.submit(new Callable<ClientRegistry.SharedClient>() {
+                    @Override
+                    public ClientRegistry.SharedClient call() {
+                        return ClientRegistry.acquire(config, MAX_ASYNC_COMMANDS, 0);
+                    }
+                }));
+            }
+            ClientRegistry.SharedClient first = acquired.get(0).get();
+            for (Future<ClientRegistry.SharedClient> shared : acquired) {
+                assertSame(first, shared.get());
+                assertTrue(shared.get().client().isConnected());
+            }
+            assertEquals(1, ClientRegistry.size());
+        } finally {
+            executor.shutdown();
+            for (Future<ClientRegistry.SharedClient> shared : acquired) {
+                ClientRegistry.release(shared.get(), 0);
+            }
+        }
+        assertEquals(0, ClientRegistry.size());
+    }
+
+    @Test
+    public void testEnforcesCommandLimitPerTask() {
+        cluster.node(0).setLatency(FakeNode.fixed(500_000));
+        Map<String, String> props = config();
+        props.put("max_async_commands", "1");
+        props.put("max_command_action", "reject");
+        ConnectorConfig config = new ConnectorConfig(props);
+        AsyncClientBackend task1 = (AsyncClientBackend) AsyncClientBackend.create(config);
+        AsyncClientBackend task2 = (AsyncClientBackend) AsyncClientBackend.create(config);
+        try {
+            WritePolicy policy = new WritePolicy();
+            task1.put(policy, new NoopListener(), new Key("test", "testSet", "key1"), new Bin("bin", 1));
+            task2.put(policy, new NoopListener(), new Key("test", "testSet", "key2"), new Bin("bin", 2));
+            assertEquals(0, task1.getAvailableCommands());
+            try {
+                task1.put(policy, new NoopListener(), new Key("test", "testSet", "key3"), new Bin("bin", 3));
+                fail("Expected command to be rejected");
+            } catch (AerospikeException.CommandRejected e) {
+                // expected
+            }
+        } finally {
+            task1.close();
+            task2.close();
+        }
+    }
+
+    private Map<String, String> config() {
+        Map<String, String> config = new HashMap<>();
+        config.put("cluster.hosts", cluster.getSeedHost());
+        config.put("topics", "testTopic");
+        config.put("topic.namespace", "test");
+        config.put("client.shared", "true");
+        config.put("client.shared_idle_ms", "0");
+        return config;
+    }
+
+    /*
+     * Idle timer that runs the scheduled tasks only when the test lets their
+     * idle period expire.
+     */
+    static class ManualIdleTimer implements ClientRegistry.IdleTimer {
+
+        private final List<FutureTask<?>> tasks = new ArrayList<>();
+
+        @Override
+        public synchronized Future<?> schedule(Runnable task, long delayMs) {
+            FutureTask<?> future = new FutureTask<>(task, null);
+            tasks.add(future);
+            return future;
+        }
+
+        /*
+         * Runs the tasks that have not been cancelled.
+         */
+        void expire() {
+            List<FutureTask<?>> expired;
+            synchronized (this) {
+                expired = new ArrayList<>(tasks);
+                tasks.clear();
+            }
+            for (FutureTask<?> task : expired) {
+                task.run();
+            }
+        }
+    }
+
+    static class NoopListener implements WriteListener {
+
+        @Override
+        public void onSuccess(Key key) {
+        }
+
+        @Override
+        public void onFailure(AerospikeException e) {
+        }
+    }
+}
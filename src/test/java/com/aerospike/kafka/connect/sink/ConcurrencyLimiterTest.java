@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void testDecreasesOnOverload() {
+        ConcurrencyLimiter subject = new ConcurrencyLimiter(10, 100, 0);
+        long start = System.nanoTime();
+        subject.acquire();
+
+        subject.release(start, true);
+
+        assertEquals(75, subject.getLimit());
+        List<ConcurrencyLimiter.LimitChange> history = subject.getHistory();
+        assertEquals(1, history.size());
+        assertEquals("overload", history.get(0).getReason());
+    }
+
+    @Test
+    public void testSingleDecreasePerWindow() {
+        ConcurrencyLimiter subject = new ConcurrencyLimiter(10, 100, 0);
+        long start = System.nanoTime();
+        subject.acquire();
+        subject.acquire();
+
+        subject.release(start, true);
+        subject.release(start, true);
+
+        assertEquals(75, subject.getLimit());
+    }
+
+    @Test
+    public void testTryAcquireFailsAtLimit() {
+        ConcurrencyLimiter subject = new ConcurrencyLimiter(1, 2, 0);
+
+        assertTrue(subject.tryAcquire());
+        assertTrue(subject.tryAcquire());
+        assertFalse(subject.tryAcquire());
+        subject.cancel();
+        assertTrue(subject.tryAcquire());
+
+        assertEquals(2, subject.getInFlight());
+    }
+
+    @Test
+    public void testNeverBelowMinimum() {
+        ConcurrencyLimiter subject = new ConcurrencyLimiter(10, 12, 0);
+        for (int i = 0; i < 5; i++) {
+            subject.acquire();
+            subject.release(System.nanoTime(), true);
+        }
+
+        assertEquals(10, subject.getLimit());
+    }
+
+    @Test
+    public void testIncreasesAfterWindowOfSuccesses() {
+        ConcurrencyLimiter subject = new ConcurrencyLimiter(2, 10, 0);
+        subject.acquire();
+        subject.release(System.nanoTime(), true);
+        assertEquals(7, subject.getLimit());
+
+        for (int i = 0; i < 7; i++) {
+            subject.acquire();
+            subject.release(System.nanoTime(), false);
+        }
+
+        assertEquals(8, subject.getLimit());
+        assertEquals("increase", subject.getHistory().get(1).getReason());
+    }
+
+    @Test
+    public void testAcquireBlocksAtLimit() throws InterruptedException {
+        final ConcurrencyLimiter subject = new ConcurrencyLimiter(1, 1, 0);
+        subject.acquire();
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                subject.acquire();
+                acquired.countDown();
+            }
+        });
+        thread.start();
+
+        assertFalse(acquired.await(50, TimeUnit.MILLISECONDS));
+        subject.cancel();
+        assertTrue(acquired.await(1, TimeUnit.SECONDS));
+        assertEquals(1, subject.getInFlight());
+    }
+}
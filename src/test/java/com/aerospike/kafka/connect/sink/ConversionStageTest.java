@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import com.aerospike.kafka.connect.data.AerospikeRecord;
+
+public class ConversionStageTest {
+
+    private final SinkTaskMetrics metrics = new SinkTaskMetrics();
+    private ConversionStage subject;
+
+    @After
+    public void tearDown() {
+        subject.close();
+    }
+
+    @Test
+    public void testConvertsChunksInOrder() {
+        subject = new ConversionStage(topicConfigs(), 4, 10, metrics);
+        List<SinkRecord> records = records(1000);
+        records.set(500, new SinkRecord("testTopic", 0, null, "key500", null, 42, 500));
+
+        ConversionStage.Batch batch = subject.convert(records);
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                if (i == 500) {
+                    try {
+                        batch.record(i);
+                        fail("Expected conversion error");
+                    } catch (DataException e) {
+                        continue;
+                    }
+                }
+                AerospikeRecord record = batch.record(i);
+                assertEquals("key" + i, record.key().userKey.getObject());
+            }
+        } finally {
+            batch.close();
+        }
+        assertEquals(999, metrics.getRecordsConverted());
+    }
+
+    @Test
+    public void testRaisesUnexpectedErrorsOfConversionThreads() {
+        subject = new ConversionStage(topicConfigs(), 4, 10, metrics);
+        List<SinkRecord> records = records(100);
+        Schema schema = SchemaBuilder.struct().field("str", Schema.STRING_SCHEMA).build();
+        records.set(50, new SinkRecord("testTopic", 0, null, "key50", schema, "notAStruct", 50));
+
+        ConversionStage.Batch batch = subject.convert(records);
+        try {
+            batch.record(50);
+            fail("Expected conversion error");
+        } catch (ClassCastException e) {
+            assertEquals("key51", batch.record(51).key().userKey.getObject());
+        } finally {
+            batch.close();
+        }
+    }
+
+    @Test
+    public void testConvertsSmallBatchesOnTaskThread() {
+        subject = new ConversionStage(topicConfigs(), 4, 100, metrics);
+        List<SinkRecord> records = records(150);
+
+        ConversionStage.Batch batch = subject.convert(records);
+        try {
+            assertEquals("key149", batch.record(149).key().userKey.getObject());
+            assertEquals(1, metrics.getRecordsConverted());
+        } finally {
+            batch.close();
+        }
+    }
+
+    @Test
+    public void testWaitsForRemainingChunksOnClose() {
+        subject = new ConversionStage(topicConfigs(), 2, 10, metrics);
+
+        ConversionStage.Batch batch = subject.convert(records(1000));
+        batch.record(0);
+        batch.close();
+
+        assertEquals(1000, metrics.getRecordsConverted());
+    }
+
+    private Map<String, TopicConfig> topicConfigs() {
+        Map<String, Object> config = new HashMap<>();
+        config.put("namespace", "test");
+        config.put("set", "testSet");
+        return Collections.singletonMap("testTopic", new TopicConfig(config));
+    }
+
+    private List<SinkRecord> records(int count) {
+        List<SinkRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> value = new HashMap<>();
+            value.put("str", "value" + i);
+            records.add(new SinkRecord("testTopic", 0, null, "key" + i, null, value, i));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the flush latency of the in-flight request counter: each operation
+ * starts a number of "requests" that get completed by a pool of threads
+ * standing in for the async client's selector threads and then waits for the
+ * counter to reach zero. The "polling" mechanism is the previous
+ * implementation, which slept for 1 ms between checks of the counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CounterBenchmark {
+
+    @Param({ "polling", "signalling" })
+    public String mechanism;
+
+    @Param({ "100", "1000" })
+    public int requests;
+
+    @Param({ "4" })
+    public int completionThreads;
+
+    private InFlight counter;
+    private ExecutorService completions;
+    private Runnable completion;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch (mechanism) {
+        case "polling":
+            counter = new PollingCounter();
+            break;
+        case "signalling":
+            counter = new SignallingCounter();
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown mechanism: " + mechanism);
+        }
+        completions = Executors.newFixedThreadPool(completionThreads);
+        completion = new Runnable() {
+            @Override
+            public void run() {
+                counter.decrement();
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        completions.shutdownNow();
+    }
+
+    @Benchmark
+    public void flush() {
+        for (int i = 0; i < requests; i++) {
+            counter.increment();
+            completions.execute(completion);
+        }
+        counter.waitUntilZero();
+    }
+
+    interface InFlight {
+        void increment();
+
+        void decrement();
+
+        void waitUntilZero();
+    }
+
+    static class SignallingCounter implements InFlight {
+        private final AsyncWriter.Counter counter = new AsyncWriter.Counter();
+
+        @Override
+        public void increment() {
+            counter.increment();
+        }
+
+        @Override
+        public void decrement() {
+            counter.decrement();
+        }
+
+        @Override
+        public void waitUntilZero() {
+            counter.waitUntilZero();
+        }
+    }
+
+    static class PollingCounter implements InFlight {
+        private final AtomicInteger counter = new AtomicInteger(0);
+
+        @Override
+        public void increment() {
+            counter.incrementAndGet();
+        }
+
+        @Override
+        public void decrement() {
+            counter.decrementAndGet();
+        }
+
+        @Override
+        public void waitUntilZero() {
+            try {
+                while (counter.get() > 0) {
+                    Thread.sleep(1);
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
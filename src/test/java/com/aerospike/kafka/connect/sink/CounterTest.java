@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.connect.errors.ConnectException;
+import org.junit.Test;
+
+public class CounterTest {
+
+    @Test
+    public void testReturnsImmediatelyAtZero() {
+        AsyncWriter.Counter subject = new AsyncWriter.Counter();
+
+        assertTrue(subject.waitUntilZero(1));
+    }
+
+    @Test
+    public void testTimesOutAboveZero() {
+        AsyncWriter.Counter subject = new AsyncWriter.Counter();
+        subject.increment();
+
+        long startNanos = System.nanoTime();
+        boolean zero = subject.waitUntilZero(100);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        assertFalse(zero);
+        assertTrue(elapsedMs >= 100);
+        assertEquals(1, subject.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testWakesUpWhenReachingZero() throws InterruptedException {
+        final AsyncWriter.Counter subject = new AsyncWriter.Counter();
+        subject.increment();
+        subject.increment();
+        Thread decrementer = decrementLater(subject, 2);
+
+        long startNanos = System.nanoTime();
+        boolean zero = subject.waitUntilZero(60000);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        decrementer.join();
+
+        assertTrue(zero);
+        assertTrue(elapsedMs < 10000);
+        assertEquals(0, subject.get());
+    }
+
+    @Test(timeout = 10000)
+    public void testWaitsIndefinitelyWithoutTimeout() throws InterruptedException {
+        AsyncWriter.Counter subject = new AsyncWriter.Counter();
+        subject.increment();
+        Thread decrementer = decrementLater(subject, 1);
+
+        assertTrue(subject.waitUntilZero(0));
+        decrementer.join();
+    }
+
+    @Test
+    public void testInterruptedWhileWaiting() {
+        AsyncWriter.Counter subject = new AsyncWriter.Counter();
+        subject.increment();
+
+        Thread.currentThread().interrupt();
+        try {
+            subject.waitUntilZero(60000);
+            fail("Expected wait to be interrupted");
+        } catch (ConnectException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    /*
+     * Starts a thread that decrements the counter the given number of times
+     * once the test thread is about to wait.
+     */
+    private Thread decrementLater(final AsyncWriter.Counter counter, final int times) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < times; i++) {
+                    counter.decrement();
+                }
+            }
+        });
+        thread.start();
+        started.await();
+        return thread;
+    }
+}
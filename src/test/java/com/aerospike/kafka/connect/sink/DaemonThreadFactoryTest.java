@@ -0,0 +1,43 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class DaemonThreadFactoryTest {
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    @Test
+    public void testNumbersDaemonThreads() {
+        DaemonThreadFactory subject = new DaemonThreadFactory("aerospike-test");
+
+        Thread first = subject.newThread(NOOP);
+        Thread second = subject.newThread(NOOP);
+
+        assertEquals("aerospike-test-1", first.getName());
+        assertEquals("aerospike-test-2", second.getName());
+        assertTrue(first.isDaemon());
+        assertTrue(second.isDaemon());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ErrorHandlerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWritesDeadLetterAndAcks() throws IOException {
+        File file = folder.newFile("dlq.json");
+        ErrorHandler subject = new ErrorHandler(true, new FileDeadLetterQueue(file.getPath()));
+        OffsetTracker tracker = new OffsetTracker();
+        OffsetTracker.Offset offset = tracker.track(record(42, "aKey", "a \"quoted\" value"));
+
+        subject.handle(offset, ErrorHandler.Reason.CONVERSION_ERROR, new DataException("Missing field"));
+        subject.close();
+
+        assertTrue(offset.isAcked());
+        assertEquals(1, subject.getCount(ErrorHandler.Reason.CONVERSION_ERROR));
+        assertEquals(0, subject.getCount(ErrorHandler.Reason.WRITE_ERROR));
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertEquals("{\"topic\":\"testTopic\",\"partition\":0,\"offset\":42,\"timestamp\":null,"
+                + "\"reason\":\"conversion_error\","
+                + "\"error\":\"org.apache.kafka.connect.errors.DataException: Missing field\","
+                + "\"key\":\"aKey\",\"value\":\"a \\\"quoted\\\" value\"}", lines.get(0));
+    }
+
+    @Test
+    public void testWritesSupersededRecords() throws IOException {
+        File file = folder.newFile("dlq.json");
+        ErrorHandler subject = new ErrorHandler(true, new FileDeadLetterQueue(file.getPath()));
+        OffsetTracker tracker = new OffsetTracker();
+        OffsetTracker.Offset first = tracker.track(record(1, "aKey", "v1"));
+        OffsetTracker.Offset second = tracker.track(record(2, "aKey", "v2"));
+        second.supersede(first);
+
+        subject.handle(second, ErrorHandler.Reason.WRITE_ERROR, new RuntimeException("Rejected"));
+        subject.close();
+
+        assertTrue(first.isAcked());
+        assertEquals(2, Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size());
+        assertEquals(3, tracker.committableOffsets().values().iterator().next().offset());
+    }
+
+    @Test
+    public void testEncodesBinaryKeysAndValues() throws IOException {
+        File file = folder.newFile("dlq.json");
+        ErrorHandler subject = new ErrorHandler(true, new FileDeadLetterQueue(file.getPath()));
+        SinkRecord record = new SinkRecord("testTopic", 0, null, new byte[] { 1, 2, 3 }, null,
+                ByteBuffer.wrap(new byte[] { 'a', 'b', 'c' }), 7);
+        OffsetTracker.Offset offset = new OffsetTracker().track(record);
+
+        subject.handle(offset, ErrorHandler.Reason.CONVERSION_ERROR, new DataException("Not a map"));
+        subject.close();
+
+        String line = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).get(0);
+        assertTrue(line, line.endsWith(",\"key\":\"AQID\",\"value\":\"YWJj\"}"));
+    }
+
+    @Test
+    public void testWritesDeadLettersOnDedicatedThread() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicReference<String> threadName = new AtomicReference<>();
+        ErrorHandler subject = new ErrorHandler(true, new DeadLetterQueue() {
+            @Override
+            public void write(SinkRecord record, String reason, Throwable error, Completion completion) {
+                threadName.set(Thread.currentThread().getName());
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                completion.onCompletion(null);
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        OffsetTracker.Offset offset = new OffsetTracker().track(record(1, "aKey", "aValue"));
+
+        subject.handle(offset, ErrorHandler.Reason.WRITE_ERROR, new RuntimeException("Rejected"));
+
+        assertFalse(offset.isAcked());
+        release.countDown();
+        subject.close();
+        assertTrue(offset.isAcked());
+        assertTrue(threadName.get().startsWith("aerospike-dead-letter-queue-"));
+    }
+
+    @Test
+    public void testAcksWithoutDeadLetterQueue() {
+        ErrorHandler subject = new ErrorHandler(true, null);
+        OffsetTracker.Offset offset = new OffsetTracker().track(record(1, "aKey", "aValue"));
+
+        subject.handle(offset, ErrorHandler.Reason.RETRIES_EXHAUSTED, new RuntimeException("Timeout"));
+
+        assertTrue(offset.isAcked());
+        assertEquals(1, subject.getCount(ErrorHandler.Reason.RETRIES_EXHAUSTED));
+    }
+
+    private SinkRecord record(long offset, String key, String value) {
+        return new SinkRecord("testTopic", 0, null, key, null, value, offset);
+    }
+}
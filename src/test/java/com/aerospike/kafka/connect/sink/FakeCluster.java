@@ -0,0 +1,118 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.aerospike.client.Key;
+
+/**
+ * A cluster of {@link FakeNode}s that know about each other through the
+ * "services" info request and split the partitions between them.
+ */
+public class FakeCluster implements Closeable {
+
+    private final List<FakeNode> nodes = new ArrayList<>();
+
+    public FakeCluster(int nodeCount, String... namespaces) throws IOException {
+        List<String> namespaceList = Arrays.asList(namespaces);
+        try {
+            for (int i = 0; i < nodeCount; i++) {
+                nodes.add(new FakeNode(i, nodeCount, namespaceList));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        for (FakeNode node : nodes) {
+            StringBuilder services = new StringBuilder();
+            for (FakeNode other : nodes) {
+                if (other != node) {
+                    services.append(services.length() == 0 ? "" : ";").append(other.getHost());
+                }
+            }
+            node.setServices(services.toString());
+        }
+    }
+
+    /**
+     * Returns the seed host to connect to; the other nodes get discovered
+     * by the client.
+     */
+    public String getSeedHost() {
+        return nodes.get(0).getHost();
+    }
+
+    public FakeNode node(int index) {
+        return nodes.get(index);
+    }
+
+    public List<FakeNode> nodes() {
+        return nodes;
+    }
+
+    public FakeCluster setLatency(FakeNode.Latency latency) {
+        for (FakeNode node : nodes) {
+            node.setLatency(latency);
+        }
+        return this;
+    }
+
+    public FakeCluster setErrors(double errorRate, int errorCode) {
+        for (FakeNode node : nodes) {
+            node.setErrors(errorRate, errorCode);
+        }
+        return this;
+    }
+
+    public FakeCluster setDropRate(double dropRate) {
+        for (FakeNode node : nodes) {
+            node.setDropRate(dropRate);
+        }
+        return this;
+    }
+
+    public Map<String, Object> getRecord(Key key) {
+        for (FakeNode node : nodes) {
+            Map<String, Object> record = node.getRecord(key);
+            if (record != null) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (FakeNode node : nodes) {
+            size += node.size();
+        }
+        return size;
+    }
+
+    @Override
+    public void close() {
+        for (FakeNode node : nodes) {
+            node.close();
+        }
+    }
+}
@@ -0,0 +1,572 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.aerospike.client.Key;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.util.Unpacker;
+
+/**
+ * A stand-in for an Aerospike server node that speaks just enough of the wire
+ * protocol for the Java client to tend the cluster and to write and delete
+ * records: info requests for the node name, features, services and partition
+ * map, and single record write and delete commands. Records are kept in
+ * memory. Each connection is served by its own thread, like the server's
+ * service threads serve one command per connection at a time.
+ *
+ * Commands can be slowed down by a latency distribution and failed at random
+ * with a result code (e.g. KEY_BUSY or DEVICE_OVERLOAD), or the connection
+ * can be dropped without a response. Info requests are never delayed or
+ * failed, so that the cluster tend keeps working.
+ */
+public class FakeNode implements Closeable {
+
+    private static final int PARTITIONS = 4096;
+    private static final int PROTO_VERSION = 2;
+    private static final int PROTO_TYPE_INFO = 1;
+    private static final int PROTO_TYPE_MESSAGE = 3;
+    private static final int MSG_HEADER_SIZE = 22;
+
+    private static final int INFO2_WRITE = 1;
+    private static final int INFO2_DELETE = 2;
+    private static final int INFO2_CREATE_ONLY = 32;
+    private static final int INFO3_UPDATE_ONLY = 8;
+    private static final int INFO3_CREATE_OR_REPLACE = 16;
+    private static final int INFO3_REPLACE_ONLY = 32;
+
+    private static final int FIELD_DIGEST = 4;
+    private static final int OP_WRITE = 2;
+    private static final int OP_CDT_MODIFY = 4;
+    private static final int OP_ADD = 5;
+    private static final int OP_APPEND = 9;
+
+    private static final int LIST_APPEND = 1;
+    private static final int LIST_APPEND_ITEMS = 2;
+    private static final int MAP_PUT_ITEMS = 68;
+
+    private static final int PARTICLE_NULL = 0;
+    private static final int PARTICLE_INTEGER = 1;
+    private static final int PARTICLE_DOUBLE = 2;
+    private static final int PARTICLE_STRING = 3;
+    private static final int PARTICLE_BLOB = 4;
+
+    /**
+     * Distribution of the time it takes the node to process a command.
+     */
+    public interface Latency {
+        long nextMicros();
+    }
+
+    public static Latency fixed(final long micros) {
+        return new Latency() {
+            @Override
+            public long nextMicros() {
+                return micros;
+            }
+        };
+    }
+
+    public static Latency uniform(final long minMicros, final long maxMicros) {
+        return new Latency() {
+            @Override
+            public long nextMicros() {
+                return minMicros + ThreadLocalRandom.current().nextLong(maxMicros - minMicros + 1);
+            }
+        };
+    }
+
+    public static Latency exponential(final long meanMicros) {
+        return new Latency() {
+            @Override
+            public long nextMicros() {
+                return (long) (-meanMicros * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+            }
+        };
+    }
+
+    private final String name;
+    private final int index;
+    private final int nodeCount;
+    private final List<String> namespaces;
+    private final ServerSocket serverSocket;
+    private final ExecutorService handlers;
+    private final Set<Socket> sockets = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+    private final Map<ByteBuffer, Map<String, Object>> records = new ConcurrentHashMap<>();
+    private volatile String services = "";
+
+    private volatile Latency latency = fixed(0);
+    private volatile double errorRate = 0;
+    private volatile int errorCode = ResultCode.DEVICE_OVERLOAD;
+    private volatile double dropRate = 0;
+
+    private final AtomicLong writes = new AtomicLong(0);
+    private final AtomicLong deletes = new AtomicLong(0);
+    private final AtomicLong errors = new AtomicLong(0);
+    private final AtomicLong drops = new AtomicLong(0);
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicInteger maxInFlight = new AtomicInteger(0);
+
+    /**
+     * Starts a node on an ephemeral port of the loopback interface, owning
+     * every partition whose id modulo the node count equals the node index.
+     */
+    public FakeNode(final int index, int nodeCount, List<String> namespaces) throws IOException {
+        this.name = String.format("BB9%013X", index + 1);
+        this.index = index;
+        this.nodeCount = nodeCount;
+        this.namespaces = namespaces;
+        this.serverSocket = new ServerSocket(0, 200, InetAddress.getLoopbackAddress());
+        this.handlers = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "fake-node-" + index + "-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        handlers.execute(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort();
+    }
+
+    /**
+     * Sets the hosts of the other nodes of the cluster, as returned by the
+     * "services" info request.
+     */
+    void setServices(String services) {
+        this.services = services;
+    }
+
+    public FakeNode setLatency(Latency latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Fails the given fraction of commands with the result code.
+     */
+    public FakeNode setErrors(double errorRate, int errorCode) {
+        this.errorCode = errorCode;
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Closes the connection without response for the given fraction of
+     * commands.
+     */
+    public FakeNode setDropRate(double dropRate) {
+        this.dropRate = dropRate;
+        return this;
+    }
+
+    public Map<String, Object> getRecord(Key key) {
+        return records.get(ByteBuffer.wrap(key.digest));
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    public long getWrites() {
+        return writes.get();
+    }
+
+    public long getDeletes() {
+        return deletes.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getDrops() {
+        return drops.get();
+    }
+
+    /**
+     * Returns the highest number of commands processed concurrently.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+        handlers.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                handlers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (IOException e) {
+                // server socket closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                long header = in.readLong();
+                int type = (int) (header >> 48) & 0xFF;
+                byte[] body = new byte[(int) (header & 0xFFFFFFFFFFFFL)];
+                in.readFully(body);
+                byte[] response;
+                if (type == PROTO_TYPE_INFO) {
+                    response = proto(PROTO_TYPE_INFO, info(new String(body, StandardCharsets.UTF_8)));
+                } else if (type == PROTO_TYPE_MESSAGE) {
+                    response = command(body);
+                    if (response == null) {
+                        break;
+                    }
+                } else {
+                    break;
+                }
+                out.write(response);
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            // connection closed by the client or by close()
+        } catch (IOException e) {
+            // treat like a closed connection
+        } finally {
+            sockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private byte[] info(String request) {
+        StringBuilder response = new StringBuilder();
+        for (String command : request.split("\n")) {
+            if (command.isEmpty()) {
+                continue;
+            }
+            response.append(command).append('\t');
+            switch (command) {
+            case "node":
+                response.append(name);
+                break;
+            case "features":
+                response.append("float;batch-index;replicas-all");
+                break;
+            case "partition-generation":
+                response.append('1');
+                break;
+            case "services":
+            case "services-alternate":
+                response.append(services);
+                break;
+            case "replicas-master":
+                for (String namespace : namespaces) {
+                    response.append(namespace).append(':').append(partitionBitmap()).append(';');
+                }
+                break;
+            case "replicas-all":
+                for (String namespace : namespaces) {
+                    response.append(namespace).append(":1,").append(partitionBitmap()).append(';');
+                }
+                break;
+            default:
+                break;
+            }
+            response.append('\n');
+        }
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /*
+     * Processes a command and returns the response, or null to drop the
+     * connection.
+     */
+    private byte[] command(byte[] body) {
+        int current = inFlight.incrementAndGet();
+        int max = maxInFlight.get();
+        while (current > max && !maxInFlight.compareAndSet(max, current)) {
+            max = maxInFlight.get();
+        }
+        try {
+            long delayMicros = latency.nextMicros();
+            if (delayMicros > 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(delayMicros));
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (dropRate > 0 && random.nextDouble() < dropRate) {
+                drops.incrementAndGet();
+                return null;
+            }
+            int resultCode;
+            if (errorRate > 0 && random.nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                resultCode = errorCode;
+            } else {
+                resultCode = apply(ByteBuffer.wrap(body));
+            }
+            byte[] response = new byte[MSG_HEADER_SIZE];
+            response[0] = MSG_HEADER_SIZE;
+            response[5] = (byte) resultCode;
+            return proto(PROTO_TYPE_MESSAGE, response);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private int apply(ByteBuffer message) {
+        int info2 = message.get(2);
+        int info3 = message.get(3);
+        int fieldCount = message.getShort(18);
+        int opCount = message.getShort(20);
+        message.position(MSG_HEADER_SIZE);
+        ByteBuffer digest = null;
+        for (int i = 0; i < fieldCount; i++) {
+            int size = message.getInt();
+            int type = message.get();
+            byte[] data = new byte[size - 1];
+            message.get(data);
+            if (type == FIELD_DIGEST) {
+                digest = ByteBuffer.wrap(data);
+            }
+        }
+        if (digest == null) {
+            return ResultCode.PARAMETER_ERROR;
+        }
+        if ((info2 & INFO2_DELETE) != 0) {
+            deletes.incrementAndGet();
+            return records.remove(digest) == null ? ResultCode.KEY_NOT_FOUND_ERROR : ResultCode.OK;
+        }
+        if ((info2 & INFO2_WRITE) == 0) {
+            return ResultCode.PARAMETER_ERROR;
+        }
+        synchronized (records) {
+            Map<String, Object> existing = records.get(digest);
+            if ((info2 & INFO2_CREATE_ONLY) != 0 && existing != null) {
+                return ResultCode.KEY_EXISTS_ERROR;
+            }
+            if ((info3 & (INFO3_UPDATE_ONLY | INFO3_REPLACE_ONLY)) != 0 && existing == null) {
+                return ResultCode.KEY_NOT_FOUND_ERROR;
+            }
+            boolean replace = (info3 & (INFO3_CREATE_OR_REPLACE | INFO3_REPLACE_ONLY)) != 0;
+            Map<String, Object> bins = new HashMap<>();
+            if (existing != null && !replace) {
+                bins.putAll(existing);
+            }
+            for (int i = 0; i < opCount; i++) {
+                int size = message.getInt();
+                int op = message.get();
+                int particleType = message.get();
+                message.get();
+                int nameLength = message.get();
+                byte[] name = new byte[nameLength];
+                message.get(name);
+                byte[] value = new byte[size - 4 - nameLength];
+                message.get(value);
+                String binName = new String(name, StandardCharsets.UTF_8);
+                int resultCode = ResultCode.OK;
+                switch (op) {
+                case OP_WRITE:
+                    if (particleType == PARTICLE_NULL) {
+                        bins.remove(binName);
+                    } else {
+                        bins.put(binName, decode(particleType, value));
+                    }
+                    break;
+                case OP_ADD:
+                case OP_APPEND:
+                    resultCode = accumulate(bins, binName, op, decode(particleType, value));
+                    break;
+                case OP_CDT_MODIFY:
+                    resultCode = modifyCollection(bins, binName, value);
+                    break;
+                default:
+                    resultCode = ResultCode.PARAMETER_ERROR;
+                    break;
+                }
+                if (resultCode != ResultCode.OK) {
+                    return resultCode;
+                }
+            }
+            records.put(digest, bins);
+        }
+        writes.incrementAndGet();
+        return ResultCode.OK;
+    }
+
+    private int accumulate(Map<String, Object> bins, String binName, int op, Object value) {
+        Object current = bins.get(binName);
+        if (current == null) {
+            bins.put(binName, value);
+        } else if (op == OP_ADD && current instanceof Long && value instanceof Long) {
+            bins.put(binName, (Long) current + (Long) value);
+        } else if (op == OP_ADD && current instanceof Double && value instanceof Double) {
+            bins.put(binName, (Double) current + (Double) value);
+        } else if (op == OP_APPEND && current instanceof String && value instanceof String) {
+            bins.put(binName, (String) current + value);
+        } else {
+            return ResultCode.BIN_TYPE_ERROR;
+        }
+        return ResultCode.OK;
+    }
+
+    /*
+     * Applies the list append and map put items operations; the value is the
+     * operation code followed by the packed list of arguments.
+     */
+    @SuppressWarnings("unchecked")
+    private int modifyCollection(Map<String, Object> bins, String binName, byte[] value) {
+        int command = ((value[0] & 0xFF) << 8) | (value[1] & 0xFF);
+        List<Object> args = (List<Object>) Unpacker.unpackObjectList(value, 2, value.length - 2);
+        Object current = bins.get(binName);
+        switch (command) {
+        case LIST_APPEND:
+        case LIST_APPEND_ITEMS:
+            if (current != null && !(current instanceof List)) {
+                return ResultCode.BIN_TYPE_ERROR;
+            }
+            List<Object> list = current == null ? new ArrayList<>() : new ArrayList<>((List<Object>) current);
+            if (command == LIST_APPEND) {
+                list.add(args.get(0));
+            } else {
+                list.addAll((List<Object>) args.get(0));
+            }
+            bins.put(binName, list);
+            return ResultCode.OK;
+        case MAP_PUT_ITEMS:
+            if (current != null && !(current instanceof Map)) {
+                return ResultCode.BIN_TYPE_ERROR;
+            }
+            Map<Object, Object> map = current == null ? new HashMap<>() : new HashMap<>((Map<Object, Object>) current);
+            map.putAll((Map<Object, Object>) args.get(0));
+            bins.put(binName, map);
+            return ResultCode.OK;
+        default:
+            return ResultCode.PARAMETER_ERROR;
+        }
+    }
+
+    private Object decode(int particleType, byte[] value) {
+        switch (particleType) {
+        case PARTICLE_INTEGER:
+            return ByteBuffer.wrap(value).getLong();
+        case PARTICLE_DOUBLE:
+            return ByteBuffer.wrap(value).getDouble();
+        case PARTICLE_STRING:
+            return new String(value, StandardCharsets.UTF_8);
+        case PARTICLE_BLOB:
+        default:
+            return value;
+        }
+    }
+
+    private String partitionBitmap() {
+        byte[] bitmap = new byte[PARTITIONS / 8];
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            if (partition % nodeCount == index) {
+                bitmap[partition >> 3] |= 0x80 >> (partition & 7);
+            }
+        }
+        return base64(bitmap);
+    }
+
+    private static byte[] proto(int type, byte[] body) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + body.length);
+        buffer.putLong(((long) PROTO_VERSION << 56) | ((long) type << 48) | body.length);
+        buffer.put(body);
+        return buffer.array();
+    }
+
+    private static String base64(byte[] data) {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < data.length; i += 3) {
+            int b = (data[i] & 0xFF) << 16;
+            b |= i + 1 < data.length ? (data[i + 1] & 0xFF) << 8 : 0;
+            b |= i + 2 < data.length ? data[i + 2] & 0xFF : 0;
+            sb.append(alphabet.charAt(b >> 18 & 0x3F)).append(alphabet.charAt(b >> 12 & 0x3F));
+            sb.append(i + 1 < data.length ? alphabet.charAt(b >> 6 & 0x3F) : '=');
+            sb.append(i + 2 < data.length ? alphabet.charAt(b & 0x3F) : '=');
+        }
+        return sb.toString();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.Test;
+
+public class OffsetTrackerTest {
+
+    private static final TopicPartition PARTITION_0 = new TopicPartition("testTopic", 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition("testTopic", 1);
+
+    @Test
+    public void testNothingCommittableBeforeAck() {
+        OffsetTracker subject = new OffsetTracker();
+        subject.track(record(0, 10));
+
+        assertTrue(subject.committableOffsets().isEmpty());
+        assertEquals(1, subject.pending());
+    }
+
+    @Test
+    public void testCommitsHighestContiguousAck() {
+        OffsetTracker subject = new OffsetTracker();
+        OffsetTracker.Offset first = subject.track(record(0, 10));
+        OffsetTracker.Offset second = subject.track(record(0, 11));
+        OffsetTracker.Offset third = subject.track(record(0, 12));
+
+        first.ack();
+        third.ack();
+        assertEquals(11, subject.committableOffsets().get(PARTITION_0).offset());
+
+        second.ack();
+        assertEquals(13, subject.committableOffsets().get(PARTITION_0).offset());
+        assertEquals(0, subject.pending());
+    }
+
+    @Test
+    public void testPartitionsAreIndependent() {
+        OffsetTracker subject = new OffsetTracker();
+        subject.track(record(0, 10));
+        OffsetTracker.Offset other = subject.track(record(1, 20));
+
+        other.ack();
+        Map<TopicPartition, OffsetAndMetadata> offsets = subject.committableOffsets();
+
+        assertFalse(offsets.containsKey(PARTITION_0));
+        assertEquals(21, offsets.get(PARTITION_1).offset());
+    }
+
+    @Test
+    public void testUnacknowledgedOffsets() {
+        OffsetTracker subject = new OffsetTracker();
+        subject.track(record(0, 10)).ack();
+        subject.track(record(0, 11));
+        subject.track(record(0, 12)).ack();
+        subject.track(record(1, 20)).ack();
+
+        Map<TopicPartition, Long> offsets = subject.unacknowledgedOffsets();
+
+        assertEquals(1, offsets.size());
+        assertEquals(Long.valueOf(11), offsets.get(PARTITION_0));
+    }
+
+    @Test
+    public void testRemovePartition() {
+        OffsetTracker subject = new OffsetTracker();
+        subject.track(record(0, 10)).ack();
+        subject.track(record(1, 20)).ack();
+
+        subject.remove(Collections.singleton(PARTITION_0));
+        Map<TopicPartition, OffsetAndMetadata> offsets = subject.committableOffsets();
+
+        assertEquals(1, offsets.size());
+        assertTrue(offsets.containsKey(PARTITION_1));
+    }
+
+    @Test
+    public void testSupersededOffsetAckedWithReplacement() {
+        OffsetTracker subject = new OffsetTracker();
+        OffsetTracker.Offset first = subject.track(record(0, 10));
+        OffsetTracker.Offset second = subject.track(record(0, 11));
+        second.supersede(first);
+
+        second.ack();
+
+        assertEquals(12, subject.committableOffsets().get(PARTITION_0).offset());
+    }
+
+    private SinkRecord record(int partition, long offset) {
+        return new SinkRecord("testTopic", partition, null, "key", null, "value", offset);
+    }
+}
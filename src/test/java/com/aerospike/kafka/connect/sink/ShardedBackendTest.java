@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.listener.WriteListener;
+import com.aerospike.client.policy.WritePolicy;
+
+public class ShardedBackendTest {
+
+    private final StubBackend first = new StubBackend(1);
+    private final StubBackend second = new StubBackend(1);
+    private final ShardedBackend subject = new ShardedBackend(Arrays.asList(first, second));
+
+    @After
+    public void tearDown() {
+        subject.close();
+    }
+
+    @Test
+    public void testRoutesKeysToTheSameShard() throws InterruptedException {
+        Latch latch = new Latch(200);
+
+        for (int i = 0; i < 100; i++) {
+            Key key = new Key("test", "test", "key" + i);
+            subject.put(new WritePolicy(), latch, key, new Bin("aBin", i));
+            subject.put(new WritePolicy(), latch, key, new Bin("aBin", i));
+        }
+        latch.await();
+
+        assertEquals(200, first.getPuts() + second.getPuts());
+        assertEquals(0, first.getPuts() % 2);
+        assertTrue(first.getPuts() > 50 && second.getPuts() > 50);
+    }
+
+    static class Latch implements WriteListener {
+
+        private final CountDownLatch latch;
+
+        Latch(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public void onSuccess(Key key) {
+            latch.countDown();
+        }
+
+        @Override
+        public void onFailure(AerospikeException exception) {
+            fail(exception.toString());
+        }
+    }
+}
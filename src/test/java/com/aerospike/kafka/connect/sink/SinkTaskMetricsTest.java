@@ -0,0 +1,185 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.After;
+import org.junit.Test;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.ResultCode;
+import com.aerospike.kafka.connect.data.BinCodec;
+import com.aerospike.kafka.connect.data.BinCompressor;
+
+public class SinkTaskMetricsTest {
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final SinkTaskMetrics subject = new SinkTaskMetrics();
+
+    @After
+    public void unregister() {
+        subject.unregister();
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500, snapshot.getMean());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(500, snapshot.getP50(), 500 * 0.125);
+        assertEquals(990, snapshot.getP99(), 990 * 0.125);
+        assertTrue(snapshot.getP50() >= 500);
+        assertTrue(snapshot.getP999() <= 1000);
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long value : new long[] { 0, 1, 15, 16, 17, 100, 1023, 1024, 123456789, Long.MAX_VALUE }) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(value <= LatencyHistogram.upperBound(bucket));
+            if (bucket > 0) {
+                assertTrue(value > LatencyHistogram.upperBound(bucket - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testRecordsPerTopicAndTotals() {
+        subject.recordConversion(subject.topic("a"), 1000);
+        subject.recordConversion(subject.topic("b"), 2000);
+        subject.recordWrite(subject.topic("a"), 1000000);
+        subject.topic("b").retried();
+        subject.topic("b").failed();
+        subject.recordWriteFailure(1000000, ResultCode.TIMEOUT);
+        subject.recordWriteError(ResultCode.TIMEOUT);
+        subject.recordWriteError(ResultCode.KEY_EXISTS_ERROR);
+
+        assertEquals(2, subject.getRecordsConverted());
+        assertEquals(1, subject.getRecordsWritten());
+        assertEquals(1, subject.getRecordsRetried());
+        assertEquals(1, subject.getRecordsFailed());
+        assertEquals(1, subject.topic("a").getRecordsWritten());
+        assertEquals(0, subject.topic("b").getRecordsWritten());
+        assertEquals(2, subject.getWriteLatencyMicros().getCount());
+        assertEquals(2, subject.getConversionTimeMicros().getCount());
+        Map<String, Long> errors = subject.getErrorsByResultCode();
+        assertEquals(2, errors.size());
+        assertEquals(Long.valueOf(2), errors.get(ResultCode.TIMEOUT + " " + ResultCode.getResultString(ResultCode.TIMEOUT)));
+    }
+
+    @Test
+    public void testRegistersMBeans() throws Exception {
+        subject.topic("before");
+        subject.register("my-connector", 3);
+        subject.recordConversion(subject.topic("after"), 1000);
+        subject.recordWriteError(ResultCode.TIMEOUT);
+
+        ObjectName task = new ObjectName("com.aerospike.kafka.connect:type=sink-task-metrics,connector=my-connector,task=3");
+        assertEquals(1L, server.getAttribute(task, "RecordsConverted"));
+        assertEquals(0, server.getAttribute(task, "InFlight"));
+        CompositeData latency = (CompositeData) server.getAttribute(task, "ConversionTimeMicros");
+        assertEquals(1L, latency.get("count"));
+        TabularData errors = (TabularData) server.getAttribute(task, "ErrorsByResultCode");
+        assertEquals(1, errors.size());
+        assertTrue(server.isRegistered(new ObjectName(
+                "com.aerospike.kafka.connect:type=sink-topic-metrics,connector=my-connector,task=3,topic=before")));
+        ObjectName after = new ObjectName(
+                "com.aerospike.kafka.connect:type=sink-topic-metrics,connector=my-connector,task=3,topic=after");
+        assertEquals(1L, server.getAttribute(after, "RecordsConverted"));
+
+        subject.unregister();
+        assertFalse(server.isRegistered(task));
+        assertFalse(server.isRegistered(after));
+    }
+
+    @Test
+    public void testReportsSkippedRecordsByReason() throws Exception {
+        ErrorHandler errorHandler = new ErrorHandler(true, null);
+        subject.setErrorHandler(errorHandler);
+        subject.register("my-connector", 0);
+        OffsetTracker tracker = new OffsetTracker();
+
+        errorHandler.handle(tracker.track(new SinkRecord("testTopic", 0, null, "aKey", null, "aValue", 1)),
+                ErrorHandler.Reason.WRITE_ERROR, new RuntimeException("Rejected"));
+
+        Map<String, Long> skipped = subject.getRecordsSkippedByReason();
+        assertEquals(Long.valueOf(0), skipped.get("conversion_error"));
+        assertEquals(Long.valueOf(1), skipped.get("write_error"));
+        TabularData attribute = (TabularData) server.getAttribute(subject.taskObjectName(), "RecordsSkippedByReason");
+        assertEquals(ErrorHandler.Reason.values().length, attribute.size());
+    }
+
+    @Test
+    public void testReportsConcurrencyLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 100, 0);
+        subject.setLimiter(limiter);
+        subject.register("my-connector", 0);
+        long start = System.nanoTime();
+        limiter.acquire();
+
+        limiter.release(start, true);
+
+        ObjectName task = subject.taskObjectName();
+        assertEquals(75, server.getAttribute(task, "ConcurrencyLimit"));
+        CompositeData[] history = (CompositeData[]) server.getAttribute(task, "ConcurrencyLimitHistory");
+        assertEquals(1, history.length);
+        assertEquals(75, history[0].get("limit"));
+        assertEquals("overload", history[0].get("reason"));
+    }
+
+    @Test
+    public void testReportsCompressionPerTopic() throws Exception {
+        BinCompressor compressor = new BinCompressor(Collections.singletonMap("bin", BinCodec.DEFLATE), 0);
+        subject.topic("compressed").setCompressor(compressor);
+        subject.register("my-connector", 0);
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            value.append("aValue");
+        }
+
+        compressor.compress(new Bin[] { new Bin("bin", value.toString()) }, null);
+
+        ObjectName topic = subject.topicObjectName("compressed");
+        assertEquals(1L, server.getAttribute(topic, "BinsCompressed"));
+        assertTrue((Double) server.getAttribute(topic, "CompressionRatio") > 10);
+        assertEquals(1.0, subject.topic("other").getCompressionRatio(), 0);
+    }
+
+    @Test
+    public void testQuotesNamesWithSpecialCharacters() throws Exception {
+        subject.register("name,with=specials", 0);
+
+        assertTrue(server.isRegistered(subject.taskObjectName()));
+    }
+}
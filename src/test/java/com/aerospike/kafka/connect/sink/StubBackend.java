@@ -0,0 +1,342 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.async.MaxCommandAction;
+import com.aerospike.client.listener.DeleteListener;
+import com.aerospike.client.listener.RecordListener;
+import com.aerospike.client.listener.WriteListener;
+import com.aerospike.client.policy.WritePolicy;
+import com.aerospike.kafka.connect.data.AerospikeRecord;
+
+/**
+ * In-process backend that completes writes on a pool of threads standing in
+ * for the async client's selector threads, after a configurable latency.
+ * Successful commands are logged in the order they completed, and the threads that issued commands are
+ * recorded. Failures can be injected per record, either at random or for the
+ * next few records, and the async client's limit on concurrent commands is
+ * emulated, including its block, reject and accept actions.
+ */
+public class StubBackend implements AsyncBackend {
+
+    private final ScheduledExecutorService completions;
+    private long latencyMicros = 0;
+    private long jitterMicros = 0;
+    private double failureRate = 0;
+    private int failureResultCode;
+    private final AtomicInteger failNext = new AtomicInteger(0);
+    private int failNextResultCode;
+    private Semaphore commands;
+    private MaxCommandAction maxCommandAction = MaxCommandAction.ACCEPT;
+
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicInteger maxInFlight = new AtomicInteger(0);
+    private final AtomicLong puts = new AtomicLong(0);
+    private final AtomicLong operates = new AtomicLong(0);
+    private final AtomicLong deletes = new AtomicLong(0);
+    private final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+    private final Set<String> callerThreads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private int nodes = 1;
+    private final Map<String, Long> nodeLatencyMicros = new ConcurrentHashMap<>();
+    private final AtomicLong failures = new AtomicLong(0);
+    private final AtomicLong rejections = new AtomicLong(0);
+
+    public StubBackend(int completionThreads) {
+        completions = Executors.newScheduledThreadPool(completionThreads, new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "stub-backend-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Completes each command after the given latency plus a random jitter of
+     * up to the given amount.
+     */
+    public StubBackend withLatency(long latencyMicros, long jitterMicros) {
+        this.latencyMicros = latencyMicros;
+        this.jitterMicros = jitterMicros;
+        return this;
+    }
+
+    /**
+     * Fails the given fraction of commands at random with the result code.
+     */
+    public StubBackend withFailures(double failureRate, int resultCode) {
+        this.failureRate = failureRate;
+        this.failureResultCode = resultCode;
+        return this;
+    }
+
+    /**
+     * Limits the number of concurrent commands like the async client does
+     * with asyncMaxCommands and asyncMaxCommandAction.
+     */
+    public StubBackend withMaxCommands(int maxCommands, MaxCommandAction action) {
+        this.commands = new Semaphore(maxCommands);
+        this.maxCommandAction = action;
+        return this;
+    }
+
+    /**
+     * Spreads keys across the given number of nodes for node queues.
+     */
+    public StubBackend withNodes(int nodes) {
+        this.nodes = nodes;
+        return this;
+    }
+
+    /**
+     * Overrides the latency of the given node, e.g. to emulate a slow node.
+     */
+    public StubBackend withNodeLatency(String node, long latencyMicros) {
+        nodeLatencyMicros.put(node, latencyMicros);
+        return this;
+    }
+
+    /**
+     * Fails the next commands with the given result code.
+     */
+    public StubBackend failNext(int count, int resultCode) {
+        this.failNextResultCode = resultCode;
+        this.failNext.set(count);
+        return this;
+    }
+
+    @Override
+    public void put(WritePolicy policy, WriteListener listener, Key key, Bin... bins) {
+        execute(new WriteListener[] { listener }, new Key[] { key }, "put");
+    }
+
+    /**
+     * Assigns keys to the given number of nodes by their digest.
+     */
+    @Override
+    public String nodeName(Key key) {
+        return "stub-" + (key.digest[0] & 0xFF) % nodes;
+    }
+
+    private void execute(final WriteListener[] listeners, final Key[] keys, final String command) {
+        callerThreads.add(Thread.currentThread().getName());
+        puts.addAndGet(keys.length);
+        final boolean limited = acquire(keys.length);
+        int current = inFlight.incrementAndGet();
+        int max = maxInFlight.get();
+        while (current > max && !maxInFlight.compareAndSet(max, current)) {
+            max = maxInFlight.get();
+        }
+        final AerospikeException[] failures = new AerospikeException[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            failures[i] = nextFailure();
+        }
+        Runnable completion = new Runnable() {
+            @Override
+            public void run() {
+                inFlight.decrementAndGet();
+                if (limited) {
+                    commands.release();
+                }
+                for (int i = 0; i < keys.length; i++) {
+                    if (failures[i] == null) {
+                        completed.add(command + " " + keys[i].userKey);
+                        listeners[i].onSuccess(keys[i]);
+                    } else {
+                        listeners[i].onFailure(failures[i]);
+                    }
+                }
+            }
+        };
+        Long nodeLatency = nodeLatencyMicros.isEmpty() ? null : nodeLatencyMicros.get(nodeName(keys[0]));
+        long delayMicros = nodeLatency == null ? latencyMicros : nodeLatency;
+        if (jitterMicros > 0) {
+            delayMicros += ThreadLocalRandom.current().nextLong(jitterMicros + 1);
+        }
+        if (delayMicros > 0) {
+            completions.schedule(completion, delayMicros, TimeUnit.MICROSECONDS);
+        } else {
+            completions.execute(completion);
+        }
+    }
+
+    /**
+     * Handles operate commands like puts; the listener gets called without a
+     * record.
+     */
+    @Override
+    public void operate(WritePolicy policy, final RecordListener listener, Key key, Operation... operations) {
+        execute(new WriteListener[] { new WriteListener() {
+            @Override
+            public void onSuccess(Key key) {
+                listener.onSuccess(key, null);
+            }
+
+            @Override
+            public void onFailure(AerospikeException exception) {
+                listener.onFailure(exception);
+            }
+        } }, new Key[] { key }, "operate");
+        operates.incrementAndGet();
+    }
+
+    /**
+     * Handles deletes like puts; the listener is told the record existed.
+     */
+    @Override
+    public void delete(WritePolicy policy, final DeleteListener listener, Key key) {
+        deletes.incrementAndGet();
+        try {
+            execute(new WriteListener[] { new WriteListener() {
+                @Override
+                public void onSuccess(Key key) {
+                    listener.onSuccess(key, true);
+                }
+
+                @Override
+                public void onFailure(AerospikeException exception) {
+                    listener.onFailure(exception);
+                }
+            } }, new Key[] { key }, "delete");
+        } catch (AerospikeException e) {
+            deletes.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private boolean acquire(int records) {
+        if (commands == null) {
+            return false;
+        }
+        switch (maxCommandAction) {
+        case BLOCK:
+            commands.acquireUninterruptibly();
+            return true;
+        case REJECT:
+            if (!commands.tryAcquire()) {
+                rejections.addAndGet(records);
+                puts.addAndGet(-records);
+                throw new AerospikeException.CommandRejected();
+            }
+            return true;
+        default:
+            return commands.tryAcquire();
+        }
+    }
+
+    private AerospikeException nextFailure() {
+        int remaining = failNext.get();
+        while (remaining > 0) {
+            if (failNext.compareAndSet(remaining, remaining - 1)) {
+                failures.incrementAndGet();
+                return new AerospikeException(failNextResultCode);
+            }
+            remaining = failNext.get();
+        }
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            failures.incrementAndGet();
+            return new AerospikeException(failureResultCode);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of records whose commands have been accepted.
+     */
+    public long getPuts() {
+        return puts.get();
+    }
+
+    /**
+     * Returns the number of accepted commands that were operate commands.
+     */
+    public long getOperates() {
+        return operates.get();
+    }
+
+    /**
+     * Returns the number of accepted commands that were deletes.
+     */
+    public long getDeletes() {
+        return deletes.get();
+    }
+
+    /**
+     * Returns the successful commands in the order they completed, as the
+     * command name followed by the user key.
+     */
+    public List<String> getCompleted() {
+        synchronized (completed) {
+            return new ArrayList<>(completed);
+        }
+    }
+
+    /**
+     * Returns the names of the threads that issued commands.
+     */
+    public Set<String> getCallerThreads() {
+        return new HashSet<>(callerThreads);
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the highest number of concurrent commands seen since the last
+     * call.
+     */
+    public int resetMaxInFlight() {
+        return maxInFlight.getAndSet(inFlight.get());
+    }
+
+    @Override
+    public void close() {
+        completions.shutdownNow();
+    }
+}
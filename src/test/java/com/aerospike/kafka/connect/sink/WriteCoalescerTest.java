@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.kafka.connect.sink;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.Test;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.kafka.connect.data.AerospikeRecord;
+
+public class WriteCoalescerTest {
+
+    @Test
+    public void testReplaceKeepsLastVersion() {
+        WriteCoalescer subject = new WriteCoalescer(RecordExistsAction.REPLACE, 100);
+        add(subject, record("key1", new Bin("a", 1), new Bin("b", 1)));
+        add(subject, record("key2", new Bin("a", 2)));
+        add(subject, record("key1", new Bin("a", 3)));
+
+        List<WriteCoalescer.Write> result = subject.drain();
+
+        assertEquals(2, result.size());
+        AerospikeRecord first = result.get(0).record();
+        assertEquals("key1", first.key().userKey.toString());
+        assertEquals(1, first.bins().length);
+        assertEquals(3, first.bins()[0].value.toInteger());
+        assertEquals("key2", result.get(1).record().key().userKey.toString());
+        assertEquals(1, subject.getWritesSaved());
+    }
+
+    @Test
+    public void testUpdateMergesBins() {
+        WriteCoalescer subject = new WriteCoalescer(RecordExistsAction.UPDATE, 100);
+        add(subject, record("key1", new Bin("a", 1), new Bin("b", 1)));
+        add(subject, record("key1", new Bin("b", 2), new Bin("c", 2)));
+
+        List<WriteCoalescer.Write> result = subject.drain();
+
+        assertEquals(1, result.size());
+        Bin[] bins = result.get(0).record().bins();
+        assertEquals(3, bins.length);
+        assertEquals(new Bin("a", 1), bins[0]);
+        assertEquals(new Bin("b", 2), bins[1]);
+        assertEquals(new Bin("c", 2), bins[2]);
+    }
+
+    @Test
+    public void testAddReturnsTrueWhenFull() {
+        WriteCoalescer subject = new WriteCoalescer(RecordExistsAction.REPLACE, 2);
+        assertFalse(add(subject, record("key1", new Bin("a", 1))));
+        assertFalse(add(subject, record("key1", new Bin("a", 2))));
+        assertTrue(add(subject, record("key2", new Bin("a", 3))));
+
+        subject.drain();
+
+        assertTrue(subject.isEmpty());
+        assertEquals(3, subject.getRecordsReceived());
+        assertEquals(2, subject.getRecordsWritten());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateOnlyNotSupported() {
+        new WriteCoalescer(RecordExistsAction.CREATE_ONLY, 100);
+    }
+
+    @Test
+    public void testCoalescedOffsetsAckedWithLastWrite() {
+        WriteCoalescer subject = new WriteCoalescer(RecordExistsAction.REPLACE, 100);
+        OffsetTracker.Offset first = offset(1);
+        OffsetTracker.Offset second = offset(2);
+        subject.add(record("key1", new Bin("a", 1)), first);
+        subject.add(record("key1", new Bin("a", 2)), second);
+
+        List<WriteCoalescer.Write> result = subject.drain();
+        assertEquals(1, result.size());
+        assertSame(second, result.get(0).offset());
+        assertFalse(first.isAcked());
+
+        result.get(0).offset().ack();
+
+        assertTrue(first.isAcked());
+        assertTrue(second.isAcked());
+    }
+
+    private boolean add(WriteCoalescer subject, AerospikeRecord record) {
+        return subject.add(record, offset(0));
+    }
+
+    private OffsetTracker.Offset offset(long offset) {
+        return new OffsetTracker.Offset(new SinkRecord("testTopic", 0, null, "key", null, "value", offset));
+    }
+
+    private AerospikeRecord record(String key, Bin... bins) {
+        return new AerospikeRecord(new Key("test", "test", key), bins);
+    }
+}